@@ -0,0 +1,32 @@
+package com.josefy.nnpda;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/*
+ * The application with the dev profile, for benchmarks that need the database. Point it at a throwaway database
+ * with -Dspring.datasource.url, -Dspring.datasource.username and -Dspring.datasource.password (jmh -jvmArgsAppend),
+ * the schema is created and dropped by the dev profile. The test profile keeps the seeders and the measurement
+ * generator from writing while the benchmark runs, its debug logging is turned back down.
+ */
+public final class BenchmarkApplication {
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(String... args) {
+        var defaults = new String[]{
+                "--server.port=0",
+                "--jwt.secret=benchmark",
+                "--spring.mail.username=benchmark",
+                "--spring.mail.password=benchmark",
+                "--logging.level.org.hibernate=WARN",
+                "--logging.level.org.springframework=WARN"
+        };
+        var all = new String[defaults.length + args.length];
+        System.arraycopy(defaults, 0, all, 0, defaults.length);
+        System.arraycopy(args, 0, all, defaults.length, args.length);
+        return new SpringApplicationBuilder(Application.class)
+                .profiles("dev", "test")
+                .run(all);
+    }
+}
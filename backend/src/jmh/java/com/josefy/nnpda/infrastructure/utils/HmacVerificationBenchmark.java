@@ -0,0 +1,83 @@
+package com.josefy.nnpda.infrastructure.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Signature check of a device request body, the way Sha256Provider used to do it against the pooled verifier.
+ * Look at gc.alloc.rate.norm for the bytes allocated per verification.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HmacVerificationBenchmark {
+    @Param({"256", "65536"})
+    private int bodySize;
+
+    private final Sha256Provider provider = new Sha256Provider();
+    private final String key = "a3f1c9e2b7d84f6a9c0e1d2b3a4f5e6d7c8b9a0f1e2d3c4b5a6978877665544";
+    private byte[] body;
+    private String signature;
+
+    @Setup
+    public void setUp() throws Exception {
+        body = new byte[bodySize];
+        ThreadLocalRandom.current().nextBytes(body);
+        signature = sign(body);
+        if (!pooledVerifier() || !perCallMac()) {
+            throw new IllegalStateException("benchmark signature doesn't verify");
+        }
+    }
+
+    @Benchmark
+    public boolean perCallMac() throws Exception {
+        return previousIsHmacValid(new ByteArrayInputStream(body), key, signature);
+    }
+
+    @Benchmark
+    public boolean pooledVerifier() {
+        var verifier = provider.hmacVerifier(key);
+        verifier.update(body, 0, body.length);
+        return verifier.verify(signature);
+    }
+
+    private String sign(byte[] data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return Base64.getEncoder().encodeToString(mac.doFinal(data));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Sha256Provider.isHmacValid(InputStream...) before the macs got pooled
+    private static boolean previousIsHmacValid(InputStream input, String key, String hash) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        mac.init(secretKey);
+        byte[] buffer = new byte[4096];
+        int bytesRead;
+        while ((bytesRead = input.read(buffer)) != -1) {
+            mac.update(buffer, 0, bytesRead);
+        }
+        byte[] bytes = mac.doFinal();
+        String result = Base64.getEncoder().encodeToString(bytes);
+        return result.equals(hash);
+    }
+}
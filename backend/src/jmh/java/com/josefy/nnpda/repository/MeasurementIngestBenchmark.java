@@ -0,0 +1,87 @@
+package com.josefy.nnpda.repository;
+
+import com.josefy.nnpda.BenchmarkApplication;
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.Sensor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * What the synchronous MeasurementsWrittenEvent listeners add to a write, with the rollups on and off.
+ * Goes through the configured IMeasurementWriter like ingestion does, see BenchmarkApplication for the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MeasurementIngestBenchmark {
+    private static final OffsetDateTime BASE = OffsetDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Param({"false", "true"})
+    private boolean rollups;
+
+    // a regular device batch and an offline backlog, one reading per second
+    @Param({"100", "20000"})
+    private int readings;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private IMeasurementWriter writer;
+    private long sensorId;
+    private int run;
+    private List<MeasurementRow> rows;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("--measurements.rollups.enabled=" + rollups);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        writer = context.getBean(IMeasurementWriter.class);
+        var device = context.getBean(IDeviceRepository.class).save(new Device("BENCHMARK001", "BENCH"));
+        var sensor = new Sensor("bench", "BENCHMARK001");
+        sensor.setDevice(device);
+        sensorId = context.getBean(ISensorRepository.class).save(sensor).getId();
+    }
+
+    // every call gets its own range so uk_sensor_timestamp doesn't get in the way
+    @Setup(Level.Invocation)
+    public void prepare() {
+        var from = BASE.plusSeconds((long) readings * run++);
+        rows = new ArrayList<>(readings);
+        for (int i = 0; i < readings; i++) {
+            rows.add(new MeasurementRow(sensorId, from.plusSeconds(i), i));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteReadings() {
+        jdbcTemplate.update("DELETE FROM measurements WHERE sensor_id = ?", sensorId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MeasurementWriteResult ingest() {
+        return transactionTemplate.execute(status -> writer.write(rows));
+    }
+}
@@ -0,0 +1,111 @@
+package com.josefy.nnpda.repository;
+
+import com.josefy.nnpda.BenchmarkApplication;
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.Measurement;
+import com.josefy.nnpda.model.Sensor;
+import com.josefy.nnpda.repository.impl.JdbcMeasurementWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * One transaction of readings through saveAll and through JdbcMeasurementWriter's batched inserts and COPY, see
+ * BenchmarkApplication for the database. Add reWriteBatchedInserts=true to the url like the profiles do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MeasurementWriterBenchmark {
+    private static final OffsetDateTime BASE = OffsetDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Param({"saveAll", "batch", "copy"})
+    private String path;
+
+    @Param({"20000"})
+    private int readings;
+
+    private ConfigurableApplicationContext context;
+    private IMeasurementRepository measurementRepository;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private JdbcMeasurementWriter writer;
+    private Sensor sensor;
+    private int run;
+    private List<Measurement> entities;
+    private List<MeasurementRow> rows;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        measurementRepository = context.getBean(IMeasurementRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        var device = context.getBean(IDeviceRepository.class).save(new Device("BENCHMARK001", "BENCH"));
+        var sensor = new Sensor("bench", "BENCHMARK001");
+        sensor.setDevice(device);
+        this.sensor = context.getBean(ISensorRepository.class).save(sensor);
+        if (!path.equals("saveAll")) {
+            writer = new JdbcMeasurementWriter(jdbcTemplate, event -> {},
+                    JdbcMeasurementWriter.Mode.valueOf(path.toUpperCase()), JdbcMeasurementWriter.Conflict.FAIL, 1000);
+        }
+    }
+
+    // every call gets its own range so uk_sensor_timestamp doesn't get in the way
+    @Setup(Level.Invocation)
+    public void prepare() {
+        var from = BASE.plusSeconds((long) readings * run++);
+        if (writer == null) {
+            entities = new ArrayList<>(readings);
+            for (int i = 0; i < readings; i++) {
+                var measurement = new Measurement();
+                measurement.setSensor(sensor);
+                measurement.setTimestamp(from.plusSeconds(i));
+                measurement.setValue((double) i);
+                entities.add(measurement);
+            }
+        } else {
+            rows = new ArrayList<>(readings);
+            for (int i = 0; i < readings; i++) {
+                rows.add(new MeasurementRow(sensor.getId(), from.plusSeconds(i), i));
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteReadings() {
+        jdbcTemplate.update("DELETE FROM measurements WHERE sensor_id = ?", sensor.getId());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void ingest() {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (writer == null) {
+                measurementRepository.saveAll(entities);
+            } else {
+                writer.write(rows);
+            }
+        });
+    }
+}
@@ -0,0 +1,91 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.infrastructure.utils.Sha256Provider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * A wave of devices sending their measurements at once, each request verifies the body signature and then
+ * blocks on a simulated database round trip. Platform is Tomcat's default pool (200 threads), virtual is
+ * spring.threads.virtual.enabled. The synchronized variant blocks while holding a monitor, which pins the
+ * virtual thread to its carrier, the way a synchronized JDBC driver would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConcurrentIngestionBenchmark {
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"io", "synchronized"})
+    private String blocking;
+
+    @Param({"1000"})
+    private int devices;
+
+    @Param({"5"})
+    private int databaseLatencyMs;
+
+    private final Sha256Provider provider = new Sha256Provider();
+    private final String key = "a3f1c9e2b7d84f6a9c0e1d2b3a4f5e6d7c8b9a0f1e2d3c4b5a6978877665544";
+    private final byte[] body = new byte[2048];
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ThreadLocalRandom.current().nextBytes(body);
+        executor = threads.equals("virtual")
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int requestWave() throws Exception {
+        var requests = new ArrayList<Future<Boolean>>(devices);
+        for (int i = 0; i < devices; i++) {
+            requests.add(executor.submit(this::handleRequest));
+        }
+        int rejected = 0;
+        for (var request : requests) {
+            rejected += request.get() ? 0 : 1;
+        }
+        return rejected;
+    }
+
+    private boolean handleRequest() throws InterruptedException {
+        var verifier = provider.hmacVerifier(key);
+        verifier.update(body, 0, body.length);
+        // nobody signed the body, the verification work is the same either way
+        boolean valid = verifier.verify("");
+        if (blocking.equals("synchronized")) {
+            synchronized (new Object()) {
+                Thread.sleep(databaseLatencyMs);
+            }
+        } else {
+            Thread.sleep(databaseLatencyMs);
+        }
+        return valid;
+    }
+}
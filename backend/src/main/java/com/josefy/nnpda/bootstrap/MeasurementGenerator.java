@@ -1,11 +1,9 @@
 package com.josefy.nnpda.bootstrap;
 
 import com.josefy.nnpda.model.Device;
-import com.josefy.nnpda.model.Measurement;
 import com.josefy.nnpda.repository.IDeviceRepository;
-import com.josefy.nnpda.repository.IMeasurementRepository;
-import com.josefy.nnpda.service.IMeasurementService;
-import com.josefy.nnpda.service.impl.MeasurementService;
+import com.josefy.nnpda.repository.IMeasurementWriter;
+import com.josefy.nnpda.repository.MeasurementRow;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Profile;
@@ -22,26 +20,22 @@ import java.util.ArrayList;
 @Profile("!test")
 public class MeasurementGenerator  {
     private final IDeviceRepository deviceRepository;
-    private final IMeasurementRepository measurementRepository;
+    private final IMeasurementWriter measurementWriter;
 
     @Scheduled(fixedRate = 5000)
     @Transactional
     public void generateMeasurements() {
+        var measurements = new ArrayList<MeasurementRow>();
         for (var device : deviceRepository.findAll()) {
-            generateMeasurementsForDevice(device);
+            generateMeasurementsForDevice(device, measurements);
         }
+        measurementWriter.write(measurements);
     }
 
-    private void generateMeasurementsForDevice(Device device) {
-        var measurements = new ArrayList<Measurement>();
+    private void generateMeasurementsForDevice(Device device, ArrayList<MeasurementRow> measurements) {
         for (var sensor : device.getSensors()) {
-            var measurement = new Measurement();
             OffsetDateTime time = OffsetDateTime.now();
-            measurement.setTimestamp(time);
-            measurement.setValue((double) (Math.random() * 100));
-            measurement.setSensor(sensor);
-            measurements.add(measurement);
+            measurements.add(new MeasurementRow(sensor.getId(), time, Math.random() * 100));
         }
-        measurementRepository.saveAll(measurements);
     }
 }
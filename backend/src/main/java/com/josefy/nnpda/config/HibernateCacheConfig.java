@@ -0,0 +1,64 @@
+package com.josefy.nnpda.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.Role;
+import com.josefy.nnpda.model.Sensor;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+
+/*
+ * Regions of the second-level cache. Every region is created here, hibernate is set to fail on one it doesn't
+ * know instead of quietly creating an unbounded cache. Local to the instance: writes through hibernate evict on
+ * this instance only, so expire-after-write bounds how long another instance (or an edit made outside hibernate)
+ * can serve stale devices and sensors.
+ */
+@Configuration
+public class HibernateCacheConfig {
+    public static final List<String> REGIONS = List.of(
+            Role.CACHE_REGION, Device.CACHE_REGION, Device.SENSORS_CACHE_REGION, Sensor.CACHE_REGION,
+            RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME);
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${entity-cache.maximum-size:10000}") long maximumSize,
+                                              @Value("${entity-cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        var provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        // the provider hands out one manager per class loader, a second context in the same jvm gets the same one
+        var cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+        for (var region : REGIONS) {
+            if (cacheManager.getCache(region) != null) {
+                continue;
+            }
+            cacheManager.createCache(region, new CaffeineConfiguration<>()
+                    // hibernate's entries are immutable already, no need to copy them on every get
+                    .setStoreByValue(false)
+                    .setMaximumSize(OptionalLong.of(maximumSize))
+                    .setExpireAfterWrite(OptionalLong.of(expireAfterWrite.toNanos())));
+        }
+        // must never lose an entry before the query results it invalidates, so neither bounded nor expiring
+        if (cacheManager.getCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME) == null) {
+            cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                    new CaffeineConfiguration<>().setStoreByValue(false));
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+}
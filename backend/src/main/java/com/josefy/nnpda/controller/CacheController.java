@@ -0,0 +1,40 @@
+package com.josefy.nnpda.controller;
+
+import com.josefy.nnpda.dto.cache.CacheStatisticsDto;
+import com.josefy.nnpda.infrastructure.security.RoleExpressions;
+import com.josefy.nnpda.service.ICacheStatisticsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+@Tag(name = "Cache", description = "Second-level cache of roles, devices and sensors.")
+@Controller
+@RequestMapping("/cache")
+@RequiredArgsConstructor
+@PreAuthorize(RoleExpressions.IS_ADMIN)
+public class CacheController {
+    private final ICacheStatisticsService cacheStatisticsService;
+
+    @GetMapping("/statistics")
+    @Operation(
+            summary = "Get hit ratios of the cache regions",
+            description = "Counts of this instance since it started, every instance has its own cache",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(schema = @Schema(implementation = CacheStatisticsDto.class))
+                    )
+            }
+    )
+    public ResponseEntity<?> getStatistics() {
+        return ResponseEntity.ok(cacheStatisticsService.findStatistics());
+    }
+}
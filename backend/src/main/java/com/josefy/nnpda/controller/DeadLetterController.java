@@ -0,0 +1,67 @@
+package com.josefy.nnpda.controller;
+
+import com.josefy.nnpda.dto.deadletter.DeadLetterMeasurementDto;
+import com.josefy.nnpda.dto.deadletter.ReprocessResultDto;
+import com.josefy.nnpda.infrastructure.security.RoleExpressions;
+import com.josefy.nnpda.service.IDeadLetterService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Tag(name = "Dead letters", description = "Measurements that were rejected during ingestion.")
+@Controller
+@RequestMapping("/dead-letters")
+@RequiredArgsConstructor
+@PreAuthorize(RoleExpressions.IS_ADMIN)
+public class DeadLetterController {
+    private final IDeadLetterService deadLetterService;
+
+    @GetMapping
+    @Operation(
+            summary = "Get rejected measurements",
+            description = "Returns the dead letters ordered by id, optionally only those sent by one device",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(schema = @Schema(implementation = DeadLetterMeasurementDto[].class))
+                    )
+            }
+    )
+    public ResponseEntity<?> getAll(
+            @Parameter(description = "Serial number of the sending device")
+            @RequestParam(required = false) String deviceSerialNumber,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size) {
+        return ResponseEntity.ok(deadLetterService.findAll(deviceSerialNumber, page, size));
+    }
+
+    @PostMapping("/reprocess")
+    @Operation(
+            summary = "Reprocess rejected measurements",
+            description = "Tries to store the given dead letters again, all of them when no ids are given. " +
+                    "Those that still can't be stored are kept with the new reason.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Ids of the dead letters",
+                    required = false,
+                    content = @Content(schema = @Schema(type = "array", implementation = Long.class))),
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(schema = @Schema(implementation = ReprocessResultDto.class))
+                    )
+            }
+    )
+    public ResponseEntity<?> reprocess(@RequestBody(required = false) List<Long> ids) {
+        return ResponseEntity.ok(deadLetterService.reprocess(ids == null ? List.of() : ids));
+    }
+}
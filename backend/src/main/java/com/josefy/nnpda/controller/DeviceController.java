@@ -26,8 +26,6 @@ import org.springframework.web.bind.annotation.*;
 
 
 import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @Tag(name = "Devices", description = "Manages operations concerning the registered devices.")
 @Controller
@@ -64,13 +62,9 @@ public class DeviceController {
             @Parameter(description = "Include sensors in the response")
             @RequestParam(defaultValue = "false") boolean withSensors,
             @AuthenticationPrincipal User user) {
-        var devices = deviceService.findAll(withSensors);
-        final Function<Device, ?> mapping = withSensors
-                ? DeviceWithSensorsDto::fromEntity
-                : DeviceDto::fromEntity;
-        return ResponseEntity.ok(StreamSupport.stream(devices.spliterator(), false)
-                .map(mapping)
-                .collect(Collectors.toList()));
+        return withSensors
+                ? ResponseEntity.ok(deviceService.findAllWithSensors())
+                : ResponseEntity.ok(deviceService.findAll());
     }
 
     @GetMapping("/{serialNumber}")
@@ -180,4 +174,25 @@ public class DeviceController {
             @AuthenticationPrincipal User user) {
         return deviceService.delete(serialNumber).fold(Status::toResponseEntity, ResponseEntity::ok);
     }
+
+    @PostMapping("/{serialNumber}/revoke")
+    @Operation(
+            summary = "Revoke the credentials of a device",
+            description = "The device is rejected from its next request on.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Credentials revoked"
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Device not found"
+                    )
+            }
+    )
+    public ResponseEntity<?> revoke(
+            @PathVariable String serialNumber,
+            @AuthenticationPrincipal User user) {
+        return deviceService.revokeCredentials(serialNumber).fold(Status::toResponseEntity, ResponseEntity::ok);
+    }
 }
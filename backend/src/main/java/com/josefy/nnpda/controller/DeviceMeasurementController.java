@@ -1,6 +1,8 @@
 package com.josefy.nnpda.controller;
 
 import com.josefy.nnpda.dto.measurement.DeviceMeasurementDto;
+import com.josefy.nnpda.dto.measurement.IngestionResultDto;
+import com.josefy.nnpda.infrastructure.utils.Status;
 import com.josefy.nnpda.model.Device;
 import com.josefy.nnpda.service.IMeasurementService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -9,9 +11,12 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
@@ -19,6 +24,8 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 
+import java.io.IOException;
+
 @Tag(name = "Measurements", description = "Manages the ingestion of sensor measurements sent by devices")
 @Controller
 @RequiredArgsConstructor
@@ -47,8 +54,14 @@ public class DeviceMeasurementController {
             },
             responses = {
                     @ApiResponse(
-                            responseCode = "201",
-                            description = "Measurements ingested successfully"
+                            responseCode = "200",
+                            description = "Measurements ingested successfully, with how many were inserted, updated or skipped. "
+                                    + "Readings for unknown or foreign sensors are listed as rejected and kept as dead letters",
+                            content = @Content(schema = @Schema(implementation = IngestionResultDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "202",
+                            description = "Measurements queued for writing (async ingestion mode)"
                     ),
                     @ApiResponse(
                             responseCode = "401",
@@ -57,6 +70,10 @@ public class DeviceMeasurementController {
                     @ApiResponse(
                             responseCode = "400",
                             description = "Invalid data"
+                    ),
+                    @ApiResponse(
+                            responseCode = "429",
+                            description = "Ingestion queue is full, retry later"
                     )
             }
     )
@@ -64,6 +81,56 @@ public class DeviceMeasurementController {
             @RequestBody @Valid DeviceMeasurementDto measurements,
             @AuthenticationPrincipal Device sender) {
         log.info("Received measurements from device {}", sender.getSerialNumber());
-        return measurementService.ingestMeasurements(sender, measurements).toResponseEntity();
+        return measurementService.ingestMeasurements(sender, measurements)
+                .fold(Status::toResponseEntity, DeviceMeasurementController::toResponseEntity);
+    }
+
+    @PostMapping(path = "/stream", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+            summary = "Ingest a large batch of sensor measurements, parsed and written in chunks",
+            description = "Same payload as the regular ingestion, meant for devices uploading a backlog after being offline. "
+                    + "Always written synchronously, the whole upload is rejected if any reading is invalid.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    content = @Content(schema = @Schema(implementation = DeviceMeasurementDto.class))
+            ),
+            parameters = {
+                    @Parameter(
+                            name = "X-DERIVED-ID",
+                            description = "Derived ID header, used to identify the device",
+                            required = true,
+                            schema = @Schema(type = "string")),
+                    @Parameter(
+                            name = "X-HMAC-SIG",
+                            description = "HMAC signature header, used to verify the authenticity of the data",
+                            required = true,
+                            schema = @Schema(type = "string"))
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Measurements ingested successfully, with how many were inserted, updated or skipped. "
+                                    + "Readings for unknown or foreign sensors are listed as rejected and kept as dead letters",
+                            content = @Content(schema = @Schema(implementation = IngestionResultDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "401",
+                            description = "Unauthorized"
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid data"
+                    )
+            }
+    )
+    public ResponseEntity<?> ingestStream(HttpServletRequest request,
+                                          @AuthenticationPrincipal Device sender)
+            throws IOException {
+        log.info("Receiving measurement stream from device {}", sender.getSerialNumber());
+        return measurementService.ingestMeasurementStream(sender, request.getInputStream())
+                .fold(Status::toResponseEntity, DeviceMeasurementController::toResponseEntity);
+    }
+
+    private static ResponseEntity<?> toResponseEntity(IngestionResultDto result) {
+        return ResponseEntity.status(result.queued() ? HttpStatus.ACCEPTED : HttpStatus.OK).body(result);
     }
 }
@@ -0,0 +1,56 @@
+package com.josefy.nnpda.controller;
+
+import com.josefy.nnpda.dto.measurement.MeasurementChangesDto;
+import com.josefy.nnpda.infrastructure.security.RoleExpressions;
+import com.josefy.nnpda.infrastructure.utils.Status;
+import com.josefy.nnpda.service.IMeasurementChangeService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+@Tag(name = "Measurement changes", description = "Feed of stored readings for exporters and replicas.")
+@Controller
+@RequestMapping("/measurements")
+@RequiredArgsConstructor
+@PreAuthorize(RoleExpressions.IS_ADMIN)
+public class MeasurementChangeController {
+    private final IMeasurementChangeService measurementChangeService;
+
+    @GetMapping("/changes")
+    @Operation(
+            summary = "Get readings stored since the last call",
+            description = "Readings inserted or updated after 'after', in order of the ingesting transactions, " +
+                    "so polling with the returned 'next' doesn't miss any. A reading shows up once every older " +
+                    "transaction has finished, a long running one (a streamed upload) holds the feed back until " +
+                    "it ends. Deletions (retention) aren't part of the feed and readings only stay in it until " +
+                    "they're compacted into blocks.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(schema = @Schema(implementation = MeasurementChangesDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid 'after' or limit"
+                    )
+            }
+    )
+    public ResponseEntity<?> getChanges(
+            @Parameter(description = "The 'next' of the previous call, 0-0 for everything")
+            @RequestParam(defaultValue = "0-0") String after,
+            @Parameter(description = "Page size")
+            @RequestParam(defaultValue = "1000") int limit) {
+        return measurementChangeService.findChanges(after, limit)
+                .fold(Status::toResponseEntity, ResponseEntity::ok);
+    }
+}
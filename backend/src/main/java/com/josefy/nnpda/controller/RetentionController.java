@@ -0,0 +1,186 @@
+package com.josefy.nnpda.controller;
+
+import com.josefy.nnpda.dto.retention.RetentionClassDto;
+import com.josefy.nnpda.dto.retention.RetentionReportDto;
+import com.josefy.nnpda.infrastructure.security.RoleExpressions;
+import com.josefy.nnpda.infrastructure.utils.Status;
+import com.josefy.nnpda.service.IRetentionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+@Tag(name = "Retention", description = "Manages how long measurements are kept.")
+@Controller
+@RequestMapping("/retention")
+@RequiredArgsConstructor
+@PreAuthorize(RoleExpressions.IS_ADMIN)
+public class RetentionController {
+    private final IRetentionService retentionService;
+
+    @GetMapping("/classes")
+    @Operation(
+            summary = "Get all retention classes",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(schema = @Schema(implementation = RetentionClassDto[].class))
+                    )
+            }
+    )
+    public ResponseEntity<?> getAll() {
+        return ResponseEntity.ok(retentionService.findAll().stream().map(RetentionClassDto::fromEntity).toList());
+    }
+
+    @PostMapping("/classes")
+    @Operation(
+            summary = "Create a retention class",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "201",
+                            content = @Content(schema = @Schema(implementation = RetentionClassDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "Retention class already exists"
+                    )
+            }
+    )
+    public ResponseEntity<?> create(@RequestBody @Valid RetentionClassDto request) {
+        return retentionService.create(request)
+                .fold(Status::toResponseEntity,
+                      success -> ResponseEntity.status(201).body(RetentionClassDto.fromEntity(success)));
+    }
+
+    @PutMapping("/classes/{name}")
+    @Operation(
+            summary = "Update a retention class",
+            description = "Shortening the retention removes the older measurements on the next run.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(schema = @Schema(implementation = RetentionClassDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Retention class not found"
+                    ),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "Retention class with the new name already exists"
+                    )
+            }
+    )
+    public ResponseEntity<?> update(@PathVariable String name, @RequestBody @Valid RetentionClassDto request) {
+        return retentionService.update(name, request)
+                .fold(Status::toResponseEntity,
+                      success -> ResponseEntity.ok(RetentionClassDto.fromEntity(success)));
+    }
+
+    @DeleteMapping("/classes/{name}")
+    @Operation(
+            summary = "Delete a retention class",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Retention class deleted"
+                    ),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "Retention class is still assigned to sensors or devices"
+                    )
+            }
+    )
+    public ResponseEntity<?> delete(@PathVariable String name) {
+        return retentionService.delete(name).fold(Status::toResponseEntity, ResponseEntity::ok);
+    }
+
+    @PutMapping("/devices/{serialNumber}")
+    @Operation(
+            summary = "Assign a retention class to a device",
+            description = "Applies to all sensors of the device that don't have their own class.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Retention class assigned"
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Device or retention class not found"
+                    )
+            }
+    )
+    public ResponseEntity<?> assignToDevice(
+            @PathVariable String serialNumber,
+            @Parameter(description = "Retention class name, the assignment is removed when omitted")
+            @RequestParam(required = false) String retentionClass) {
+        return retentionService.assignToDevice(serialNumber, retentionClass).fold(Status::toResponseEntity, ResponseEntity::ok);
+    }
+
+    @PutMapping("/sensors/{serialNumber}")
+    @Operation(
+            summary = "Assign a retention class to a sensor",
+            description = "Takes precedence over the class of the sensor's device.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Retention class assigned"
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Sensor or retention class not found"
+                    )
+            }
+    )
+    public ResponseEntity<?> assignToSensor(
+            @PathVariable String serialNumber,
+            @Parameter(description = "Retention class name, the assignment is removed when omitted")
+            @RequestParam(required = false) String retentionClass) {
+        return retentionService.assignToSensor(serialNumber, retentionClass).fold(Status::toResponseEntity, ResponseEntity::ok);
+    }
+
+    @PostMapping("/run")
+    @Operation(
+            summary = "Enforce retention now",
+            description = "Runs the same job as the schedule and returns what it reclaimed.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(schema = @Schema(implementation = RetentionReportDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "Retention is already running"
+                    )
+            }
+    )
+    public ResponseEntity<?> run() {
+        return retentionService.enforce().fold(Status::toResponseEntity, ResponseEntity::ok);
+    }
+
+    @GetMapping("/report")
+    @Operation(
+            summary = "Get the report of the last retention run",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(schema = @Schema(implementation = RetentionReportDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Retention has not run yet"
+                    )
+            }
+    )
+    public ResponseEntity<?> report() {
+        return retentionService.lastReport().fold(Status::toResponseEntity, ResponseEntity::ok);
+    }
+}
@@ -5,7 +5,6 @@ import com.josefy.nnpda.dto.sensor.SensorWithDeviceDto;
 import com.josefy.nnpda.dto.sensor.SensorWithDeviceResponseDto;
 import com.josefy.nnpda.infrastructure.security.RoleExpressions;
 import com.josefy.nnpda.infrastructure.utils.Status;
-import com.josefy.nnpda.model.Sensor;
 import com.josefy.nnpda.model.User;
 import com.josefy.nnpda.service.ISensorService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -23,10 +22,6 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
-
 @Tag(name = "Sensors", description = "Manages operations concerning the registered sensors.")
 @Controller
 @RequestMapping("/sensors")
@@ -45,14 +40,9 @@ public class SensorController {
             @Parameter(description = "Include sensors in the response")
             @RequestParam(defaultValue = "false") boolean omitDevices,
             @AuthenticationPrincipal User user) {
-        var sensors = sensorService.findAll(omitDevices);
-        final Function<Sensor, ?> mapping = omitDevices
-                ? SensorDto::fromEntity
-                : SensorWithDeviceResponseDto::fromEntity;
-        var result = StreamSupport.stream(sensors.spliterator(), false)
-                        .map(mapping)
-                        .collect(Collectors.toList());
-        return ResponseEntity.ok(result);
+        return omitDevices
+                ? ResponseEntity.ok(sensorService.findAll())
+                : ResponseEntity.ok(sensorService.findAllWithDevices());
     }
 
     @GetMapping("/{serialNumber}")
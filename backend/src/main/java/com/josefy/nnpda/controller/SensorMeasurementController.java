@@ -1,22 +1,159 @@
 package com.josefy.nnpda.controller;
 
-import com.josefy.nnpda.service.IMeasurementService;
-import com.josefy.nnpda.service.impl.MeasurementService;
+import com.josefy.nnpda.dto.measurement.MeasurementAggregateSeriesDto;
+import com.josefy.nnpda.dto.measurement.MeasurementRollupSeriesDto;
+import com.josefy.nnpda.dto.measurement.MeasurementSeriesDto;
+import com.josefy.nnpda.infrastructure.utils.Status;
+import com.josefy.nnpda.service.ISensorMeasurementService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
 
 @Tag(name = "Sensor measurements", description = "Manages the fetching of sensor measurements")
 @Controller
+@RequestMapping("{username}/sensors/{serialNumber}")
 @RequiredArgsConstructor
 @Slf4j
 @PreAuthorize("#username == authentication.principal.username")
 public class SensorMeasurementController {
-    private final IMeasurementService measurementService;
+    private final ISensorMeasurementService sensorMeasurementService;
 
+    @GetMapping("/measurements")
+    @Operation(
+            summary = "Get readings of a sensor",
+            description = "Oldest first, compacted readings included. Paged by the timestamp of the last reading, " +
+                    "pass 'next' of a page as 'after' to get the following one. With 'points' the whole range is " +
+                    "downsampled to at most that many readings (Largest-Triangle-Three-Buckets) instead.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(schema = @Schema(implementation = MeasurementSeriesDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid range or limit"
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Sensor not found on the user's devices"
+                    )
+            }
+    )
+    public ResponseEntity<?> getMeasurements(
+            @PathVariable String username,
+            @PathVariable String serialNumber,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @Parameter(description = "Only readings after this one, the 'next' of the previous page")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime after,
+            @Parameter(description = "Page size")
+            @RequestParam(defaultValue = "1000") int limit,
+            @Parameter(description = "Most readings to pick for a chart, replaces paging")
+            @RequestParam(required = false) Integer points) {
+        if (points != null) {
+            if (after != null) {
+                return new Status("'points' and 'after' cannot be combined.", HttpStatus.BAD_REQUEST).toResponseEntity();
+            }
+            return sensorMeasurementService.findDownsampledMeasurements(username, serialNumber, from, to, points)
+                    .fold(Status::toResponseEntity, ResponseEntity::ok);
+        }
+        return sensorMeasurementService.findMeasurements(username, serialNumber, from, to, after, limit)
+                .fold(Status::toResponseEntity, ResponseEntity::ok);
+    }
 
+    @GetMapping("/rollups")
+    @Operation(
+            summary = "Get aggregated measurements of a sensor",
+            description = "Served from precomputed minute, hour or day rollups, whichever is the coarsest that fits " +
+                    "the resolution. Readings from the last few seconds may not be included yet.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(schema = @Schema(implementation = MeasurementRollupSeriesDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid range or resolution"
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Sensor not found on the user's devices"
+                    )
+            }
+    )
+    public ResponseEntity<?> getRollups(
+            @PathVariable String username,
+            @PathVariable String serialNumber,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @Parameter(description = "Bucket size, whole minutes, e.g. 15m, 1h, 1d or PT1H")
+            @RequestParam(defaultValue = "1h") String resolution) {
+        Duration bucket;
+        try {
+            bucket = DurationStyle.detectAndParse(resolution);
+        } catch (IllegalArgumentException e) {
+            return new Status("Invalid resolution '%s'.".formatted(resolution), HttpStatus.BAD_REQUEST).toResponseEntity();
+        }
+        return sensorMeasurementService.findRollups(username, serialNumber, from, to, bucket)
+                .fold(Status::toResponseEntity, ResponseEntity::ok);
+    }
 
+    @GetMapping("/aggregate")
+    @Operation(
+            summary = "Get chart series of a sensor",
+            description = "Time buckets computed from the rollups in SQL, returned as one array per function plus " +
+                    "one of bucket starts, which is what charting libraries take. Readings from the last few " +
+                    "seconds may not be included yet.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(schema = @Schema(implementation = MeasurementAggregateSeriesDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid range, bucket or function"
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Sensor not found on the user's devices"
+                    )
+            }
+    )
+    public ResponseEntity<?> getAggregates(
+            @PathVariable String username,
+            @PathVariable String serialNumber,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @Parameter(description = "Bucket size, whole minutes, e.g. 5m, 1h or PT15M")
+            @RequestParam(defaultValue = "5m") String bucket,
+            @Parameter(description = "Comma separated, any of avg, min, max, sum, count, first, last")
+            @RequestParam(defaultValue = "avg,min,max,count") List<String> fn) {
+        Duration bucketSize;
+        try {
+            bucketSize = DurationStyle.detectAndParse(bucket);
+        } catch (IllegalArgumentException e) {
+            return new Status("Invalid bucket '%s'.".formatted(bucket), HttpStatus.BAD_REQUEST).toResponseEntity();
+        }
+        return sensorMeasurementService.findAggregates(username, serialNumber, from, to, bucketSize, fn)
+                .fold(Status::toResponseEntity, ResponseEntity::ok);
+    }
 }
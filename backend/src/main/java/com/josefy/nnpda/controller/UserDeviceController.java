@@ -1,11 +1,27 @@
 package com.josefy.nnpda.controller;
 
 import com.josefy.nnpda.dto.device.DeviceDto;
+import com.josefy.nnpda.dto.measurement.DeviceLatestMeasurementsDto;
+import com.josefy.nnpda.dto.measurement.LatestMeasurementDto;
+import com.josefy.nnpda.dto.measurement.MeasurementExportFormat;
+import com.josefy.nnpda.infrastructure.utils.Status;
 import com.josefy.nnpda.model.User;
+import com.josefy.nnpda.service.IMeasurementExportService;
+import com.josefy.nnpda.service.IMeasurementFeed;
 import com.josefy.nnpda.service.IUserDeviceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -13,7 +29,11 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.OffsetDateTime;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -24,6 +44,8 @@ import java.util.stream.StreamSupport;
 @Slf4j
 public class UserDeviceController {
     private final IUserDeviceService userDeviceService;
+    private final IMeasurementExportService measurementExportService;
+    private final IMeasurementFeed measurementFeed;
 
     @PreAuthorize("#username == authentication.principal.username or hasRole('ROLE_ADMIN')")
     @GetMapping
@@ -36,4 +58,101 @@ public class UserDeviceController {
                 .map(DeviceDto::fromEntity)
                 .collect(Collectors.toList()));
     }
+
+    @PreAuthorize("#username == authentication.principal.username or hasRole('ROLE_ADMIN')")
+    @GetMapping("/{serialNumber}/latest")
+    @Operation(
+            summary = "Get the latest reading of every sensor of a device",
+            description = "Served from memory, sensors that haven't sent anything yet have no timestamp and value.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(schema = @Schema(implementation = DeviceLatestMeasurementsDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Device is not assigned to the user"
+                    )
+            }
+    )
+    public ResponseEntity<?> getLatest(@PathVariable String username, @PathVariable String serialNumber) {
+        return userDeviceService.findLatestMeasurements(username, serialNumber)
+                .fold(Status::toResponseEntity, ResponseEntity::ok);
+    }
+
+    @PreAuthorize("#username == authentication.principal.username or hasRole('ROLE_ADMIN')")
+    @GetMapping(value = "/{serialNumber}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Live readings of every sensor of a device",
+            description = "Server-sent events, a 'measurement' event per reading as soon as it's stored, starting " +
+                    "with the latest reading of each sensor. Clients that can't keep up are disconnected and " +
+                    "should reconnect.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                                    schema = @Schema(implementation = LatestMeasurementDto.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Device is not assigned to the user"
+                    )
+            }
+    )
+    // spring only treats the body as an emitter when the declared type says so, errors can't be a ResponseEntity<?> here
+    public ResponseEntity<SseEmitter> stream(@PathVariable String username, @PathVariable String serialNumber) {
+        return measurementFeed.subscribe(username, serialNumber)
+                .fold(status -> {
+                    throw new ResponseStatusException(status.code(), status.message());
+                }, ResponseEntity::ok);
+    }
+
+    @PreAuthorize("#username == authentication.principal.username or hasRole('ROLE_ADMIN')")
+    @GetMapping("/{serialNumber}/export")
+    @Operation(
+            summary = "Export the readings of every sensor of a device",
+            description = "Streamed as it's read, sensor by sensor and oldest first, so any range can be exported. " +
+                    "CSV has a sensor_serial_number,timestamp,value header, NDJSON has one object per line.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = {
+                                    @Content(mediaType = "text/csv"),
+                                    @Content(mediaType = "application/x-ndjson"),
+                                    @Content(mediaType = "application/gzip")
+                            }
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid range or format"
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Device is not assigned to the user"
+                    )
+            }
+    )
+    public ResponseEntity<?> export(
+            @PathVariable String username,
+            @PathVariable String serialNumber,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @Parameter(description = "csv or ndjson")
+            @RequestParam(defaultValue = "csv") String format,
+            @Parameter(description = "Gzip the file, it's sent as application/gzip")
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        var exportFormat = MeasurementExportFormat.fromExtension(format).orElse(null);
+        if (exportFormat == null) {
+            return new Status("Unknown format '%s'.".formatted(format), HttpStatus.BAD_REQUEST).toResponseEntity();
+        }
+        var filename = "%s-measurements.%s%s".formatted(serialNumber, exportFormat.extension(), gzip ? ".gz" : "");
+        return measurementExportService.export(username, serialNumber, from, to, exportFormat, gzip)
+                .fold(Status::toResponseEntity, body -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.contentType()))
+                        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                                .filename(filename)
+                                .build()
+                                .toString())
+                        .body(body));
+    }
 }
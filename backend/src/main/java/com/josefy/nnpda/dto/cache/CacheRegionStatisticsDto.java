@@ -0,0 +1,23 @@
+package com.josefy.nnpda.dto.cache;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.hibernate.stat.CacheRegionStatistics;
+
+public record CacheRegionStatisticsDto(
+        @Schema(description = "Region name", example = "devices")
+        String region,
+        long hits,
+        long misses,
+        long puts,
+        @Schema(description = "hits / (hits + misses), null before the first lookup", example = "0.97")
+        Double hitRatio
+) {
+    public static CacheRegionStatisticsDto fromStatistics(CacheRegionStatistics statistics) {
+        long lookups = statistics.getHitCount() + statistics.getMissCount();
+        return new CacheRegionStatisticsDto(statistics.getRegionName(),
+                statistics.getHitCount(),
+                statistics.getMissCount(),
+                statistics.getPutCount(),
+                lookups == 0 ? null : (double) statistics.getHitCount() / lookups);
+    }
+}
@@ -0,0 +1,13 @@
+package com.josefy.nnpda.dto.cache;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+public record CacheStatisticsDto(
+        @Schema(description = "Whether hibernate collects statistics, all counts stay 0 otherwise")
+        boolean enabled,
+        @Schema(description = "Entity, collection and query result regions, counted since startup")
+        List<CacheRegionStatisticsDto> regions
+) {
+}
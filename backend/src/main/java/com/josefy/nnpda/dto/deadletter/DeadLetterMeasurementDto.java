@@ -0,0 +1,38 @@
+package com.josefy.nnpda.dto.deadletter;
+
+import com.josefy.nnpda.model.DeadLetterMeasurement;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
+public record DeadLetterMeasurementDto(
+        @Schema(description = "Dead letter id", example = "42")
+        long id,
+        @Schema(description = "Serial number of the device that sent the measurement", example = "DEADBEEF1234")
+        String deviceSerialNumber,
+        @Schema(description = "Sensor serial number the device reported", example = "CAFEBABE5678")
+        String sensorSerialNumber,
+        @Schema(description = "Timestamp of the measurement", example = "2023-10-13T15:23:01Z")
+        OffsetDateTime timestamp,
+        @Schema(description = "Measurement value", example = "25.5")
+        double value,
+        @Schema(description = "Why the measurement was rejected the last time")
+        String reason,
+        @Schema(description = "When the measurement was received")
+        Instant receivedAt,
+        @Schema(description = "How many times reprocessing was attempted", example = "0")
+        int attempts
+)
+{
+    public static DeadLetterMeasurementDto fromEntity(DeadLetterMeasurement deadLetter) {
+        return new DeadLetterMeasurementDto(deadLetter.getId(),
+                deadLetter.getDeviceSerialNumber(),
+                deadLetter.getSensorSerialNumber(),
+                deadLetter.getTimestamp(),
+                deadLetter.getValue(),
+                deadLetter.getReason(),
+                deadLetter.getReceivedAt(),
+                deadLetter.getAttempts());
+    }
+}
@@ -0,0 +1,32 @@
+package com.josefy.nnpda.dto.deadletter;
+
+import com.josefy.nnpda.repository.MeasurementWriteResult;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+public record ReprocessResultDto(
+        @Schema(description = "Dead letters that could be attributed now and were removed", example = "10")
+        int reprocessed,
+        @Schema(description = "Of those, newly stored measurements", example = "9")
+        int inserted,
+        @Schema(description = "Of those, measurements that overwrote a stored value", example = "0")
+        int updated,
+        @Schema(description = "Of those, measurements that were already stored", example = "1")
+        int skipped,
+        @Schema(description = "Dead letters that still can't be attributed", example = "2")
+        int stillRejected
+)
+{
+    public static final ReprocessResultDto EMPTY = new ReprocessResultDto(0, 0, 0, 0, 0);
+
+    public static ReprocessResultDto of(int reprocessed, MeasurementWriteResult written, int stillRejected) {
+        return new ReprocessResultDto(reprocessed, written.inserted(), written.updated(), written.skipped(), stillRejected);
+    }
+
+    public ReprocessResultDto plus(ReprocessResultDto other) {
+        return new ReprocessResultDto(reprocessed + other.reprocessed,
+                inserted + other.inserted,
+                updated + other.updated,
+                skipped + other.skipped,
+                stillRejected + other.stillRejected);
+    }
+}
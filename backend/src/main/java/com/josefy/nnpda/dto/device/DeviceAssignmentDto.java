@@ -0,0 +1,8 @@
+package com.josefy.nnpda.dto.device;
+
+public record DeviceAssignmentDto(
+        String serialNumber,
+        Long deviceId,
+        String username)
+{
+}
@@ -0,0 +1,10 @@
+package com.josefy.nnpda.dto.device;
+
+// one row of the devices-with-sensors listing, the sensor columns are null for a device without sensors
+public record DeviceSensorRowDto(
+        String serialNumber,
+        String modelName,
+        String sensorName,
+        String sensorSerialNumber)
+{
+}
@@ -5,6 +5,8 @@ import com.josefy.nnpda.model.Device;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotNull;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 public record DeviceWithSensorsDto(
@@ -25,4 +27,17 @@ public record DeviceWithSensorsDto(
                 sensors
         );
     }
+
+    // rows of the same device have to be next to each other
+    public static List<DeviceWithSensorsDto> fromRows(List<DeviceSensorRowDto> rows) {
+        var devices = new LinkedHashMap<String, DeviceWithSensorsDto>();
+        for (var row : rows) {
+            var device = devices.computeIfAbsent(row.serialNumber(),
+                    serialNumber -> new DeviceWithSensorsDto(serialNumber, row.modelName(), new ArrayList<>()));
+            if (row.sensorSerialNumber() != null) {
+                device.sensors().add(new SensorDto(row.sensorName(), row.sensorSerialNumber()));
+            }
+        }
+        return List.copyOf(devices.values());
+    }
 }
@@ -0,0 +1,13 @@
+package com.josefy.nnpda.dto.measurement;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+public record DeviceLatestMeasurementsDto(
+        @Schema(description = "Device serial number", example = "DEADBEEF1234")
+        String deviceSerialNumber,
+        @Schema(description = "Every sensor of the device, by serial number")
+        List<LatestMeasurementDto> sensors
+) {
+}
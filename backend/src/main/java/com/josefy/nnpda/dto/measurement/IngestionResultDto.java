@@ -0,0 +1,35 @@
+package com.josefy.nnpda.dto.measurement;
+
+import com.josefy.nnpda.repository.MeasurementWriteResult;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+public record IngestionResultDto(
+        @Schema(description = "Number of measurements in the request", example = "100")
+        int received,
+        @Schema(description = "Newly stored measurements", example = "97")
+        int inserted,
+        @Schema(description = "Already stored measurements whose value got overwritten", example = "1")
+        int updated,
+        @Schema(description = "Already stored measurements that were left as they were", example = "2")
+        int skipped,
+        @Schema(description = "Measurements for unknown sensors or sensors of another device, kept as dead letters",
+                example = "0")
+        int rejected,
+        @Schema(description = "Accepted to be written later (async ingestion), the counts aren't known yet")
+        boolean queued,
+        @Schema(description = "Rejected measurements by position, capped for huge uploads")
+        List<RejectedMeasurementDto> rejections
+)
+{
+    public static IngestionResultDto written(int received, MeasurementWriteResult result,
+                                             int rejected, List<RejectedMeasurementDto> rejections) {
+        return new IngestionResultDto(received, result.inserted(), result.updated(), result.skipped(),
+                rejected, false, rejections);
+    }
+
+    public static IngestionResultDto queued(int received, int rejected, List<RejectedMeasurementDto> rejections) {
+        return new IngestionResultDto(received, 0, 0, 0, rejected, true, rejections);
+    }
+}
@@ -0,0 +1,15 @@
+package com.josefy.nnpda.dto.measurement;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.OffsetDateTime;
+
+public record LatestMeasurementDto(
+        @Schema(description = "Sensor serial number", example = "DEADBEEF1234")
+        String sensorSerialNumber,
+        @Schema(description = "Time of the latest reading, null when the sensor hasn't sent any")
+        OffsetDateTime timestamp,
+        @Schema(description = "Latest reading, null when the sensor hasn't sent any", example = "21.5")
+        Double value
+) {
+}
@@ -0,0 +1,22 @@
+package com.josefy.nnpda.dto.measurement;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+public record MeasurementAggregateSeriesDto(
+        @Schema(description = "Sensor serial number", example = "DEADBEEF1234")
+        String sensorSerialNumber,
+        @Schema(description = "Bucket size", example = "PT5M")
+        Duration bucket,
+        @Schema(description = "Rollup tier the buckets were computed from", example = "MINUTE")
+        String tier,
+        @Schema(description = "Bucket starts in epoch milliseconds, oldest first, only buckets with readings")
+        List<Long> timestamps,
+        @Schema(description = "One array per requested function, aligned with timestamps",
+                example = "{\"avg\": [21.4, 21.7], \"count\": [300, 300]}")
+        Map<String, List<? extends Number>> values
+) {
+}
@@ -0,0 +1,24 @@
+package com.josefy.nnpda.dto.measurement;
+
+import com.josefy.nnpda.repository.IMeasurementChangeRepository.Change;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.OffsetDateTime;
+
+public record MeasurementChangeDto(
+        @Schema(description = "Position in the feed, <transaction id>-<order in the transaction>",
+                example = "7713-1042")
+        String position,
+        @Schema(description = "Sensor serial number", example = "DEADBEEF1234")
+        String sensorSerialNumber,
+        @Schema(description = "Serial number of the sensor's device, null when it has none", example = "CAFEBABE5678")
+        String deviceSerialNumber,
+        OffsetDateTime timestamp,
+        @Schema(example = "21.5")
+        double value
+) {
+    public static MeasurementChangeDto fromChange(Change change) {
+        return new MeasurementChangeDto(change.position().toString(), change.sensorSerialNumber(), change.deviceSerialNumber(),
+                change.timestamp(), change.value());
+    }
+}
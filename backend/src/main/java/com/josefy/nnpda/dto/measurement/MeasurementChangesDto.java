@@ -0,0 +1,14 @@
+package com.josefy.nnpda.dto.measurement;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+public record MeasurementChangesDto(
+        @Schema(description = "Inserted or updated readings in transaction order")
+        List<MeasurementChangeDto> changes,
+        @Schema(description = "Pass as 'after' to continue, the 'after' of the request when nothing changed",
+                example = "7713-1042")
+        String next
+) {
+}
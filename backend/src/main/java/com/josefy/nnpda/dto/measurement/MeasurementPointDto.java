@@ -0,0 +1,14 @@
+package com.josefy.nnpda.dto.measurement;
+
+import com.josefy.nnpda.repository.MeasurementRow;
+
+import java.time.OffsetDateTime;
+
+public record MeasurementPointDto(
+        OffsetDateTime timestamp,
+        double value
+) {
+    public static MeasurementPointDto fromRow(MeasurementRow row) {
+        return new MeasurementPointDto(row.timestamp(), row.value());
+    }
+}
@@ -0,0 +1,20 @@
+package com.josefy.nnpda.dto.measurement;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.OffsetDateTime;
+
+public record MeasurementRollupDto(
+        @Schema(description = "Start of the bucket")
+        OffsetDateTime bucket,
+        @Schema(description = "Number of readings in the bucket", example = "60")
+        long count,
+        double min,
+        double max,
+        double avg,
+        @Schema(description = "Value of the earliest reading in the bucket")
+        double first,
+        @Schema(description = "Value of the latest reading in the bucket")
+        double last
+) {
+}
@@ -0,0 +1,18 @@
+package com.josefy.nnpda.dto.measurement;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Duration;
+import java.util.List;
+
+public record MeasurementRollupSeriesDto(
+        @Schema(description = "Sensor serial number", example = "DEADBEEF1234")
+        String sensorSerialNumber,
+        @Schema(description = "Bucket size", example = "PT1H")
+        Duration resolution,
+        @Schema(description = "Rollup tier the buckets were computed from", example = "HOUR")
+        String tier,
+        @Schema(description = "Buckets with at least one reading, oldest first")
+        List<MeasurementRollupDto> buckets
+) {
+}
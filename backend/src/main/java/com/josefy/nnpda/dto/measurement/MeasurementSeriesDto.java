@@ -0,0 +1,17 @@
+package com.josefy.nnpda.dto.measurement;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public record MeasurementSeriesDto(
+        @Schema(description = "Sensor serial number", example = "DEADBEEF1234")
+        String sensorSerialNumber,
+        @Schema(description = "Readings oldest first")
+        List<MeasurementPointDto> measurements,
+        @Schema(description = "Pass as 'after' to get the next page, null on the last page",
+                example = "2024-05-01T12:00:00Z")
+        OffsetDateTime next
+) {
+}
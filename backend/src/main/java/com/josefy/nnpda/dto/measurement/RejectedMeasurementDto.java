@@ -0,0 +1,13 @@
+package com.josefy.nnpda.dto.measurement;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+public record RejectedMeasurementDto(
+        @Schema(description = "Position of the measurement in the request", example = "3")
+        int index,
+        @Schema(description = "Why the measurement wasn't stored",
+                example = "Sensor with serial number 'DEADBEEF1234' does not belong to given device.")
+        String reason
+)
+{
+}
@@ -0,0 +1,21 @@
+package com.josefy.nnpda.dto.retention;
+
+import com.josefy.nnpda.model.RetentionClass;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+public record RetentionClassDto(
+        @Schema(description = "Retention class name", example = "short-term")
+        @NotBlank(message = "Name is required.")
+        @Size(max = 50, message = "Name must be at most 50 characters.")
+        String name,
+        @Schema(description = "Days measurements are kept for", example = "90")
+        @Positive(message = "Retention days must be positive.")
+        int retentionDays
+) {
+    public static RetentionClassDto fromEntity(RetentionClass retentionClass) {
+        return new RetentionClassDto(retentionClass.getName(), retentionClass.getRetentionDays());
+    }
+}
@@ -0,0 +1,24 @@
+package com.josefy.nnpda.dto.retention;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.util.List;
+
+public record RetentionReportDto(
+        Instant startedAt,
+        Instant finishedAt,
+        @Schema(description = "Partitions that were dropped as a whole")
+        List<String> droppedPartitions,
+        @Schema(description = "Rows in the dropped partitions, estimated by the planner statistics")
+        long droppedRows,
+        @Schema(description = "Disk space released by dropping partitions")
+        long droppedBytes,
+        @Schema(description = "Rows removed by batched deletes")
+        long deletedRows,
+        @Schema(description = "Space freed for reuse by the deletes (after vacuum), estimated from the average row size")
+        long deletedBytes,
+        @Schema(description = "Partitions that were due but couldn't be detached without waiting on ingestion, retried on the next run")
+        List<String> postponedPartitions
+) {
+}
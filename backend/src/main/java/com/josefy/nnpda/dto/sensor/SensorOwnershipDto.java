@@ -0,0 +1,11 @@
+package com.josefy.nnpda.dto.sensor;
+
+public record SensorOwnershipDto(
+        String serialNumber,
+        Long sensorId,
+        Long deviceId)
+{
+    public SensorOwnershipDto withDevice(Long deviceId) {
+        return new SensorOwnershipDto(serialNumber, sensorId, deviceId);
+    }
+}
@@ -0,0 +1,8 @@
+package com.josefy.nnpda.events;
+
+// the device got assigned to the user, or unassigned when assigned is false
+public record DeviceAssignmentChangedEvent(long deviceId,
+                                           String serialNumber,
+                                           String username,
+                                           boolean assigned) {
+}
@@ -0,0 +1,4 @@
+package com.josefy.nnpda.events;
+
+public record DeviceCredentialRevokedEvent(long deviceId, String derivedId) {
+}
@@ -0,0 +1,4 @@
+package com.josefy.nnpda.events;
+
+public record DeviceDeletedEvent(long deviceId, String serialNumber) {
+}
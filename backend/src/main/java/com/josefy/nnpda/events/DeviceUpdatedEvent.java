@@ -0,0 +1,4 @@
+package com.josefy.nnpda.events;
+
+public record DeviceUpdatedEvent(long deviceId, String previousSerialNumber, String serialNumber) {
+}
@@ -0,0 +1,9 @@
+package com.josefy.nnpda.events;
+
+import com.josefy.nnpda.repository.MeasurementRow;
+
+import java.util.List;
+
+// published inside the compacting transaction, rows are all readings of every minute that got new readings packed
+public record MeasurementsCompactedEvent(List<MeasurementRow> rows) {
+}
@@ -0,0 +1,13 @@
+package com.josefy.nnpda.events;
+
+import com.josefy.nnpda.repository.MeasurementRow;
+
+import java.util.List;
+
+/*
+ * Published inside the writing transaction with the rows it inserted or updated, never ones the merge skipped.
+ * The listeners are synchronous so whatever they write (rollup dirty marks, outbox entries) commits or rolls back
+ * with the readings, which also means every write pays for them. MeasurementIngestBenchmark measures how much.
+ */
+public record MeasurementsWrittenEvent(List<MeasurementRow> rows) {
+}
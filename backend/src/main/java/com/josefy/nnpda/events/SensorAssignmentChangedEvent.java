@@ -0,0 +1,8 @@
+package com.josefy.nnpda.events;
+
+// previousSerialNumber differs from serialNumber when the sensor got renamed, null for new sensors
+public record SensorAssignmentChangedEvent(String previousSerialNumber,
+                                           String serialNumber,
+                                           long sensorId,
+                                           Long deviceId) {
+}
@@ -0,0 +1,32 @@
+package com.josefy.nnpda.infrastructure.dto;
+
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.DeviceCredential;
+
+// Immutable so it can be cached and shared between requests, unlike the entities it's read from
+public record DeviceCredentialDto(
+        String derivedId,
+        String apiKey,
+        boolean revoked,
+        long deviceId,
+        String serialNumber,
+        String modelName
+)
+{
+    public static DeviceCredentialDto fromEntity(DeviceCredential credential) {
+        var device = credential.getDevice();
+        return new DeviceCredentialDto(credential.getDerivedId(),
+                credential.getApiKey(),
+                credential.isRevoked(),
+                device.getId(),
+                device.getSerialNumber(),
+                device.getModelName());
+    }
+
+    // fresh detached instance for the security principal, nothing else is loaded
+    public Device toDevice() {
+        var device = new Device(serialNumber, modelName);
+        device.setId(deviceId);
+        return device;
+    }
+}
@@ -2,6 +2,9 @@ package com.josefy.nnpda.infrastructure.repository;
 
 import com.josefy.nnpda.model.Role;
 import com.josefy.nnpda.model.RoleEnum;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 
 import java.util.Optional;
@@ -9,5 +12,6 @@ import java.util.Optional;
 public interface IRoleRepository extends CrudRepository<Role, Long> {
     boolean existsByName(RoleEnum name);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Role> findByName(RoleEnum name);
 }
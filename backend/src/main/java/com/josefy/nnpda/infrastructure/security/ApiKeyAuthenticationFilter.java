@@ -7,37 +7,47 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.filter.OncePerRequestFilter;
-import org.springframework.web.util.ContentCachingRequestWrapper;
 
 import java.io.IOException;
 import java.util.Collections;
 
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class ApiKeyAuthenticationFilter extends OncePerRequestFilter {
     // todo: We expose the serial number in our API endpoint anyway lmao
     private final IDeviceCredentialService deviceCredentialsService;
     private final IHashProvider hashProvider;
+    private final long spoolThreshold;
+    private final long maxBodySize;
+
+    public ApiKeyAuthenticationFilter(IDeviceCredentialService deviceCredentialsService,
+                                      IHashProvider hashProvider,
+                                      @Value("${device-requests.spool-threshold:256KB}") DataSize spoolThreshold,
+                                      @Value("${device-requests.max-body-size:64MB}") DataSize maxBodySize) {
+        this.deviceCredentialsService = deviceCredentialsService;
+        this.hashProvider = hashProvider;
+        this.spoolThreshold = spoolThreshold.toBytes();
+        this.maxBodySize = maxBodySize.toBytes();
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
-        var wrappedRequest = new ContentCachingRequestWrapper(request);
-        String derivedId = wrappedRequest.getHeader("X-DERIVED-ID");
-        String hmac = wrappedRequest.getHeader("X-HMAC-SIG");
-        log.info("Request to: " + wrappedRequest.getRequestURI());
-        log.info("Servlet path: " + wrappedRequest.getServletPath());
+        String derivedId = request.getHeader("X-DERIVED-ID");
+        String hmac = request.getHeader("X-HMAC-SIG");
+        log.info("Request to: " + request.getRequestURI());
+        log.info("Servlet path: " + request.getServletPath());
 
-        if (!wrappedRequest.getRequestURI().contains("/devices/measurements")) {
-            filterChain.doFilter(wrappedRequest, response);
+        if (!request.getRequestURI().contains("/devices/measurements")) {
+            filterChain.doFilter(request, response);
             return;
         }
 
@@ -47,22 +57,31 @@ public class ApiKeyAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
         var credential = deviceCredentialsService.findDeviceWithCredentials(derivedId);
-        if (credential.isEmpty() || credential.get().isRevoked()) {
+        if (credential.isEmpty() || credential.get().revoked()) {
             response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid or revoked API key");
             return;
         }
-        String key = credential.get().getApiKey();
-        try (var inputStream = wrappedRequest.getInputStream()) {
-            if (!hashProvider.isHmacValid(wrappedRequest.getInputStream(), key, hmac)) {
+        String key = credential.get().apiKey();
+        // the whole body is received and checked here, no handler ever sees a body the device didn't sign
+        var verifier = hashProvider.hmacVerifier(key);
+        SignedBodyRequest signedRequest;
+        try {
+            signedRequest = SignedBodyRequest.receive(request, verifier, spoolThreshold, maxBodySize);
+        } catch (SignedBodyRequest.BodyTooLargeException e) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+            return;
+        }
+        try (signedRequest) {
+            if (!verifier.verify(hmac)) {
                 response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid signature");
                 return;
             }
+            Device device = credential.get().toDevice();
+            UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(device,
+                    null,
+                    Collections.emptyList());
+            SecurityContextHolder.getContext().setAuthentication(auth);
+            filterChain.doFilter(signedRequest, response);
         }
-        Device device = credential.get().getDevice();
-        UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(device,
-                null,
-                Collections.emptyList());
-        SecurityContextHolder.getContext().setAuthentication(auth);
-        filterChain.doFilter(wrappedRequest, response);
     }
 }
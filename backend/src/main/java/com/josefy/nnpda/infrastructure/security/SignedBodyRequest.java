@@ -0,0 +1,186 @@
+package com.josefy.nnpda.infrastructure.security;
+
+import com.josefy.nnpda.infrastructure.utils.IHmacVerifier;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+ * The body of a device request, received in full and fed through the hmac in the same pass before any handler runs.
+ * Small bodies stay in memory, anything past the spool threshold goes to a temp file deleted on close(),
+ * so a slow upload only ever ties up the request thread, never a transaction.
+ */
+class SignedBodyRequest extends HttpServletRequestWrapper implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Received memory;
+    private final Path file;
+    private final long length;
+    private ServletInputStream body;
+
+    private SignedBodyRequest(HttpServletRequest request, Received memory, Path file, long length) {
+        super(request);
+        this.memory = memory;
+        this.file = file;
+        this.length = length;
+    }
+
+    static SignedBodyRequest receive(HttpServletRequest request, IHmacVerifier hmac,
+                                     long spoolThreshold, long maxBytes) throws IOException {
+        if (request.getContentLengthLong() > maxBytes) {
+            throw new BodyTooLargeException(maxBytes);
+        }
+        var memory = new Received();
+        OutputStream out = memory;
+        Path file = null;
+        long received = 0;
+        var buffer = new byte[BUFFER_SIZE];
+        try (var in = request.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                received += read;
+                if (received > maxBytes) {
+                    throw new BodyTooLargeException(maxBytes);
+                }
+                hmac.update(buffer, 0, read);
+                if (file == null && received > spoolThreshold) {
+                    file = Files.createTempFile("device-request", ".body");
+                    out = Files.newOutputStream(file);
+                    memory.writeTo(out);
+                    memory = null;
+                }
+                out.write(buffer, 0, read);
+            }
+            out.close();
+        } catch (IOException | RuntimeException e) {
+            if (file != null) {
+                out.close();
+                Files.deleteIfExists(file);
+            }
+            throw e;
+        }
+        return new SignedBodyRequest(request, memory, file, received);
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (body == null) {
+            body = new ReceivedInputStream(file == null
+                    ? memory.toInputStream()
+                    : new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+        }
+        return body;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        var charset = getCharacterEncoding() == null
+                ? StandardCharsets.UTF_8
+                : Charset.forName(getCharacterEncoding());
+        return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (body != null) {
+            body.close();
+        }
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    static class BodyTooLargeException extends IOException {
+        BodyTooLargeException(long maxBytes) {
+            super("Request body is larger than " + maxBytes + " bytes");
+        }
+    }
+
+    // hands out the buffer itself instead of the copy toByteArray() would make
+    private static class Received extends ByteArrayOutputStream {
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
+    private class ReceivedInputStream extends ServletInputStream {
+        private final InputStream delegate;
+        private long position;
+        private ReadListener readListener;
+
+        ReceivedInputStream(InputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b != -1) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = delegate.read(b, off, len);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return position == length;
+        }
+
+        @Override
+        public boolean isReady() {
+            // everything is already here
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            if (readListener == null) {
+                throw new NullPointerException("readListener");
+            }
+            if (this.readListener != null || !isAsyncStarted()) {
+                throw new IllegalStateException("A read listener needs an async request and can only be set once");
+            }
+            this.readListener = readListener;
+            // nothing left to wait for, the listener can have all of it right away
+            try {
+                if (!isFinished()) {
+                    readListener.onDataAvailable();
+                }
+                if (isFinished()) {
+                    readListener.onAllDataRead();
+                }
+            } catch (IOException | RuntimeException e) {
+                readListener.onError(e);
+            }
+        }
+    }
+}
@@ -1,22 +1,118 @@
 package com.josefy.nnpda.infrastructure.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.josefy.nnpda.events.DeviceCredentialRevokedEvent;
+import com.josefy.nnpda.events.DeviceDeletedEvent;
+import com.josefy.nnpda.events.DeviceUpdatedEvent;
+import com.josefy.nnpda.infrastructure.dto.DeviceCredentialDto;
 import com.josefy.nnpda.infrastructure.repository.IDeviceCredentialRepository;
 import com.josefy.nnpda.infrastructure.service.IDeviceCredentialService;
-import com.josefy.nnpda.infrastructure.utils.IHashProvider;
-import com.josefy.nnpda.model.DeviceCredential;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.Duration;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/*
+ * Every signed request starts with a credential lookup, so they're cached by derived id.
+ * Unknown ids aren't cached, otherwise anyone could fill the cache with garbage.
+ * Revoking, deleting or renaming a device evicts its entries once the change commits, found through
+ * derivedIdsByDevice. A load that was already running when the device got evicted may have read the old row,
+ * every device eviction bumps a version the lookup compares against after loading, and drops what it loaded if stale.
+ */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class DeviceCredentialService implements IDeviceCredentialService {
     private final IDeviceCredentialRepository deviceCredentialRepository;
-    private final IHashProvider hashProvider;
+    private final Cache<String, DeviceCredentialDto> byDerivedId;
+    private final Map<Long, Set<String>> derivedIdsByDevice = new ConcurrentHashMap<>();
+    // version of the device's last eviction, taken from evictions
+    private final Map<Long, Long> evictedAt = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public DeviceCredentialService(IDeviceCredentialRepository deviceCredentialRepository,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${device-credentials.cache.maximum-size:10000}") long maximumSize,
+                                   @Value("${device-credentials.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.deviceCredentialRepository = deviceCredentialRepository;
+        this.byDerivedId = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                // synchronous with the removal, a reload of the same id can't be unindexed by it
+                .evictionListener((String derivedId, DeviceCredentialDto credential, RemovalCause cause) ->
+                        unindex(credential))
+                .recordStats()
+                .build();
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size...
+        CaffeineCacheMetrics.monitor(meterRegistry, byDerivedId, "device-credentials");
+    }
 
     @Override
-    public Optional<DeviceCredential> findDeviceWithCredentials(String derivedId) {
-        return deviceCredentialRepository.findDeviceWithCredentials(derivedId);
+    public Optional<DeviceCredentialDto> findDeviceWithCredentials(String derivedId) {
+        while (true) {
+            long version = evictions.get();
+            var credential = byDerivedId.get(derivedId, key -> {
+                var loaded = deviceCredentialRepository.findDeviceWithCredentials(key)
+                        .map(DeviceCredentialDto::fromEntity)
+                        .orElse(null);
+                if (loaded != null) {
+                    index(loaded);
+                }
+                return loaded;
+            });
+            if (credential == null || evictedAt.getOrDefault(credential.deviceId(), -1L) <= version) {
+                return Optional.ofNullable(credential);
+            }
+            // the device was evicted while this was loading, what got loaded may be from before the change
+            byDerivedId.invalidate(derivedId);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCredentialRevoked(DeviceCredentialRevokedEvent event) {
+        evictDevice(event.deviceId());
+        byDerivedId.invalidate(event.derivedId());
+        log.info("Evicted revoked credentials of device {}", event.deviceId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeviceUpdated(DeviceUpdatedEvent event) {
+        evictDevice(event.deviceId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeviceDeleted(DeviceDeletedEvent event) {
+        evictDevice(event.deviceId());
+    }
+
+    private void evictDevice(long deviceId) {
+        // bumped first, a load that indexes after the ids are taken below sees it and drops itself
+        evictedAt.put(deviceId, evictions.incrementAndGet());
+        var derivedIds = derivedIdsByDevice.remove(deviceId);
+        if (derivedIds != null) {
+            byDerivedId.invalidateAll(derivedIds);
+        }
+    }
+
+    private void index(DeviceCredentialDto credential) {
+        derivedIdsByDevice.computeIfAbsent(credential.deviceId(), id -> ConcurrentHashMap.newKeySet())
+                .add(credential.derivedId());
+    }
+
+    private void unindex(DeviceCredentialDto credential) {
+        derivedIdsByDevice.computeIfPresent(credential.deviceId(), (id, derivedIds) -> {
+            derivedIds.remove(credential.derivedId());
+            return derivedIds.isEmpty() ? null : derivedIds;
+        });
     }
 }
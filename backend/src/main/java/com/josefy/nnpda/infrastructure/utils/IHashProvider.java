@@ -8,4 +8,5 @@ public interface IHashProvider {
     public boolean isHmacValid(String input, String key, String hash);
     public boolean isHmacValid(InputStream input, String key, String hash) throws IOException;
     public String hmac(String input, String key);
+    public IHmacVerifier hmacVerifier(String key);
 }
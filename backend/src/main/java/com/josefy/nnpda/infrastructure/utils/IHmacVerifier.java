@@ -0,0 +1,8 @@
+package com.josefy.nnpda.infrastructure.utils;
+
+// One HMAC check over data fed in piece by piece, verify() finishes it and can only be called once
+public interface IHmacVerifier {
+    void update(byte b);
+    void update(byte[] bytes, int offset, int length);
+    boolean verify(String base64Signature);
+}
@@ -1,19 +1,40 @@
 package com.josefy.nnpda.infrastructure.utils;
 
-import org.eclipse.angus.mail.util.BASE64EncoderStream;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.stereotype.Component;
 import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
 
 @Component
 public class Sha256Provider implements IHashProvider {
     private static int BUFFER_SIZE = 4096;
+    // initialized macs kept per key, a device rarely has more requests in flight than this
+    private static final int MACS_PER_KEY = 4;
+    private static final byte[] BASE64_DECODE = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_DECODE, (byte) -1);
+        var alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_DECODE[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final Cache<String, ArrayBlockingQueue<PooledHmac>> macsByKey = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
 
     public String hash(String input) {
         try {
@@ -28,40 +49,70 @@ public class Sha256Provider implements IHashProvider {
         }
     }
     public boolean isHmacValid(String input, String key, String hash) {
-        return hmac(input, key).equals(hash);
+        var verifier = borrow(key);
+        var bytes = input.getBytes(StandardCharsets.UTF_8);
+        verifier.update(bytes, 0, bytes.length);
+        return verifier.verify(hash);
     }
 
     @Override
     public boolean isHmacValid(InputStream input, String key, String hash) throws IOException {
-        try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-            mac.init(secretKey);
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int bytesRead;
-            while ((bytesRead = input.read(buffer)) != -1) {
-                mac.update(buffer, 0, bytesRead);
-            }
-            byte[] bytes = mac.doFinal();
-            String result =  Base64.getEncoder().encodeToString(bytes);
-            return result.equals(hash);
-        } catch (Exception e) {
-            throw new RuntimeException("Error while validating provided hash", e);
+        var verifier = borrow(key);
+        int bytesRead;
+        while ((bytesRead = input.read(verifier.buffer)) != -1) {
+            verifier.update(verifier.buffer, 0, bytesRead);
         }
+        return verifier.verify(hash);
+    }
+
+    @Override
+    public IHmacVerifier hmacVerifier(String key) {
+        return borrow(key);
     }
 
     public String hmac(String input, String key) {
+        var pooled = borrow(key);
         try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-            mac.init(secretKey);
-            byte[] derivedBytes = mac.doFinal(input.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(derivedBytes);
-        } catch (Exception e) {
-            throw new RuntimeException("Error while hashing with HMAC SHA-256.", e);
+            return Base64.getEncoder().encodeToString(pooled.mac.doFinal(input.getBytes(StandardCharsets.UTF_8)));
+        } finally {
+            pooled.release();
         }
     }
 
+    private PooledHmac borrow(String key) {
+        var pool = macsByKey.get(key, k -> new ArrayBlockingQueue<>(MACS_PER_KEY));
+        var pooled = pool.poll();
+        return pooled != null ? pooled : new PooledHmac(key, pool);
+    }
+
+    // Base64 straight into the given buffer, -1 if it isn't valid base64 or doesn't fit
+    private static int decodeBase64(String source, byte[] target) {
+        int length = source.length();
+        while (length > 0 && source.charAt(length - 1) == '=') {
+            length--;
+        }
+        int written = 0;
+        int bits = 0;
+        int accumulator = 0;
+        for (int i = 0; i < length; i++) {
+            char c = source.charAt(i);
+            int value = c < BASE64_DECODE.length ? BASE64_DECODE[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            accumulator = (accumulator << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                if (written == target.length) {
+                    return -1;
+                }
+                target[written++] = (byte) (accumulator >> bits);
+            }
+        }
+        return written;
+    }
+
     private String bytesToHex(byte[] hash) {
         StringBuilder hexString = new StringBuilder(2 * hash.length);
         for (byte b : hash) {
@@ -70,4 +121,58 @@ public class Sha256Provider implements IHashProvider {
         }
         return hexString.toString();
     }
+
+    /*
+     * An initialized mac with its scratch buffers, goes back to its key's pool once verified.
+     * One that never gets verified (aborted request...) is just left to the GC.
+     */
+    private static final class PooledHmac implements IHmacVerifier {
+        private final Mac mac;
+        private final ArrayBlockingQueue<PooledHmac> pool;
+        private final byte[] digest;
+        private final byte[] signature;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        PooledHmac(String key, ArrayBlockingQueue<PooledHmac> pool) {
+            try {
+                mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            } catch (Exception e) {
+                throw new RuntimeException("Error while initializing HMAC SHA-256.", e);
+            }
+            this.pool = pool;
+            this.digest = new byte[mac.getMacLength()];
+            this.signature = new byte[mac.getMacLength()];
+        }
+
+        @Override
+        public void update(byte b) {
+            mac.update(b);
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            mac.update(bytes, offset, length);
+        }
+
+        @Override
+        public boolean verify(String base64Signature) {
+            try {
+                mac.doFinal(digest, 0);
+                return base64Signature != null
+                        && decodeBase64(base64Signature, signature) == signature.length
+                        // constant time, doesn't tell how much of the signature was right
+                        && MessageDigest.isEqual(digest, signature);
+            } catch (ShortBufferException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            mac.reset();
+            pool.offer(this);
+        }
+    }
 }
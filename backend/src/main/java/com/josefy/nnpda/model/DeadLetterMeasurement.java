@@ -0,0 +1,48 @@
+package com.josefy.nnpda.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
+/*
+ * Readings a device sent for a sensor that's unknown or not assigned to it, kept so they can be reprocessed
+ * once the catalog is fixed. No foreign keys on purpose, the device or sensor may not exist (anymore).
+ */
+@Entity
+@NoArgsConstructor
+@Getter @Setter
+@Table(name = "dead_letter_measurements",
+        indexes = @Index(name = "idx_dead_letter_device_serial_number", columnList = "device_serial_number"))
+public class DeadLetterMeasurement {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "device_id", nullable = false)
+    private Long deviceId;
+
+    @Column(name = "device_serial_number", length = 12, nullable = false)
+    private String deviceSerialNumber;
+
+    @Column(name = "sensor_serial_number")
+    private String sensorSerialNumber;
+
+    @Column(nullable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime timestamp;
+
+    @Column(nullable = false)
+    private Double value;
+
+    @Column(nullable = false)
+    private String reason;
+
+    @Column(name = "received_at", nullable = false)
+    private Instant receivedAt;
+
+    @Column(nullable = false)
+    private int attempts;
+}
@@ -5,6 +5,8 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.LazyToOne;
 
 import java.util.ArrayList;
@@ -19,7 +21,13 @@ import java.util.List;
         name = "device-with-sensors",
         attributeNodes = @NamedAttributeNode("sensors")
 )
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Device.CACHE_REGION)
 public class Device {
+    public static final String CACHE_REGION = "devices";
+    // inverse side, hibernate.cache.auto_evict_collection_cache drops it when a sensor changes its device
+    public static final String SENSORS_CACHE_REGION = "devices.sensors";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @EqualsAndHashCode.Include
@@ -36,8 +44,13 @@ public class Device {
     private DeviceCredential deviceCredential;
 
     @OneToMany(mappedBy = "device", fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Device.SENSORS_CACHE_REGION)
     private List<Sensor> sensors = new ArrayList<>();
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "retention_class_id")
+    private RetentionClass retentionClass;
+
     public Device(String serialNumber, String modelName) {
         this.serialNumber = serialNumber;
         this.modelName = modelName;
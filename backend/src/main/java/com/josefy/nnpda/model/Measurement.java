@@ -5,6 +5,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.metamodel.mapping.ValueMapping;
 
 import java.time.Instant;
@@ -14,22 +15,39 @@ import java.time.ZonedDateTime;
 /*
  * it might make more sense to have a separate table per data type and retention period
  * but for the sake of simplicity, we'll just have one table for all data types and retention periods
+ *
+ * The Liquibase changelog turns the table into one range partitioned by timestamp (primary key (id, timestamp),
+ * id from measurements_id_seq), see MeasurementPartitionMaintainer.
+ *
+ * Ids come from measurements_id_seq through Hibernate's pooled optimizer, one nextval covers ALLOCATION_SIZE
+ * entities, so inserts don't need a round trip each and can be batched (hibernate.jdbc.batch_size). The increment
+ * of the sequence has to match. JdbcMeasurementWriter leaves the id to the column default, which takes a whole
+ * block of ids per row, the gaps don't matter.
+ *
+ * ingest_xid (the writing transaction) and ingest_seq place a reading in the change feed, they're only ever set by
+ * the database (see JdbcMeasurementChangeRepository).
  */
 @Entity
 @NoArgsConstructor
 @Getter @Setter
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Table(name = "measurements",
+        // uk_sensor_timestamp covers lookups by sensor_id
         indexes = {
-        @Index(name = "idx_sensor_id", columnList = "sensor_id"),
-        @Index(name = "idx_timestamp", columnList = "timestamp")} ,
+            @Index(name = "idx_timestamp", columnList = "timestamp"),
+            @Index(name = "idx_ingest_position", columnList = "ingest_xid, ingest_seq")
+        },
         uniqueConstraints = {
             @UniqueConstraint(name = "uk_sensor_timestamp", columnNames = {"sensor_id", "timestamp"})
         }
 )
 public class Measurement {
+    public static final int ALLOCATION_SIZE = 100;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "measurements_id")
+    @SequenceGenerator(name = "measurements_id", sequenceName = "measurements_id_seq", allocationSize = ALLOCATION_SIZE)
+    @Column(columnDefinition = "BIGINT DEFAULT nextval('measurements_id_seq')")
     @EqualsAndHashCode.Include
     private Long id;
 
@@ -42,4 +60,12 @@ public class Measurement {
 
     @Column(nullable = false)
     private Double value;
+
+    // xid8, read as text
+    @Column(name = "ingest_xid", columnDefinition = "xid8", insertable = false, updatable = false)
+    @ColumnDefault("pg_current_xact_id()")
+    private String ingestXid;
+
+    @Column(name = "ingest_seq", columnDefinition = "BIGSERIAL", insertable = false, updatable = false)
+    private Long ingestSeq;
 }
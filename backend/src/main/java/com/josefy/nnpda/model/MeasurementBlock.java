@@ -0,0 +1,40 @@
+package com.josefy.nnpda.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+
+/*
+ * Readings of one sensor packed by MeasurementBlockCodec, written by MeasurementCompactor once they're old enough.
+ * A block never spans two hours or splits a minute, so a minute is either in exactly one block or not compacted.
+ */
+@Entity
+@NoArgsConstructor
+@Getter @Setter
+@Table(name = "measurement_blocks",
+        indexes = {@Index(name = "idx_measurement_blocks_sensor_time", columnList = "sensor_id, min_timestamp, max_timestamp")}
+)
+public class MeasurementBlock {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "sensor_id", nullable = false)
+    private Sensor sensor;
+
+    @Column(name = "min_timestamp", nullable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime minTimestamp;
+
+    @Column(name = "max_timestamp", nullable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime maxTimestamp;
+
+    @Column(name = "reading_count", nullable = false)
+    private int readingCount;
+
+    @Column(nullable = false, columnDefinition = "BYTEA")
+    private byte[] data;
+}
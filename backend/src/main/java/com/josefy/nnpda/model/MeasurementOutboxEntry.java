@@ -0,0 +1,43 @@
+package com.josefy.nnpda.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+
+/*
+ * A stored reading waiting for MeasurementIndexer, with the serial numbers it had when it was written. Deleted once
+ * elasticsearch has it, so whatever is left is exactly what still has to be indexed.
+ */
+@Entity
+@NoArgsConstructor
+@Getter @Setter
+@Table(name = "measurement_outbox")
+public class MeasurementOutboxEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "sensor_id", nullable = false)
+    private Long sensorId;
+
+    @Column(name = "sensor_serial_number", nullable = false)
+    private String sensorSerialNumber;
+
+    @Column(name = "device_serial_number")
+    private String deviceSerialNumber;
+
+    @Column(nullable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime timestamp;
+
+    @Column(nullable = false)
+    private double value;
+
+    @Column(nullable = false, columnDefinition = "INT DEFAULT 0")
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE DEFAULT now()")
+    private OffsetDateTime nextAttemptAt;
+}
@@ -0,0 +1,50 @@
+package com.josefy.nnpda.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+
+/*
+ * Aggregate of one sensor's readings in one bucket, one table per resolution. Written only by the rollup worker
+ * (JdbcMeasurementRollupRepository), the entities are here so the tables exist and can be looked at.
+ * No foreign key on sensor_id, rollups may outlive the raw measurements.
+ */
+@MappedSuperclass
+@NoArgsConstructor
+@Getter @Setter
+public abstract class MeasurementRollup {
+    @Id
+    @Column(name = "sensor_id")
+    private Long sensorId;
+
+    @Id
+    @Column(nullable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime bucket;
+
+    @Column(name = "value_count", nullable = false)
+    private long count;
+
+    @Column(name = "value_min", nullable = false)
+    private double min;
+
+    @Column(name = "value_max", nullable = false)
+    private double max;
+
+    @Column(name = "value_sum", nullable = false)
+    private double sum;
+
+    @Column(name = "first_timestamp", nullable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime firstTimestamp;
+
+    @Column(name = "first_value", nullable = false)
+    private double firstValue;
+
+    @Column(name = "last_timestamp", nullable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime lastTimestamp;
+
+    @Column(name = "last_value", nullable = false)
+    private double lastValue;
+}
@@ -0,0 +1,24 @@
+package com.josefy.nnpda.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+
+// minute buckets that got new readings since the rollup worker last looked at them
+@Entity
+@NoArgsConstructor
+@Getter @Setter
+@IdClass(MeasurementRollupId.class)
+@Table(name = "measurement_rollup_dirty")
+public class MeasurementRollupDirty {
+    @Id
+    @Column(name = "sensor_id")
+    private Long sensorId;
+
+    @Id
+    @Column(nullable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime bucket;
+}
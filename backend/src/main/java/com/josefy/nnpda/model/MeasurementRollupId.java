@@ -0,0 +1,19 @@
+package com.josefy.nnpda.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter @Setter
+@EqualsAndHashCode
+public class MeasurementRollupId implements Serializable {
+    private Long sensorId;
+    private OffsetDateTime bucket;
+}
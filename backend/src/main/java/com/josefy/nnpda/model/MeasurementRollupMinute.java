@@ -0,0 +1,13 @@
+package com.josefy.nnpda.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.NoArgsConstructor;
+
+@Entity
+@NoArgsConstructor
+@IdClass(MeasurementRollupId.class)
+@Table(name = "measurement_rollups_1m")
+public class MeasurementRollupMinute extends MeasurementRollup {
+}
@@ -0,0 +1,34 @@
+package com.josefy.nnpda.model;
+
+import jakarta.persistence.*;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/*
+ * How long measurements are kept, assigned to a sensor or to a whole device (the sensor's own class wins).
+ * Sensors without any fall back to measurements.retention.default-class, or are kept forever.
+ */
+@Entity
+@NoArgsConstructor
+@Getter @Setter
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Table(name = "retention_classes")
+public class RetentionClass {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    @Column(length = 50, nullable = false, unique = true)
+    private String name;
+
+    @Column(name = "retention_days", nullable = false)
+    private int retentionDays;
+
+    public RetentionClass(String name, int retentionDays) {
+        this.name = name;
+        this.retentionDays = retentionDays;
+    }
+}
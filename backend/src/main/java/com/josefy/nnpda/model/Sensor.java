@@ -5,6 +5,8 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 @NoArgsConstructor
@@ -15,7 +17,11 @@ import lombok.Setter;
         name = "sensor-with-device",
         attributeNodes = @NamedAttributeNode("device")
 )
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Sensor.CACHE_REGION)
 public class Sensor {
+    public static final String CACHE_REGION = "sensors";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @EqualsAndHashCode.Include
@@ -31,6 +37,10 @@ public class Sensor {
     @JoinColumn(name = "device_id")
     private Device device;
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "retention_class_id")
+    private RetentionClass retentionClass;
+
     public Sensor(String name, String serialNumber) {
         this.name = name;
         this.serialNumber = serialNumber;
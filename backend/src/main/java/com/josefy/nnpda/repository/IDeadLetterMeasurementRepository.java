@@ -0,0 +1,17 @@
+package com.josefy.nnpda.repository;
+
+import com.josefy.nnpda.model.DeadLetterMeasurement;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface IDeadLetterMeasurementRepository extends JpaRepository<DeadLetterMeasurement, Long> {
+    Page<DeadLetterMeasurement> findByDeviceSerialNumber(String deviceSerialNumber, Pageable pageable);
+
+    // keyset batches for reprocessing
+    List<DeadLetterMeasurement> findTop500ByIdGreaterThanOrderByIdAsc(long id);
+    List<DeadLetterMeasurement> findTop500ByIdGreaterThanAndIdInOrderByIdAsc(long id, Collection<Long> ids);
+}
@@ -1,9 +1,15 @@
 package com.josefy.nnpda.repository;
 
+import com.josefy.nnpda.dto.device.DeviceDto;
+import com.josefy.nnpda.dto.device.DeviceSensorRowDto;
 import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.RetentionClass;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import javax.swing.text.html.Option;
@@ -13,10 +19,20 @@ import java.util.Set;
 
 public interface IDeviceRepository extends JpaRepository<Device, Long> {
     List<Device> findAll();
+
+    // listings go straight to the dtos, loading a Device also selects its credential
+    @Query("SELECT new com.josefy.nnpda.dto.device.DeviceDto(d.serialNumber, d.modelName) FROM Device d ORDER BY d.id")
+    List<DeviceDto> findAllDtos();
+
+    @Query("SELECT new com.josefy.nnpda.dto.device.DeviceSensorRowDto(d.serialNumber, d.modelName, s.name, s.serialNumber) " +
+            "FROM Device d LEFT JOIN d.sensors s ORDER BY d.id, s.id")
+    List<DeviceSensorRowDto> findAllWithSensorRows();
+
     Optional<Device> findById(Long id);
 
     boolean existsBySerialNumber(String serialNumber);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Device> findBySerialNumber(String serialNumber);
 
     @Query("SELECT d FROM Device d JOIN FETCH d.deviceCredential WHERE d.serialNumber = :serial_number")
@@ -27,4 +43,6 @@ public interface IDeviceRepository extends JpaRepository<Device, Long> {
     Device save(Device device);
     void deleteBySerialNumber(String serialNumber);
     void deleteById(Long id);
+
+    long countByRetentionClass(RetentionClass retentionClass);
 }
@@ -0,0 +1,24 @@
+package com.josefy.nnpda.repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+// writes of measurement_blocks, call everything but findCompactable in one transaction per sensor-hour
+public interface IMeasurementBlockRepository {
+    record SensorHour(long sensorId, OffsetDateTime start) {
+    }
+
+    record StoredRow(long id, MeasurementRow row) {
+    }
+
+    // hours before cutoff that still have plain rows, oldest first
+    List<SensorHour> findCompactable(OffsetDateTime cutoff, int limit);
+    // held until the transaction ends, keeps two compactors off the same sensor
+    void lock(long sensorId);
+    // oldest first, locked so an upsert of the same reading waits for the compaction
+    List<StoredRow> lockRows(long sensorId, OffsetDateTime from, OffsetDateTime to);
+    // deletes the blocks starting in [from, to) and returns their readings
+    List<MeasurementRow> takeBlocks(long sensorId, OffsetDateTime from, OffsetDateTime to);
+    void insert(long sensorId, List<MeasurementRow> rows);
+    void deleteRows(long sensorId, OffsetDateTime from, OffsetDateTime to, List<StoredRow> rows);
+}
@@ -0,0 +1,37 @@
+package com.josefy.nnpda.repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface IMeasurementChangeRepository {
+    // ingest_xid and ingest_seq of a reading, "<xid>-<seq>" in the API
+    record Position(long xid, long seq) {
+        public static Position parse(String position) {
+            int dash = position.indexOf('-');
+            if (dash < 0) {
+                throw new IllegalArgumentException("Expected <xid>-<seq>, got '%s'.".formatted(position));
+            }
+            var parsed = new Position(Long.parseLong(position.substring(0, dash)),
+                    Long.parseLong(position.substring(dash + 1)));
+            if (parsed.xid < 0 || parsed.seq < 0) {
+                throw new IllegalArgumentException("Position '%s' must not be negative.".formatted(position));
+            }
+            return parsed;
+        }
+
+        @Override
+        public String toString() {
+            return xid + "-" + seq;
+        }
+    }
+
+    record Change(Position position,
+                  String sensorSerialNumber,
+                  String deviceSerialNumber,
+                  OffsetDateTime timestamp,
+                  double value) {
+    }
+
+    // readings inserted or updated after the given position by transactions that have all ended, in transaction order
+    List<Change> findAfter(Position after, int limit);
+}
@@ -0,0 +1,24 @@
+package com.josefy.nnpda.repository;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface IMeasurementOutboxRepository {
+    record Entry(long id,
+                 long sensorId,
+                 String sensorSerialNumber,
+                 String deviceSerialNumber,
+                 OffsetDateTime timestamp,
+                 double value,
+                 int attempts) {
+    }
+
+    // joins the writing transaction, the serial numbers are looked up there as well
+    void append(List<MeasurementRow> rows);
+    // oldest first, only entries that are due; locked until the transaction ends, other instances skip them
+    List<Entry> claim(int limit);
+    void delete(List<Long> ids);
+    // due again after minDelay doubled for every attempt so far, at most maxDelay
+    void retry(List<Long> ids, Duration minDelay, Duration maxDelay);
+}
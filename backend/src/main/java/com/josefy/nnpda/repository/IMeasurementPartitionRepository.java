@@ -0,0 +1,20 @@
+package com.josefy.nnpda.repository;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface IMeasurementPartitionRepository {
+    // rows is the planner's estimate, counting a partition that's about to go would read all of it
+    record Size(long rows, long bytes) {
+    }
+
+    // false until the partitioning changeset ran, e.g. with a schema created by hibernate
+    boolean isPartitioned();
+    List<MeasurementPartition> findAll();
+    // moves readings that ended up in the default partition over, call it in a transaction
+    void create(String name, OffsetDateTime from, OffsetDateTime to);
+    Size size(String name);
+    // detaches and drops, gives up (false) instead of queueing behind ingestion for longer than lockTimeout
+    boolean drop(String name, Duration lockTimeout);
+}
@@ -0,0 +1,16 @@
+package com.josefy.nnpda.repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface IMeasurementReader {
+    // readings in [from, to) oldest first, plain rows and compacted blocks alike; close the stream, it holds a
+    // connection and a cursor (which needs a transaction)
+    Stream<MeasurementRow> stream(long sensorId, OffsetDateTime from, OffsetDateTime to);
+    // readings in (after, to), for the next page after the reading at after; a sensor has one reading per timestamp
+    // (uk_sensor_timestamp, the compacted ones too), so the timestamp alone is the key
+    Stream<MeasurementRow> streamAfter(long sensorId, OffsetDateTime after, OffsetDateTime to);
+    // the newest reading of every sensor that has one
+    List<MeasurementRow> findLatest();
+}
@@ -0,0 +1,24 @@
+package com.josefy.nnpda.repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface IMeasurementRetentionRepository {
+    // retentionDays is null when neither the sensor nor its device has a class
+    record SensorRetention(long sensorId, Integer retentionDays) {
+    }
+
+    record DeletedBatch(int rows, OffsetDateTime lastTimestamp) {
+    }
+
+    record DeletedBlocks(long rows, long bytes) {
+    }
+
+    List<SensorRetention> findSensorRetentions();
+    // oldest first, lastTimestamp is where the next batch continues from
+    DeletedBatch deleteBatch(long sensorId, OffsetDateTime from, OffsetDateTime cutoff, int limit);
+    // compacted blocks whose newest reading is before cutoff, a block straddling it waits until it's all expired
+    DeletedBlocks deleteBlocks(long sensorId, OffsetDateTime cutoff);
+    // on disk, indexes included
+    double averageRowBytes();
+}
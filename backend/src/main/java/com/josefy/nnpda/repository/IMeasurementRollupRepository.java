@@ -0,0 +1,28 @@
+package com.josefy.nnpda.repository;
+
+import com.josefy.nnpda.dto.measurement.MeasurementRollupDto;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+
+public interface IMeasurementRollupRepository {
+    // columns of the aggregated buckets, aligned by index
+    record AggregatedBuckets(List<Long> epochMillis, Map<MeasurementAggregate, List<? extends Number>> values) {
+    }
+
+    // joins the writing transaction, so a bucket is marked exactly when its readings commit
+    void markDirty(List<MeasurementRow> rows);
+    // re-aggregates up to limit dirty minute buckets and the hours and days they fall into, call it in a transaction
+    int refresh(int limit);
+    // minute rollups straight from the given readings, which have to be all readings of each minute they touch;
+    // for compacted minutes, refresh leaves those alone
+    void replaceMinutes(List<MeasurementRow> rows);
+    // buckets of the given tier merged into buckets of resolution (a multiple of the tier size)
+    List<MeasurementRollupDto> find(long sensorId, MeasurementRollupTier tier, Duration resolution,
+                                    OffsetDateTime from, OffsetDateTime to);
+    // same buckets as find, only the requested functions and as one array each
+    AggregatedBuckets aggregate(long sensorId, MeasurementRollupTier tier, Duration bucket,
+                                OffsetDateTime from, OffsetDateTime to, List<MeasurementAggregate> functions);
+}
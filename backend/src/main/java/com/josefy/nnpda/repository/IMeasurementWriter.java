@@ -0,0 +1,7 @@
+package com.josefy.nnpda.repository;
+
+import java.util.List;
+
+public interface IMeasurementWriter {
+    MeasurementWriteResult write(List<MeasurementRow> rows);
+}
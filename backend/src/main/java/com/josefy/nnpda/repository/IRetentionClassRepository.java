@@ -0,0 +1,11 @@
+package com.josefy.nnpda.repository;
+
+import com.josefy.nnpda.model.RetentionClass;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface IRetentionClassRepository extends JpaRepository<RetentionClass, Long> {
+    Optional<RetentionClass> findByName(String name);
+    boolean existsByName(String name);
+}
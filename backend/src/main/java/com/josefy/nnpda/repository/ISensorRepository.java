@@ -1,7 +1,16 @@
 package com.josefy.nnpda.repository;
 
+import com.josefy.nnpda.dto.sensor.SensorDto;
+import com.josefy.nnpda.dto.sensor.SensorOwnershipDto;
+import com.josefy.nnpda.dto.sensor.SensorWithDeviceResponseDto;
+import com.josefy.nnpda.model.RetentionClass;
 import com.josefy.nnpda.model.Sensor;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import javax.swing.text.html.Option;
 import java.util.List;
@@ -9,6 +18,15 @@ import java.util.Optional;
 
 public interface ISensorRepository extends JpaRepository<Sensor, Long> {
     public List<Sensor> findBySerialNumberIn(List<String> serialNumbers);
+
+    @Query("SELECT new com.josefy.nnpda.dto.sensor.SensorDto(s.name, s.serialNumber) FROM Sensor s ORDER BY s.id")
+    public List<SensorDto> findAllDtos();
+
+    @Query("SELECT new com.josefy.nnpda.dto.sensor.SensorWithDeviceResponseDto(s.serialNumber, s.name, d.serialNumber, d.modelName) " +
+            "FROM Sensor s LEFT JOIN s.device d ORDER BY s.id")
+    public List<SensorWithDeviceResponseDto> findAllWithDevices();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     public Optional<Sensor> findBySerialNumber(String serialNumber);
     public List<Sensor> findByName(String name);
 
@@ -17,5 +35,31 @@ public interface ISensorRepository extends JpaRepository<Sensor, Long> {
 
     public boolean existsBySerialNumber(String serialNumber);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     public List<Sensor> findByDeviceSerialNumber(String deviceSerialNumber);
+
+    public long countByRetentionClass(RetentionClass retentionClass);
+
+    @Query("SELECT new com.josefy.nnpda.dto.sensor.SensorOwnershipDto(s.serialNumber, s.id, d.id) " +
+            "FROM Sensor s LEFT JOIN s.device d")
+    public List<SensorOwnershipDto> findAllOwnerships();
+
+    @Query("SELECT new com.josefy.nnpda.dto.sensor.SensorOwnershipDto(s.serialNumber, s.id, d.id) " +
+            "FROM Sensor s LEFT JOIN s.device d WHERE s.serialNumber = :serialNumber")
+    public Optional<SensorOwnershipDto> findOwnershipBySerialNumber(@Param("serialNumber") String serialNumber);
+
+    @Query("SELECT new com.josefy.nnpda.dto.sensor.SensorOwnershipDto(s.serialNumber, s.id, d.id) " +
+            "FROM Sensor s LEFT JOIN s.device d WHERE s.id = :sensorId")
+    public Optional<SensorOwnershipDto> findOwnershipBySensorId(@Param("sensorId") long sensorId);
+
+    @Query("SELECT new com.josefy.nnpda.dto.sensor.SensorOwnershipDto(s.serialNumber, s.id, d.id) " +
+            "FROM Sensor s JOIN s.device d WHERE d.id = :deviceId")
+    public List<SensorOwnershipDto> findOwnershipsByDeviceId(@Param("deviceId") long deviceId);
+
+    // only if the sensor's device is assigned to the user
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT s FROM Sensor s, UserDevice ud " +
+            "WHERE ud.device = s.device AND ud.user.username = :username AND s.serialNumber = :serialNumber")
+    public Optional<Sensor> findByUsernameAndSerialNumber(@Param("username") String username,
+                                                          @Param("serialNumber") String serialNumber);
 }
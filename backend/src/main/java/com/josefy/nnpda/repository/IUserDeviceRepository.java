@@ -1,17 +1,23 @@
 package com.josefy.nnpda.repository;
 
+import com.josefy.nnpda.dto.device.DeviceAssignmentDto;
 import com.josefy.nnpda.model.Device;
 import com.josefy.nnpda.model.User;
 import com.josefy.nnpda.model.UserDevice;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface IUserDeviceRepository extends JpaRepository<UserDevice, Long> {
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     @Query("SELECT ud.device FROM UserDevice ud WHERE ud.user.username = :username")
     List<Device> findByUsername(@Param("username") String username);
 
@@ -19,6 +25,15 @@ public interface IUserDeviceRepository extends JpaRepository<UserDevice, Long> {
     @Query("DELETE FROM UserDevice ud WHERE ud.user = :user AND ud.device.serialNumber = :serialNumber")
     void unassignDeviceFromUser(@Param("user") User user, @Param("serialNumber") String serialNumber);
 
+    @Query("SELECT new com.josefy.nnpda.dto.device.DeviceAssignmentDto(d.serialNumber, d.id, u.username) " +
+            "FROM UserDevice ud JOIN ud.device d JOIN ud.user u")
+    List<DeviceAssignmentDto> findAllAssignments();
+
+    @Query("SELECT d.id FROM UserDevice ud JOIN ud.device d " +
+            "WHERE ud.user.username = :username AND d.serialNumber = :serialNumber")
+    Optional<Long> findAssignedDeviceId(@Param("username") String username, @Param("serialNumber") String serialNumber);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     @Query("SELECT COUNT(ud) > 0 FROM UserDevice ud WHERE ud.user = :user AND ud.device.serialNumber = :serialNumber")
     boolean existsByUserAndSerialNumber(@Param("user") User user, @Param("serialNumber") String serialNumber);
 }
@@ -0,0 +1,36 @@
+package com.josefy.nnpda.repository;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+
+// what can be computed per bucket, each one an expression over the rollup columns of the merged buckets
+public enum MeasurementAggregate {
+    AVG("sum(value_sum) / sum(value_count)"),
+    MIN("min(value_min)"),
+    MAX("max(value_max)"),
+    SUM("sum(value_sum)"),
+    COUNT("sum(value_count)::bigint"),
+    FIRST("(array_agg(first_value ORDER BY first_timestamp))[1]"),
+    LAST("(array_agg(last_value ORDER BY last_timestamp DESC))[1]");
+
+    private final String expression;
+
+    MeasurementAggregate(String expression) {
+        this.expression = expression;
+    }
+
+    public String expression() {
+        return expression;
+    }
+
+    public String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public static Optional<MeasurementAggregate> fromKey(String key) {
+        return Arrays.stream(values())
+                .filter(aggregate -> aggregate.key().equalsIgnoreCase(key.strip()))
+                .findFirst();
+    }
+}
@@ -0,0 +1,190 @@
+package com.josefy.nnpda.repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Packs one sensor's readings (oldest first) the way Facebook's Gorilla does. Timestamps are kept in microseconds
+ * (what timestamptz stores) as delta-of-delta, a steady sampling rate costs a single bit per reading. Values are
+ * XORed with the previous one and only the meaningful bits are written, reusing the previous leading/trailing zero
+ * window when the new bits fit into it. The layout is a 4 byte count, the first timestamp and value in full,
+ * then the bit stream.
+ */
+public final class MeasurementBlockCodec {
+    // delta-of-delta buckets, '0' means the same delta as last time
+    private static final int[] DOD_BITS = {12, 20, 32, 64};
+
+    private MeasurementBlockCodec() {
+    }
+
+    public static byte[] encode(List<MeasurementRow> rows) {
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Cannot encode an empty block");
+        }
+        var out = new BitWriter(rows.size() * 2 + 24);
+        out.write(rows.size(), 32);
+        long previousTime = micros(rows.get(0).timestamp());
+        long previousBits = Double.doubleToRawLongBits(rows.get(0).value());
+        out.write(previousTime, 64);
+        out.write(previousBits, 64);
+
+        long previousDelta = 0;
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 1; i < rows.size(); i++) {
+            long time = micros(rows.get(i).timestamp());
+            long delta = time - previousTime;
+            if (delta < 0) {
+                throw new IllegalArgumentException("Readings must be ordered by timestamp");
+            }
+            writeDeltaOfDelta(out, delta - previousDelta);
+            previousDelta = delta;
+            previousTime = time;
+
+            long bits = Double.doubleToRawLongBits(rows.get(i).value());
+            long xor = bits ^ previousBits;
+            previousBits = bits;
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            int leading = Long.numberOfLeadingZeros(xor);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                out.write(0b10, 2);
+                out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int length = 64 - leading - trailing;
+                out.write(0b11, 2);
+                out.write(leading, 6);
+                // 1..64 stored as 0..63
+                out.write(length - 1, 6);
+                out.write(xor >>> trailing, length);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static List<MeasurementRow> decode(long sensorId, byte[] block) {
+        var in = new BitReader(block);
+        int count = (int) in.read(32);
+        var rows = new ArrayList<MeasurementRow>(count);
+        long time = in.read(64);
+        long bits = in.read(64);
+        rows.add(new MeasurementRow(sensorId, timestamp(time), Double.longBitsToDouble(bits)));
+
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            delta += readDeltaOfDelta(in);
+            time += delta;
+            if (in.read(1) == 1) {
+                if (in.read(1) == 1) {
+                    leading = (int) in.read(6);
+                    int length = (int) in.read(6) + 1;
+                    trailing = 64 - leading - length;
+                }
+                bits ^= in.read(64 - leading - trailing) << trailing;
+            }
+            rows.add(new MeasurementRow(sensorId, timestamp(time), Double.longBitsToDouble(bits)));
+        }
+        return rows;
+    }
+
+    private static void writeDeltaOfDelta(BitWriter out, long dod) {
+        if (dod == 0) {
+            out.write(0, 1);
+            return;
+        }
+        for (int i = 0; i < DOD_BITS.length; i++) {
+            int bits = DOD_BITS[i];
+            if (bits == 64 || (dod >= -(1L << (bits - 1)) && dod < (1L << (bits - 1)))) {
+                // i + 1 ones, the last bucket goes without the closing zero
+                int prefixLength = Math.min(i + 2, DOD_BITS.length);
+                long prefix = ((1L << (i + 1)) - 1) << (prefixLength - i - 1);
+                out.write(prefix, prefixLength);
+                out.write(dod, bits);
+                return;
+            }
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader in) {
+        int ones = 0;
+        while (ones < DOD_BITS.length && in.read(1) == 1) {
+            ones++;
+        }
+        if (ones == 0) {
+            return 0;
+        }
+        int bits = DOD_BITS[ones - 1];
+        long value = in.read(bits);
+        // sign extend
+        return bits == 64 ? value : (value << (64 - bits)) >> (64 - bits);
+    }
+
+    private static long micros(OffsetDateTime timestamp) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, timestamp.toInstant());
+    }
+
+    private static OffsetDateTime timestamp(long micros) {
+        return Instant.EPOCH.plus(micros, ChronoUnit.MICROS).atOffset(ZoneOffset.UTC);
+    }
+
+    private static final class BitWriter {
+        private byte[] buffer;
+        private long position = 0;
+
+        BitWriter(int initialBytes) {
+            buffer = new byte[Math.max(initialBytes, 16)];
+        }
+
+        // the lowest bits of value, most significant first
+        void write(long value, int bits) {
+            for (int i = bits - 1; i >= 0; i--) {
+                int index = (int) (position >>> 3);
+                if (index == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                if (((value >>> i) & 1) != 0) {
+                    buffer[index] |= (byte) (0x80 >>> (position & 7));
+                }
+                position++;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, (int) ((position + 7) >>> 3));
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] buffer;
+        private long position = 0;
+
+        BitReader(byte[] block) {
+            buffer = block;
+        }
+
+        long read(int bits) {
+            long value = 0;
+            for (int i = 0; i < bits; i++) {
+                int index = (int) (position >>> 3);
+                if (index >= buffer.length) {
+                    throw new IllegalArgumentException("Measurement block is truncated");
+                }
+                value = (value << 1) | ((buffer[index] >>> (7 - (position & 7))) & 1);
+                position++;
+            }
+            return value;
+        }
+    }
+}
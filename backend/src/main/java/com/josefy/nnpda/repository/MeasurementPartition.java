@@ -0,0 +1,10 @@
+package com.josefy.nnpda.repository;
+
+import java.time.OffsetDateTime;
+
+// One partition of the measurements table, from is null for the one reaching back to MINVALUE, both for the default
+public record MeasurementPartition(String name, OffsetDateTime from, OffsetDateTime to) {
+    public boolean isDefault() {
+        return from == null && to == null;
+    }
+}
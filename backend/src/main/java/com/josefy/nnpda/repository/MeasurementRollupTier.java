@@ -0,0 +1,47 @@
+package com.josefy.nnpda.repository;
+
+import java.time.Duration;
+import java.util.Optional;
+
+// finest first, each tier is aggregated from the one before it
+public enum MeasurementRollupTier {
+    MINUTE("measurement_rollups_1m", "minute", Duration.ofMinutes(1)),
+    HOUR("measurement_rollups_1h", "hour", Duration.ofHours(1)),
+    DAY("measurement_rollups_1d", "day", Duration.ofDays(1));
+
+    private final String table;
+    private final String truncation;
+    private final Duration size;
+
+    MeasurementRollupTier(String table, String truncation, Duration size) {
+        this.table = table;
+        this.truncation = truncation;
+        this.size = size;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    // date_trunc field, buckets are aligned in UTC
+    public String truncation() {
+        return truncation;
+    }
+
+    public Duration size() {
+        return size;
+    }
+
+    // the coarsest tier whose buckets add up exactly to the resolution
+    public static Optional<MeasurementRollupTier> coarsestFor(Duration resolution) {
+        var values = values();
+        for (int i = values.length - 1; i >= 0; i--) {
+            var tier = values[i];
+            if (resolution.compareTo(tier.size) >= 0 && resolution.toSeconds() % tier.size.toSeconds() == 0
+                    && resolution.toNanosPart() == 0) {
+                return Optional.of(tier);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,7 @@
+package com.josefy.nnpda.repository;
+
+import java.time.OffsetDateTime;
+
+// Flat write model for measurements, avoids going through the persistence context on ingestion
+public record MeasurementRow(long sensorId, OffsetDateTime timestamp, double value) {
+}
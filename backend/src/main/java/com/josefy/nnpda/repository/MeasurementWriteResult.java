@@ -0,0 +1,14 @@
+package com.josefy.nnpda.repository;
+
+// skipped = already stored (or identical, when updating), nothing was written for them
+public record MeasurementWriteResult(int inserted, int updated, int skipped) {
+    public static final MeasurementWriteResult EMPTY = new MeasurementWriteResult(0, 0, 0);
+
+    public MeasurementWriteResult plus(MeasurementWriteResult other) {
+        return new MeasurementWriteResult(inserted + other.inserted, updated + other.updated, skipped + other.skipped);
+    }
+
+    public int written() {
+        return inserted + updated;
+    }
+}
@@ -0,0 +1,89 @@
+package com.josefy.nnpda.repository.impl;
+
+import com.josefy.nnpda.repository.IMeasurementBlockRepository;
+import com.josefy.nnpda.repository.MeasurementBlockCodec;
+import com.josefy.nnpda.repository.MeasurementRow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class JdbcMeasurementBlockRepository implements IMeasurementBlockRepository {
+    private static final String FIND_COMPACTABLE_SQL = """
+            SELECT sensor_id, date_trunc('hour', timestamp, 'UTC') AS hour
+            FROM measurements
+            WHERE timestamp < ?
+            GROUP BY sensor_id, hour
+            ORDER BY hour, sensor_id
+            LIMIT ?""";
+    private static final String LOCK_SQL = "SELECT pg_advisory_xact_lock(hashtext('measurement_blocks'), hashint8(?))";
+    private static final String LOCK_ROWS_SQL = """
+            SELECT id, timestamp, value FROM measurements
+            WHERE sensor_id = ? AND timestamp >= ? AND timestamp < ?
+            ORDER BY timestamp
+            FOR UPDATE""";
+    private static final String TAKE_BLOCKS_SQL = """
+            DELETE FROM measurement_blocks
+            WHERE sensor_id = ? AND min_timestamp >= ? AND min_timestamp < ?
+            RETURNING data""";
+    private static final String INSERT_SQL = """
+            INSERT INTO measurement_blocks (sensor_id, min_timestamp, max_timestamp, reading_count, data)
+            VALUES (?, ?, ?, ?, ?)""";
+    // the range lets the planner skip the other partitions
+    private static final String DELETE_ROWS_SQL = """
+            DELETE FROM measurements
+            WHERE sensor_id = ? AND timestamp >= ? AND timestamp < ? AND id = ANY(?)""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<SensorHour> findCompactable(OffsetDateTime cutoff, int limit) {
+        return jdbcTemplate.query(FIND_COMPACTABLE_SQL, (rs, rowNum) -> new SensorHour(
+                rs.getLong("sensor_id"),
+                rs.getObject("hour", OffsetDateTime.class)), cutoff, limit);
+    }
+
+    @Override
+    public void lock(long sensorId) {
+        jdbcTemplate.query(LOCK_SQL, rs -> {}, sensorId);
+    }
+
+    @Override
+    public List<StoredRow> lockRows(long sensorId, OffsetDateTime from, OffsetDateTime to) {
+        return jdbcTemplate.query(LOCK_ROWS_SQL, (rs, rowNum) -> new StoredRow(
+                rs.getLong("id"),
+                new MeasurementRow(sensorId, rs.getObject("timestamp", OffsetDateTime.class), rs.getDouble("value"))),
+                sensorId, from, to);
+    }
+
+    @Override
+    public List<MeasurementRow> takeBlocks(long sensorId, OffsetDateTime from, OffsetDateTime to) {
+        var rows = new ArrayList<MeasurementRow>();
+        jdbcTemplate.query(TAKE_BLOCKS_SQL,
+                rs -> { rows.addAll(MeasurementBlockCodec.decode(sensorId, rs.getBytes("data"))); },
+                sensorId, from, to);
+        return rows;
+    }
+
+    @Override
+    public void insert(long sensorId, List<MeasurementRow> rows) {
+        jdbcTemplate.update(INSERT_SQL, sensorId, rows.get(0).timestamp(), rows.get(rows.size() - 1).timestamp(),
+                rows.size(), MeasurementBlockCodec.encode(rows));
+    }
+
+    @Override
+    public void deleteRows(long sensorId, OffsetDateTime from, OffsetDateTime to, List<StoredRow> rows) {
+        var ids = rows.stream().map(StoredRow::id).toArray(Long[]::new);
+        jdbcTemplate.update(DELETE_ROWS_SQL, statement -> {
+            statement.setLong(1, sensorId);
+            statement.setObject(2, from);
+            statement.setObject(3, to);
+            statement.setArray(4, statement.getConnection().createArrayOf("bigint", ids));
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package com.josefy.nnpda.repository.impl;
+
+import com.josefy.nnpda.repository.IMeasurementChangeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/*
+ * Readings are paged by the transaction that wrote them, not by commit. Transaction ids below the xmin of the
+ * current snapshot belong to transactions that have all ended and a new writer always gets a higher one, so nothing
+ * can still show up behind that horizon. The feed stops there: a reading appears once every older transaction has
+ * finished, writers never wait on each other for it, and a long transaction (a streamed upload) only holds back
+ * the feed.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JdbcMeasurementChangeRepository implements IMeasurementChangeRepository {
+    // the limit goes on the idx_ingest_position scan (a merge of the partitions' indexes), the join only sees the page
+    private static final String FIND_AFTER_SQL = """
+            SELECT m.ingest_xid::text::bigint AS ingest_xid, m.ingest_seq,
+                   s.serial_number AS sensor_serial_number, d.serial_number AS device_serial_number,
+                   m.timestamp, m.value
+            FROM (
+                SELECT ingest_xid, ingest_seq, sensor_id, timestamp, value
+                FROM measurements
+                WHERE (ingest_xid, ingest_seq) > (?::text::xid8, ?)
+                  AND ingest_xid < pg_snapshot_xmin(pg_current_snapshot())
+                ORDER BY ingest_xid, ingest_seq
+                LIMIT ?
+            ) m
+            JOIN sensors s ON s.id = m.sensor_id
+            LEFT JOIN devices d ON d.id = s.device_id
+            ORDER BY m.ingest_xid, m.ingest_seq""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Change> findAfter(Position after, int limit) {
+        return jdbcTemplate.query(FIND_AFTER_SQL, (rs, rowNum) -> new Change(
+                new Position(rs.getLong("ingest_xid"), rs.getLong("ingest_seq")),
+                rs.getString("sensor_serial_number"),
+                rs.getString("device_serial_number"),
+                rs.getObject("timestamp", OffsetDateTime.class),
+                rs.getDouble("value")), after.xid(), after.seq(), limit);
+    }
+}
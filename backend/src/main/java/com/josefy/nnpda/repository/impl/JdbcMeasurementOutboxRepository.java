@@ -0,0 +1,95 @@
+package com.josefy.nnpda.repository.impl;
+
+import com.josefy.nnpda.repository.IMeasurementOutboxRepository;
+import com.josefy.nnpda.repository.MeasurementRow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class JdbcMeasurementOutboxRepository implements IMeasurementOutboxRepository {
+    // the join only touches the sensors and devices of the batch, by primary key
+    private static final String APPEND_SQL = """
+            INSERT INTO measurement_outbox (sensor_id, sensor_serial_number, device_serial_number, timestamp, value)
+            SELECT t.sensor_id, s.serial_number, d.serial_number,
+                   timestamptz 'epoch' + t.micros * interval '1 microsecond', t.value
+            FROM unnest(?::bigint[], ?::bigint[], ?::float8[]) WITH ORDINALITY AS t(sensor_id, micros, value, n)
+            JOIN sensors s ON s.id = t.sensor_id
+            LEFT JOIN devices d ON d.id = s.device_id
+            ORDER BY t.n""";
+    private static final String CLAIM_SQL = """
+            SELECT id, sensor_id, sensor_serial_number, device_serial_number, timestamp, value, attempts
+            FROM measurement_outbox
+            WHERE next_attempt_at <= now()
+            ORDER BY id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED""";
+    private static final String DELETE_SQL = "DELETE FROM measurement_outbox WHERE id = ANY(?)";
+    private static final String RETRY_SQL = """
+            UPDATE measurement_outbox
+            SET attempts = attempts + 1,
+                next_attempt_at = now() + make_interval(secs => least(?::float8 * power(2, least(attempts, 30)), ?::float8))
+            WHERE id = ANY(?)""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void append(List<MeasurementRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        var sensorIds = new Long[rows.size()];
+        var micros = new Long[rows.size()];
+        var values = new Double[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            sensorIds[i] = rows.get(i).sensorId();
+            micros[i] = ChronoUnit.MICROS.between(Instant.EPOCH, rows.get(i).timestamp().toInstant());
+            values[i] = rows.get(i).value();
+        }
+        jdbcTemplate.update(APPEND_SQL, statement -> {
+            statement.setArray(1, statement.getConnection().createArrayOf("bigint", sensorIds));
+            statement.setArray(2, statement.getConnection().createArrayOf("bigint", micros));
+            statement.setArray(3, statement.getConnection().createArrayOf("float8", values));
+        });
+    }
+
+    @Override
+    public List<Entry> claim(int limit) {
+        return jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new Entry(
+                rs.getLong("id"),
+                rs.getLong("sensor_id"),
+                rs.getString("sensor_serial_number"),
+                rs.getString("device_serial_number"),
+                rs.getObject("timestamp", OffsetDateTime.class),
+                rs.getDouble("value"),
+                rs.getInt("attempts")), limit);
+    }
+
+    @Override
+    public void delete(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(DELETE_SQL, statement ->
+                statement.setArray(1, statement.getConnection().createArrayOf("bigint", ids.toArray())));
+    }
+
+    @Override
+    public void retry(List<Long> ids, Duration minDelay, Duration maxDelay) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(RETRY_SQL, statement -> {
+            statement.setDouble(1, minDelay.toMillis() / 1000.0);
+            statement.setDouble(2, maxDelay.toMillis() / 1000.0);
+            statement.setArray(3, statement.getConnection().createArrayOf("bigint", ids.toArray()));
+        });
+    }
+}
@@ -0,0 +1,109 @@
+package com.josefy.nnpda.repository.impl;
+
+import com.josefy.nnpda.repository.IMeasurementPartitionRepository;
+import com.josefy.nnpda.repository.MeasurementPartition;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/*
+ * Partitions of the measurements table straight from the catalog, the bounds are parsed out of pg_get_expr
+ * by postgres itself so the session time zone doesn't matter.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JdbcMeasurementPartitionRepository implements IMeasurementPartitionRepository {
+    private static final String TABLE = "measurements";
+    private static final String DEFAULT_PARTITION = "measurements_default";
+    // every column of a reading, moved rows keep their id and their place in the change feed
+    private static final String COLUMNS = "id, sensor_id, timestamp, value, ingest_xid, ingest_seq";
+    private static final String IS_PARTITIONED_SQL =
+            "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('measurements'))";
+    private static final String FIND_ALL_SQL = """
+            SELECT c.relname AS name,
+                   (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'FROM \\(''([^'']+)''\\)'))[1]::timestamptz AS range_from,
+                   (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']+)''\\)'))[1]::timestamptz AS range_to
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'measurements'::regclass
+            ORDER BY range_to NULLS LAST""";
+    // serializes instances creating the same partitions
+    private static final String LOCK_SQL = "SELECT pg_advisory_xact_lock(hashtext('measurements_partitions'))";
+
+    private static final String SIZE_SQL = """
+            SELECT greatest(c.reltuples, 0)::bigint AS rows, pg_total_relation_size(c.oid) AS bytes
+            FROM pg_class c
+            WHERE c.oid = to_regclass(?)""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_PARTITIONED_SQL, Boolean.class));
+    }
+
+    @Override
+    public List<MeasurementPartition> findAll() {
+        return jdbcTemplate.query(FIND_ALL_SQL, (rs, rowNum) -> new MeasurementPartition(
+                rs.getString("name"),
+                rs.getObject("range_from", OffsetDateTime.class),
+                rs.getObject("range_to", OffsetDateTime.class)));
+    }
+
+    @Override
+    public void create(String name, OffsetDateTime from, OffsetDateTime to) {
+        jdbcTemplate.execute(LOCK_SQL);
+        if (exists(name)) {
+            return;
+        }
+        var bounds = "FOR VALUES FROM ('%s') TO ('%s')".formatted(from, to);
+        if (!exists(DEFAULT_PARTITION)) {
+            jdbcTemplate.execute("CREATE TABLE \"%s\" PARTITION OF %s %s".formatted(name, TABLE, bounds));
+            return;
+        }
+        // a partition can't be created over rows sitting in the default one, they're moved first
+        jdbcTemplate.execute("CREATE TABLE \"%s\" (LIKE %s INCLUDING DEFAULTS)".formatted(name, TABLE));
+        jdbcTemplate.update("""
+                WITH moved AS (
+                    DELETE FROM %1$s WHERE timestamp >= ? AND timestamp < ?
+                    RETURNING %3$s
+                )
+                INSERT INTO "%2$s" (%3$s) SELECT %3$s FROM moved""".formatted(DEFAULT_PARTITION, name, COLUMNS),
+                from, to);
+        jdbcTemplate.execute("ALTER TABLE %s ATTACH PARTITION \"%s\" %s".formatted(TABLE, name, bounds));
+    }
+
+    @Override
+    public Size size(String name) {
+        return jdbcTemplate.query(SIZE_SQL, rs -> rs.next()
+                ? new Size(rs.getLong("rows"), rs.getLong("bytes"))
+                : new Size(0, 0), "\"" + name + "\"");
+    }
+
+    @Override
+    public boolean drop(String name, Duration lockTimeout) {
+        // DETACH CONCURRENTLY isn't allowed next to a default partition, a short lock_timeout keeps it polite instead
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = %d".formatted(lockTimeout.toMillis()));
+                jdbcTemplate.execute("ALTER TABLE %s DETACH PARTITION \"%s\"".formatted(TABLE, name));
+                jdbcTemplate.execute("DROP TABLE \"%s\"".formatted(name));
+            });
+            return true;
+        } catch (PessimisticLockingFailureException e) {
+            return false;
+        }
+    }
+
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, "\"" + table + "\""));
+    }
+}
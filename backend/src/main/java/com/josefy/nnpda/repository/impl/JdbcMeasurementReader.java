@@ -0,0 +1,157 @@
+package com.josefy.nnpda.repository.impl;
+
+import com.josefy.nnpda.repository.IMeasurementReader;
+import com.josefy.nnpda.repository.MeasurementBlockCodec;
+import com.josefy.nnpda.repository.MeasurementRow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/*
+ * Merges plain rows with decoded blocks. Blocks don't overlap each other, but rows can still sit inside a block's
+ * range (a late reading, or a resent one, until the next compaction merges it in), on the same timestamp the row
+ * wins, as it will after compaction.
+ */
+@Repository
+public class JdbcMeasurementReader implements IMeasurementReader {
+    // walks uk_sensor_timestamp from the start of the range, so a page deep in the history costs the same as the
+    // first one; %s is >= for a range and > for the page after a reading
+    private static final String ROWS_SQL = """
+            SELECT timestamp, value FROM measurements
+            WHERE sensor_id = ? AND timestamp %s ? AND timestamp < ?
+            ORDER BY timestamp""";
+    private static final String BLOCKS_SQL = """
+            SELECT data FROM measurement_blocks
+            WHERE sensor_id = ? AND max_timestamp %s ? AND min_timestamp < ?
+            ORDER BY min_timestamp""";
+    // a block holds up to measurements.compaction.block-size readings, a few of them cover any page
+    private static final int BLOCK_FETCH_SIZE = 4;
+    // one index lookup per sensor (uk_sensor_timestamp backwards), DISTINCT ON would read every row
+    private static final String LATEST_ROWS_SQL = """
+            SELECT s.id AS sensor_id, m.timestamp, m.value
+            FROM sensors s
+            CROSS JOIN LATERAL (
+                SELECT timestamp, value FROM measurements
+                WHERE sensor_id = s.id
+                ORDER BY timestamp DESC
+                LIMIT 1
+            ) m""";
+    // for sensors that went quiet long enough to have everything compacted
+    private static final String LATEST_BLOCKS_SQL = """
+            SELECT s.id AS sensor_id, b.data
+            FROM sensors s
+            CROSS JOIN LATERAL (
+                SELECT data FROM measurement_blocks
+                WHERE sensor_id = s.id
+                ORDER BY min_timestamp DESC
+                LIMIT 1
+            ) b""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcMeasurementReader(JdbcTemplate jdbcTemplate,
+                                 @Value("${measurements.query.fetch-size:1000}") int fetchSize) {
+        // own template, the fetch size turns the result sets into cursors
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    @Override
+    public Stream<MeasurementRow> stream(long sensorId, OffsetDateTime from, OffsetDateTime to) {
+        return stream(sensorId, from, true, to);
+    }
+
+    @Override
+    public Stream<MeasurementRow> streamAfter(long sensorId, OffsetDateTime after, OffsetDateTime to) {
+        return stream(sensorId, after, false, to);
+    }
+
+    private Stream<MeasurementRow> stream(long sensorId, OffsetDateTime from, boolean inclusive, OffsetDateTime to) {
+        var operator = inclusive ? ">=" : ">";
+        var rows = jdbcTemplate.queryForStream(ROWS_SQL.formatted(operator), (rs, rowNum) -> new MeasurementRow(
+                sensorId, rs.getObject("timestamp", OffsetDateTime.class), rs.getDouble("value")),
+                sensorId, from, to);
+        var blocks = jdbcTemplate.queryForStream(connection -> {
+                    var statement = connection.prepareStatement(BLOCKS_SQL.formatted(operator));
+                    statement.setFetchSize(BLOCK_FETCH_SIZE);
+                    statement.setLong(1, sensorId);
+                    statement.setObject(2, from);
+                    statement.setObject(3, to);
+                    return statement;
+                }, (rs, rowNum) -> rs.getBytes("data"))
+                .flatMap(data -> MeasurementBlockCodec.decode(sensorId, data).stream())
+                .filter(row -> (inclusive ? !row.timestamp().isBefore(from) : row.timestamp().isAfter(from))
+                        && row.timestamp().isBefore(to));
+        var merged = new MergingIterator(rows.iterator(), blocks.iterator());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(rows::close)
+                .onClose(blocks::close);
+    }
+
+    @Override
+    public List<MeasurementRow> findLatest() {
+        var latest = new HashMap<Long, MeasurementRow>();
+        jdbcTemplate.query(LATEST_BLOCKS_SQL, rs -> {
+            var rows = MeasurementBlockCodec.decode(rs.getLong("sensor_id"), rs.getBytes("data"));
+            var row = rows.get(rows.size() - 1);
+            latest.put(row.sensorId(), row);
+        });
+        jdbcTemplate.query(LATEST_ROWS_SQL, rs -> {
+            var row = new MeasurementRow(rs.getLong("sensor_id"), rs.getObject("timestamp", OffsetDateTime.class),
+                    rs.getDouble("value"));
+            latest.merge(row.sensorId(), row, (block, plain) -> block.timestamp().isAfter(plain.timestamp()) ? block : plain);
+        });
+        return List.copyOf(latest.values());
+    }
+
+    private static final class MergingIterator implements Iterator<MeasurementRow> {
+        private final Iterator<MeasurementRow> rows;
+        private final Iterator<MeasurementRow> blocks;
+        private MeasurementRow nextRow;
+        private MeasurementRow nextBlockRow;
+
+        MergingIterator(Iterator<MeasurementRow> rows, Iterator<MeasurementRow> blocks) {
+            this.rows = rows;
+            this.blocks = blocks;
+            nextRow = advance(rows);
+            nextBlockRow = advance(blocks);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextRow != null || nextBlockRow != null;
+        }
+
+        @Override
+        public MeasurementRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (nextBlockRow == null || (nextRow != null && !nextRow.timestamp().isAfter(nextBlockRow.timestamp()))) {
+                if (nextBlockRow != null && nextRow.timestamp().isEqual(nextBlockRow.timestamp())) {
+                    nextBlockRow = advance(blocks);
+                }
+                var row = nextRow;
+                nextRow = advance(rows);
+                return row;
+            }
+            var row = nextBlockRow;
+            nextBlockRow = advance(blocks);
+            return row;
+        }
+
+        private static MeasurementRow advance(Iterator<MeasurementRow> iterator) {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.josefy.nnpda.repository.impl;
+
+import com.josefy.nnpda.repository.IMeasurementRetentionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class JdbcMeasurementRetentionRepository implements IMeasurementRetentionRepository {
+    private static final String FIND_SENSOR_RETENTIONS_SQL = """
+            SELECT s.id, coalesce(sc.retention_days, dc.retention_days) AS retention_days
+            FROM sensors s
+            LEFT JOIN devices d ON d.id = s.device_id
+            LEFT JOIN retention_classes sc ON sc.id = s.retention_class_id
+            LEFT JOIN retention_classes dc ON dc.id = d.retention_class_id""";
+    // walks uk_sensor_timestamp, so a batch only ever touches the rows it deletes
+    private static final String DELETE_BATCH_SQL = """
+            WITH batch AS (
+                SELECT id, timestamp FROM measurements
+                WHERE sensor_id = ? AND timestamp >= ? AND timestamp < ?
+                ORDER BY timestamp
+                LIMIT ?
+            ), deleted AS (
+                DELETE FROM measurements m USING batch b
+                WHERE m.sensor_id = ? AND m.id = b.id AND m.timestamp = b.timestamp
+                RETURNING m.timestamp
+            )
+            SELECT count(*) AS rows, max(timestamp) AS last_timestamp FROM deleted""";
+    private static final String DELETE_BLOCKS_SQL = """
+            WITH deleted AS (
+                DELETE FROM measurement_blocks
+                WHERE sensor_id = ? AND max_timestamp < ?
+                RETURNING reading_count, octet_length(data) AS bytes
+            )
+            SELECT coalesce(sum(reading_count), 0) AS rows, coalesce(sum(bytes), 0) AS bytes FROM deleted""";
+    private static final String AVERAGE_ROW_BYTES_SQL = """
+            SELECT coalesce(sum(pg_total_relation_size(c.oid))::float8 / nullif(sum(greatest(c.reltuples, 0)), 0), 0)
+            FROM pg_class c
+            WHERE c.oid = 'measurements'::regclass
+               OR c.oid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = 'measurements'::regclass)""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<SensorRetention> findSensorRetentions() {
+        return jdbcTemplate.query(FIND_SENSOR_RETENTIONS_SQL, (rs, rowNum) -> new SensorRetention(
+                rs.getLong("id"),
+                rs.getObject("retention_days", Integer.class)));
+    }
+
+    @Override
+    public DeletedBatch deleteBatch(long sensorId, OffsetDateTime from, OffsetDateTime cutoff, int limit) {
+        return jdbcTemplate.queryForObject(DELETE_BATCH_SQL, (rs, rowNum) -> new DeletedBatch(
+                rs.getInt("rows"),
+                rs.getObject("last_timestamp", OffsetDateTime.class)),
+                sensorId, from, cutoff, limit, sensorId);
+    }
+
+    @Override
+    public DeletedBlocks deleteBlocks(long sensorId, OffsetDateTime cutoff) {
+        return jdbcTemplate.queryForObject(DELETE_BLOCKS_SQL, (rs, rowNum) -> new DeletedBlocks(
+                rs.getLong("rows"),
+                rs.getLong("bytes")),
+                sensorId, cutoff);
+    }
+
+    @Override
+    public double averageRowBytes() {
+        Double bytes = jdbcTemplate.queryForObject(AVERAGE_ROW_BYTES_SQL, Double.class);
+        return bytes == null ? 0 : bytes;
+    }
+}
@@ -0,0 +1,241 @@
+package com.josefy.nnpda.repository.impl;
+
+import com.josefy.nnpda.dto.measurement.MeasurementRollupDto;
+import com.josefy.nnpda.repository.IMeasurementRollupRepository;
+import com.josefy.nnpda.repository.MeasurementAggregate;
+import com.josefy.nnpda.repository.MeasurementRollupTier;
+import com.josefy.nnpda.repository.MeasurementRow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.TreeSet;
+
+/*
+ * Rollups are never adjusted by adding the new readings, a dirty bucket is aggregated again from scratch
+ * (minutes from measurements, hours from minutes, days from hours). Late readings, resent readings and
+ * overwritten values all come out right that way, and only the touched buckets are ever read.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JdbcMeasurementRollupRepository implements IMeasurementRollupRepository {
+    // DO UPDATE rather than DO NOTHING, the row lock keeps the worker (SKIP LOCKED) from claiming the bucket
+    // before the readings of this transaction are visible
+    private static final String MARK_DIRTY_SQL = """
+            INSERT INTO measurement_rollup_dirty (sensor_id, bucket)
+            SELECT sensor_id, to_timestamp(epoch) FROM unnest(?::bigint[], ?::bigint[]) AS t(sensor_id, epoch)
+            ON CONFLICT (sensor_id, bucket) DO UPDATE SET bucket = EXCLUDED.bucket""";
+    private static final String CREATE_CLAIMED_SQL = """
+            CREATE TEMP TABLE IF NOT EXISTS rollup_claimed (
+                sensor_id bigint NOT NULL,
+                bucket timestamptz NOT NULL
+            ) ON COMMIT DELETE ROWS""";
+    private static final String CLAIM_SQL = """
+            WITH claimed AS (
+                DELETE FROM measurement_rollup_dirty d
+                WHERE (d.sensor_id, d.bucket) IN (
+                    SELECT sensor_id, bucket FROM measurement_rollup_dirty
+                    ORDER BY bucket
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED)
+                RETURNING d.sensor_id, d.bucket
+            )
+            INSERT INTO rollup_claimed SELECT sensor_id, bucket FROM claimed""";
+    private static final String KEYS = "(SELECT DISTINCT sensor_id, date_trunc('%s', bucket, 'UTC') AS bucket FROM rollup_claimed)";
+    // readings of a compacted minute are in its block, the compactor writes those minutes (replaceMinutes)
+    private static final String MINUTE_KEYS = """
+            (SELECT DISTINCT c.sensor_id, c.bucket FROM rollup_claimed c
+             WHERE NOT EXISTS (
+                 SELECT 1 FROM measurement_blocks b
+                 WHERE b.sensor_id = c.sensor_id
+                   AND b.min_timestamp < c.bucket + interval '1 minute' AND b.max_timestamp >= c.bucket))""";
+    private static final String COLUMNS = "sensor_id, bucket, value_count, value_min, value_max, value_sum, " +
+            "first_timestamp, first_value, last_timestamp, last_value";
+    private static final String DELETE_SQL = """
+            DELETE FROM %s r USING %s k
+            WHERE r.sensor_id = k.sensor_id AND r.bucket = k.bucket""";
+    // one index range per key, a plain join gets merged on sensor_id alone and rescans the sensor's rows for every key
+    private static final String AGGREGATE_MEASUREMENTS_SQL = """
+            INSERT INTO %s (%s)
+            SELECT k.sensor_id, k.bucket, a.*
+            FROM %s k
+            CROSS JOIN LATERAL (
+                SELECT count(*) AS value_count, min(m.value), max(m.value), sum(m.value),
+                       min(m.timestamp), (array_agg(m.value ORDER BY m.timestamp))[1],
+                       max(m.timestamp), (array_agg(m.value ORDER BY m.timestamp DESC))[1]
+                FROM measurements m
+                WHERE m.sensor_id = k.sensor_id
+                  AND m.timestamp >= k.bucket AND m.timestamp < k.bucket + make_interval(secs => %d)
+            ) a
+            WHERE a.value_count > 0""";
+    private static final String AGGREGATE_ROLLUPS_SQL = """
+            INSERT INTO %s (%s)
+            SELECT k.sensor_id, k.bucket, a.*
+            FROM %s k
+            CROSS JOIN LATERAL (
+                SELECT sum(r.value_count) AS value_count, min(r.value_min), max(r.value_max), sum(r.value_sum),
+                       min(r.first_timestamp), (array_agg(r.first_value ORDER BY r.first_timestamp))[1],
+                       max(r.last_timestamp), (array_agg(r.last_value ORDER BY r.last_timestamp DESC))[1]
+                FROM %s r
+                WHERE r.sensor_id = k.sensor_id
+                  AND r.bucket >= k.bucket AND r.bucket < k.bucket + make_interval(secs => %d)
+            ) a
+            WHERE a.value_count IS NOT NULL""";
+    private static final String REPLACE_MINUTES_SQL = """
+            INSERT INTO measurement_rollups_1m (%s)
+            SELECT sensor_id, date_trunc('minute', timestamp, 'UTC') AS bucket, count(*), min(value), max(value), sum(value),
+                   min(timestamp), (array_agg(value ORDER BY timestamp))[1],
+                   max(timestamp), (array_agg(value ORDER BY timestamp DESC))[1]
+            FROM (SELECT sensor_id, timestamptz 'epoch' + micros * interval '1 microsecond' AS timestamp, value
+                  FROM unnest(?::bigint[], ?::bigint[], ?::float8[]) AS t(sensor_id, micros, value)) t
+            GROUP BY sensor_id, bucket
+            ON CONFLICT (sensor_id, bucket) DO UPDATE SET
+                value_count = EXCLUDED.value_count, value_min = EXCLUDED.value_min, value_max = EXCLUDED.value_max,
+                value_sum = EXCLUDED.value_sum, first_timestamp = EXCLUDED.first_timestamp,
+                first_value = EXCLUDED.first_value, last_timestamp = EXCLUDED.last_timestamp,
+                last_value = EXCLUDED.last_value""".formatted(COLUMNS);
+    // bins start on a monday, so weekly resolutions line up with calendar weeks
+    private static final String BIN = "date_bin(make_interval(secs => ?), bucket, TIMESTAMPTZ '2000-01-03 00:00:00+00')";
+    private static final String FIND_SQL = """
+            SELECT %s AS bin,
+                   sum(value_count) AS value_count, min(value_min) AS value_min, max(value_max) AS value_max,
+                   sum(value_sum) AS value_sum,
+                   (array_agg(first_value ORDER BY first_timestamp))[1] AS first_value,
+                   (array_agg(last_value ORDER BY last_timestamp DESC))[1] AS last_value
+            FROM %s
+            WHERE sensor_id = ? AND bucket >= ? AND bucket < ?
+            GROUP BY bin
+            ORDER BY bin""";
+    // a single row of arrays, the buckets are never materialized as objects on this side
+    private static final String AGGREGATE_SQL = """
+            SELECT array_agg((extract(epoch FROM bin) * 1000)::bigint ORDER BY bin) AS epoch_millis%s
+            FROM (SELECT %s AS bin%s
+                  FROM %s
+                  WHERE sensor_id = ? AND bucket >= ? AND bucket < ?
+                  GROUP BY bin) b""";
+
+    private record Key(long sensorId, long epochMinute) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void markDirty(List<MeasurementRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        // always the same order, two writers touching the same buckets would deadlock otherwise
+        var keys = new TreeSet<>(Comparator.comparingLong(Key::epochMinute).thenComparingLong(Key::sensorId));
+        for (var row : rows) {
+            keys.add(new Key(row.sensorId(), Math.floorDiv(row.timestamp().toEpochSecond(), 60)));
+        }
+        var sensorIds = new Long[keys.size()];
+        var epochs = new Long[keys.size()];
+        int i = 0;
+        for (var key : keys) {
+            sensorIds[i] = key.sensorId();
+            epochs[i++] = key.epochMinute() * 60;
+        }
+        jdbcTemplate.update(MARK_DIRTY_SQL, statement -> {
+            statement.setArray(1, statement.getConnection().createArrayOf("bigint", sensorIds));
+            statement.setArray(2, statement.getConnection().createArrayOf("bigint", epochs));
+        });
+    }
+
+    @Override
+    public int refresh(int limit) {
+        jdbcTemplate.execute(CREATE_CLAIMED_SQL);
+        int claimed = jdbcTemplate.update(CLAIM_SQL, limit);
+        if (claimed == 0) {
+            return 0;
+        }
+        MeasurementRollupTier previous = null;
+        for (var tier : MeasurementRollupTier.values()) {
+            var keys = tier == MeasurementRollupTier.MINUTE ? MINUTE_KEYS : KEYS.formatted(tier.truncation());
+            jdbcTemplate.update(DELETE_SQL.formatted(tier.table(), keys));
+            jdbcTemplate.update(previous == null
+                    ? AGGREGATE_MEASUREMENTS_SQL.formatted(tier.table(), COLUMNS, keys, tier.size().toSeconds())
+                    : AGGREGATE_ROLLUPS_SQL.formatted(tier.table(), COLUMNS, keys, previous.table(), tier.size().toSeconds()));
+            previous = tier;
+        }
+        return claimed;
+    }
+
+    @Override
+    public void replaceMinutes(List<MeasurementRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        var sensorIds = new Long[rows.size()];
+        var micros = new Long[rows.size()];
+        var values = new Double[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            sensorIds[i] = rows.get(i).sensorId();
+            micros[i] = ChronoUnit.MICROS.between(Instant.EPOCH, rows.get(i).timestamp().toInstant());
+            values[i] = rows.get(i).value();
+        }
+        jdbcTemplate.update(REPLACE_MINUTES_SQL, statement -> {
+            statement.setArray(1, statement.getConnection().createArrayOf("bigint", sensorIds));
+            statement.setArray(2, statement.getConnection().createArrayOf("bigint", micros));
+            statement.setArray(3, statement.getConnection().createArrayOf("float8", values));
+        });
+    }
+
+    @Override
+    public List<MeasurementRollupDto> find(long sensorId, MeasurementRollupTier tier, Duration resolution,
+                                           OffsetDateTime from, OffsetDateTime to) {
+        return jdbcTemplate.query(FIND_SQL.formatted(BIN, tier.table()), (rs, rowNum) -> {
+            long count = rs.getLong("value_count");
+            return new MeasurementRollupDto(
+                    rs.getObject("bin", OffsetDateTime.class),
+                    count,
+                    rs.getDouble("value_min"),
+                    rs.getDouble("value_max"),
+                    rs.getDouble("value_sum") / count,
+                    rs.getDouble("first_value"),
+                    rs.getDouble("last_value"));
+        }, resolution.toSeconds(), sensorId, from, to);
+    }
+
+    @Override
+    public AggregatedBuckets aggregate(long sensorId, MeasurementRollupTier tier, Duration bucket,
+                                       OffsetDateTime from, OffsetDateTime to, List<MeasurementAggregate> functions) {
+        var arrays = new StringBuilder();
+        var columns = new StringBuilder();
+        for (var function : functions) {
+            arrays.append(", array_agg(%1$s ORDER BY bin) AS %1$s".formatted(function.key()));
+            columns.append(", %s AS %s".formatted(function.expression(), function.key()));
+        }
+        var sql = AGGREGATE_SQL.formatted(arrays, BIN, columns, tier.table());
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
+            var values = new EnumMap<MeasurementAggregate, List<? extends Number>>(MeasurementAggregate.class);
+            for (var function : functions) {
+                values.put(function, numbers(rs.getArray(function.key())));
+            }
+            return new AggregatedBuckets(numbers(rs.getArray("epoch_millis")), values);
+        }, bucket.toSeconds(), sensorId, from, to);
+    }
+
+    // array_agg over no rows is null
+    @SuppressWarnings("unchecked")
+    private static <T extends Number> List<T> numbers(Array array) throws SQLException {
+        if (array == null) {
+            return List.of();
+        }
+        try {
+            return Arrays.asList((T[]) array.getArray());
+        } finally {
+            array.free();
+        }
+    }
+}
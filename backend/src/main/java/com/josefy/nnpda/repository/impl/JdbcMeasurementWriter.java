@@ -0,0 +1,221 @@
+package com.josefy.nnpda.repository.impl;
+
+import com.josefy.nnpda.events.MeasurementsWrittenEvent;
+import com.josefy.nnpda.repository.IMeasurementWriter;
+import com.josefy.nnpda.repository.MeasurementRow;
+import com.josefy.nnpda.repository.MeasurementWriteResult;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/*
+ * Hibernate batches measurement inserts since the ids come from a pooled sequence, but every reading still
+ * becomes a managed entity with a sensor reference that has to be flushed, and JPA has no way of saying
+ * ON CONFLICT. This talks to postgres directly, either through COPY or through batched inserts (which the driver
+ * rewrites into multi-row inserts with reWriteBatchedInserts), and lets the column defaults hand out ids.
+ * MeasurementWriterBenchmark compares it with saveAll. Uses the connection bound to the current transaction,
+ * so it can be called from @Transactional services. A transaction timeout becomes the statement_timeout of what
+ * runs here, JdbcTemplate only applies it to statements it creates itself and COPY isn't one of them.
+ *
+ * With on-conflict skip/update the rows are loaded into a session temp table first and merged with a single
+ * INSERT ... ON CONFLICT (sensor_id, timestamp), so a device resending readings doesn't fail on uk_sensor_timestamp.
+ * Only what the merge actually stored goes into MeasurementsWrittenEvent.
+ *
+ * ingest_xid (the writing transaction) and ingest_seq come from the column defaults, nothing is serialized here.
+ * The change feed only reads below the oldest transaction still running, see JdbcMeasurementChangeRepository.
+ */
+@Repository
+@Slf4j
+public class JdbcMeasurementWriter implements IMeasurementWriter {
+    private static final String TABLE = "measurements";
+    private static final String STAGING_TABLE = "measurements_staging";
+    private static final String INSERT_SQL =
+            "INSERT INTO %s (sensor_id, timestamp, value) VALUES (?, ?, ?)";
+    private static final String COPY_SQL =
+            "COPY %s (sensor_id, timestamp, value) FROM STDIN WITH (FORMAT csv)";
+    private static final String CREATE_STAGING_SQL = """
+            CREATE TEMP TABLE IF NOT EXISTS measurements_staging (
+                sensor_id bigint NOT NULL,
+                timestamp timestamptz NOT NULL,
+                value double precision NOT NULL
+            ) ON COMMIT DELETE ROWS""";
+    // both return what they stored, the listeners must not see a reading the merge left alone
+    private static final String MERGE_SKIP_SQL = """
+            INSERT INTO measurements (sensor_id, timestamp, value)
+            SELECT sensor_id, timestamp, value FROM measurements_staging
+            ON CONFLICT (sensor_id, timestamp) DO NOTHING
+            RETURNING sensor_id, timestamp, value, true AS inserted""";
+    // xmax is 0 only for freshly inserted rows, identical values are left alone and count as skipped
+    private static final String MERGE_UPDATE_SQL = """
+            INSERT INTO measurements (sensor_id, timestamp, value)
+            SELECT sensor_id, timestamp, value FROM measurements_staging
+            ON CONFLICT (sensor_id, timestamp) DO UPDATE SET value = EXCLUDED.value,
+                ingest_xid = DEFAULT, ingest_seq = DEFAULT
+                WHERE measurements.value IS DISTINCT FROM EXCLUDED.value
+            RETURNING sensor_id, timestamp, value, xmax = 0 AS inserted""";
+
+    public enum Mode { BATCH, COPY }
+    public enum Conflict { FAIL, SKIP, UPDATE }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Mode mode;
+    private final Conflict conflict;
+    private final int batchSize;
+
+    public JdbcMeasurementWriter(JdbcTemplate jdbcTemplate,
+                                 ApplicationEventPublisher eventPublisher,
+                                 @Value("${measurements.writer.mode:copy}") Mode mode,
+                                 @Value("${measurements.writer.on-conflict:fail}") Conflict conflict,
+                                 @Value("${measurements.writer.batch-size:1000}") int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("measurements.writer.batch-size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.mode = mode;
+        this.conflict = conflict;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public MeasurementWriteResult write(List<MeasurementRow> rows) {
+        if (rows.isEmpty()) {
+            return MeasurementWriteResult.EMPTY;
+        }
+        long start = System.nanoTime();
+        // one connection for everything, the staging table only exists in its session
+        var stored = new ArrayList<MeasurementRow>(conflict == Conflict.FAIL ? 0 : rows.size());
+        var result = jdbcTemplate.execute((ConnectionCallback<MeasurementWriteResult>) connection -> {
+            applyTransactionTimeout(connection);
+            return conflict == Conflict.FAIL
+                    ? new MeasurementWriteResult(load(connection, TABLE, rows), 0, 0)
+                    : merge(connection, rows, stored);
+        });
+        // listeners read it after the commit, callers like the stream upload refill their list by then
+        eventPublisher.publishEvent(new MeasurementsWrittenEvent(
+                conflict == Conflict.FAIL ? List.copyOf(rows) : Collections.unmodifiableList(stored)));
+        if (log.isDebugEnabled()) {
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            log.debug("Wrote {} measurements via {} in {} ms ({} rows/s), {}",
+                    rows.size(), mode, Math.round(seconds * 1000), Math.round(rows.size() / Math.max(seconds, 1e-9)), result);
+        }
+        return result;
+    }
+
+    private void applyTransactionTimeout(Connection connection) throws SQLException {
+        var holder = (ConnectionHolder) TransactionSynchronizationManager.getResource(jdbcTemplate.getDataSource());
+        if (holder == null || !holder.hasTimeout()) {
+            return;
+        }
+        // throws TransactionTimedOutException once the deadline has passed, e.g. while a stream was being parsed
+        long remaining = holder.getTimeToLiveInMillis();
+        try (var statement = connection.createStatement()) {
+            // until the end of the transaction, each write shortens it to what is left
+            statement.execute("SET LOCAL statement_timeout = " + remaining);
+        }
+    }
+
+    private MeasurementWriteResult merge(Connection connection, List<MeasurementRow> rows,
+                                         List<MeasurementRow> stored) throws SQLException {
+        var unique = conflict == Conflict.UPDATE ? lastPerKey(rows) : rows;
+        try (var statement = connection.createStatement()) {
+            statement.execute(CREATE_STAGING_SQL);
+            // in case the connection was used outside a transaction, ON COMMIT didn't clean up then
+            statement.execute("TRUNCATE " + STAGING_TABLE);
+        }
+        load(connection, STAGING_TABLE, unique);
+        int inserted = 0;
+        try (var statement = connection.createStatement();
+             var result = statement.executeQuery(conflict == Conflict.SKIP ? MERGE_SKIP_SQL : MERGE_UPDATE_SQL)) {
+            while (result.next()) {
+                stored.add(new MeasurementRow(result.getLong(1), result.getObject(2, OffsetDateTime.class),
+                        result.getDouble(3)));
+                if (result.getBoolean(4)) {
+                    inserted++;
+                }
+            }
+        }
+        int updated = stored.size() - inserted;
+        return new MeasurementWriteResult(inserted, updated, rows.size() - inserted - updated);
+    }
+
+    private record Key(long sensorId, Instant timestamp) {
+    }
+
+    // a statement can't update the same row twice, the last reading of a sensor and instant wins
+    private static List<MeasurementRow> lastPerKey(List<MeasurementRow> rows) {
+        var byKey = new LinkedHashMap<Key, MeasurementRow>(rows.size() * 4 / 3 + 1);
+        for (var row : rows) {
+            byKey.put(new Key(row.sensorId(), row.timestamp().toInstant()), row);
+        }
+        return byKey.size() == rows.size() ? rows : new ArrayList<>(byKey.values());
+    }
+
+    private int load(Connection connection, String table, List<MeasurementRow> rows) throws SQLException {
+        return mode == Mode.COPY ? copy(connection, table, rows) : insert(connection, table, rows);
+    }
+
+    private int insert(Connection connection, String table, List<MeasurementRow> rows) throws SQLException {
+        try (var statement = connection.prepareStatement(INSERT_SQL.formatted(table))) {
+            int pending = 0;
+            for (var row : rows) {
+                statement.setLong(1, row.sensorId());
+                statement.setObject(2, row.timestamp());
+                statement.setDouble(3, row.value());
+                statement.addBatch();
+                if (++pending == batchSize) {
+                    statement.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+            }
+        }
+        // with reWriteBatchedInserts the driver only reports SUCCESS_NO_INFO, a failed row throws anyway
+        return rows.size();
+    }
+
+    private int copy(Connection connection, String table, List<MeasurementRow> rows) throws SQLException {
+        var copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        var sql = COPY_SQL.formatted(table);
+        long written = 0;
+        var buffer = new StringBuilder(batchSize * 48);
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            buffer.setLength(0);
+            for (var row : rows.subList(from, Math.min(rows.size(), from + batchSize))) {
+                buffer.append(row.sensorId()).append(',')
+                        .append(row.timestamp()).append(',')
+                        .append(row.value()).append('\n');
+            }
+            var copyIn = copyManager.copyIn(sql);
+            try {
+                var bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+                written += copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        }
+        return (int) written;
+    }
+}
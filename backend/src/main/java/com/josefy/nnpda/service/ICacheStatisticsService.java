@@ -0,0 +1,8 @@
+package com.josefy.nnpda.service;
+
+import com.josefy.nnpda.dto.cache.CacheStatisticsDto;
+
+public interface ICacheStatisticsService {
+    // second-level cache of this instance
+    CacheStatisticsDto findStatistics();
+}
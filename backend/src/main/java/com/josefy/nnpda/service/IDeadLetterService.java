@@ -0,0 +1,19 @@
+package com.josefy.nnpda.service;
+
+import com.josefy.nnpda.dto.deadletter.DeadLetterMeasurementDto;
+import com.josefy.nnpda.dto.deadletter.ReprocessResultDto;
+import com.josefy.nnpda.dto.measurement.SensorMeasurementDto;
+import com.josefy.nnpda.model.Device;
+
+import java.util.List;
+
+public interface IDeadLetterService {
+    record Rejected(SensorMeasurementDto measurement, String reason) {
+    }
+
+    // joins the caller's transaction
+    void store(Device sender, List<Rejected> rejected);
+    List<DeadLetterMeasurementDto> findAll(String deviceSerialNumber, int page, int size);
+    // everything when ids is empty
+    ReprocessResultDto reprocess(List<Long> ids);
+}
@@ -0,0 +1,8 @@
+package com.josefy.nnpda.service;
+
+import java.util.Optional;
+
+public interface IDeviceAssignmentIndex {
+    // the device id, when the device is assigned to the user
+    Optional<Long> findAssignedDeviceId(String username, String deviceSerialNumber);
+}
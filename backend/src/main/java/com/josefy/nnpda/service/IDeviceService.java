@@ -4,12 +4,17 @@ package com.josefy.nnpda.service;
 import com.josefy.nnpda.dto.device.CreateDeviceWithSensorSerialsDto;
 import com.josefy.nnpda.dto.device.DeviceDto;
 import com.josefy.nnpda.dto.device.DeviceWithSensorSerialsDto;
+import com.josefy.nnpda.dto.device.DeviceWithSensorsDto;
 import com.josefy.nnpda.infrastructure.utils.Either;
 import com.josefy.nnpda.infrastructure.utils.Status;
 import com.josefy.nnpda.model.Device;
 
+import java.util.List;
+
 public interface IDeviceService {
-    Iterable<Device> findAll(boolean withSensors);
+    // one query each
+    List<DeviceDto> findAll();
+    List<DeviceWithSensorsDto> findAllWithSensors();
     Either<Status, Device> findById(long id, boolean withSensors);
     Either<Status, Device> findBySerialNumber(String serialNumber, boolean withSensors);
     Iterable<Device> findByModelName(String modelName, boolean withSensors);
@@ -18,4 +23,5 @@ public interface IDeviceService {
     Either<Status, Device> update(String oldSerialNumber, DeviceWithSensorSerialsDto device);
     Either<Status, Void> delete(long id);
     Either<Status, Void> delete(String serialNumber);
+    Either<Status, Void> revokeCredentials(String serialNumber);
 }
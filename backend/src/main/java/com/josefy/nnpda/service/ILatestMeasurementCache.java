@@ -0,0 +1,10 @@
+package com.josefy.nnpda.service;
+
+import com.josefy.nnpda.repository.MeasurementRow;
+
+import java.util.Optional;
+
+public interface ILatestMeasurementCache {
+    // the newest committed reading of the sensor, empty when it never sent one
+    Optional<MeasurementRow> find(long sensorId);
+}
@@ -0,0 +1,10 @@
+package com.josefy.nnpda.service;
+
+import com.josefy.nnpda.dto.measurement.MeasurementChangesDto;
+import com.josefy.nnpda.infrastructure.utils.Either;
+import com.josefy.nnpda.infrastructure.utils.Status;
+
+public interface IMeasurementChangeService {
+    // everything written after the given position ("<xid>-<seq>"), 0-0 starts from the beginning
+    Either<Status, MeasurementChangesDto> findChanges(String after, int limit);
+}
@@ -0,0 +1,15 @@
+package com.josefy.nnpda.service;
+
+import com.josefy.nnpda.dto.measurement.MeasurementExportFormat;
+import com.josefy.nnpda.infrastructure.utils.Either;
+import com.josefy.nnpda.infrastructure.utils.Status;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.OffsetDateTime;
+
+public interface IMeasurementExportService {
+    // readings of every sensor of a device assigned to the user, written once the response body is streamed
+    Either<Status, StreamingResponseBody> export(String username, String deviceSerialNumber,
+                                                 OffsetDateTime from, OffsetDateTime to,
+                                                 MeasurementExportFormat format, boolean gzip);
+}
@@ -0,0 +1,10 @@
+package com.josefy.nnpda.service;
+
+import com.josefy.nnpda.infrastructure.utils.Either;
+import com.josefy.nnpda.infrastructure.utils.Status;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// live readings of a device assigned to the user, pushed as they commit
+public interface IMeasurementFeed {
+    Either<Status, SseEmitter> subscribe(String username, String deviceSerialNumber);
+}
@@ -0,0 +1,12 @@
+package com.josefy.nnpda.service;
+
+import com.josefy.nnpda.repository.MeasurementRow;
+
+import java.util.List;
+
+public interface IMeasurementIngestionQueue {
+    enum EnqueueResult { QUEUED, SPILLED, REJECTED }
+
+    EnqueueResult enqueue(List<MeasurementRow> rows);
+    int depth();
+}
@@ -0,0 +1,10 @@
+package com.josefy.nnpda.service;
+
+import com.josefy.nnpda.repository.IMeasurementOutboxRepository.Entry;
+
+import java.util.List;
+
+public interface IMeasurementSearchIndex {
+    // the http status of every entry in order, throws when the request as a whole failed
+    List<Integer> index(List<Entry> entries);
+}
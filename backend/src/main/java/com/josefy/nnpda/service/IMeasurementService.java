@@ -1,11 +1,17 @@
 package com.josefy.nnpda.service;
 
 import com.josefy.nnpda.dto.measurement.DeviceMeasurementDto;
+import com.josefy.nnpda.dto.measurement.IngestionResultDto;
 import com.josefy.nnpda.infrastructure.utils.Either;
 import com.josefy.nnpda.infrastructure.utils.Status;
 import com.josefy.nnpda.model.Device;
 
+import java.io.InputStream;
+
 public interface IMeasurementService {
 
-    public Status ingestMeasurements(Device device, DeviceMeasurementDto deviceMeasurementDto);
+    public Either<Status, IngestionResultDto> ingestMeasurements(Device device, DeviceMeasurementDto deviceMeasurementDto);
+    // same payload as DeviceMeasurementDto, parsed and written in chunks instead of being bound as a whole,
+    // nothing is committed unless the signature checks out once the body is read
+    public Either<Status, IngestionResultDto> ingestMeasurementStream(Device device, InputStream body);
 }
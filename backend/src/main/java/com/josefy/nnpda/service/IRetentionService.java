@@ -0,0 +1,23 @@
+package com.josefy.nnpda.service;
+
+import com.josefy.nnpda.dto.retention.RetentionClassDto;
+import com.josefy.nnpda.dto.retention.RetentionReportDto;
+import com.josefy.nnpda.infrastructure.utils.Either;
+import com.josefy.nnpda.infrastructure.utils.Status;
+import com.josefy.nnpda.model.RetentionClass;
+
+import java.util.List;
+
+public interface IRetentionService {
+    List<RetentionClass> findAll();
+    Either<Status, RetentionClass> create(RetentionClassDto request);
+    Either<Status, RetentionClass> update(String name, RetentionClassDto request);
+    Either<Status, Void> delete(String name);
+
+    // a null class name removes the assignment
+    Either<Status, Void> assignToDevice(String deviceSerialNumber, String retentionClassName);
+    Either<Status, Void> assignToSensor(String sensorSerialNumber, String retentionClassName);
+
+    Either<Status, RetentionReportDto> enforce();
+    Either<Status, RetentionReportDto> lastReport();
+}
@@ -0,0 +1,29 @@
+package com.josefy.nnpda.service;
+
+import com.josefy.nnpda.dto.measurement.MeasurementAggregateSeriesDto;
+import com.josefy.nnpda.dto.measurement.MeasurementRollupSeriesDto;
+import com.josefy.nnpda.dto.measurement.MeasurementSeriesDto;
+import com.josefy.nnpda.infrastructure.utils.Either;
+import com.josefy.nnpda.infrastructure.utils.Status;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+// reading measurements of sensors on the user's devices, a sensor of someone else's device is not found
+public interface ISensorMeasurementService {
+    // raw readings, a page of at most limit of them; after is the 'next' of the previous page, null for the first one
+    Either<Status, MeasurementSeriesDto> findMeasurements(String username, String sensorSerialNumber,
+                                                          OffsetDateTime from, OffsetDateTime to,
+                                                          OffsetDateTime after, int limit);
+    // at most points readings picked by LTTB from the whole range, for charts
+    Either<Status, MeasurementSeriesDto> findDownsampledMeasurements(String username, String sensorSerialNumber,
+                                                                     OffsetDateTime from, OffsetDateTime to,
+                                                                     int points);
+    Either<Status, MeasurementRollupSeriesDto> findRollups(String username, String sensorSerialNumber,
+                                                           OffsetDateTime from, OffsetDateTime to, Duration resolution);
+    // the rollups again, but only the requested functions (avg, min, ...), as arrays for charting
+    Either<Status, MeasurementAggregateSeriesDto> findAggregates(String username, String sensorSerialNumber,
+                                                                 OffsetDateTime from, OffsetDateTime to,
+                                                                 Duration bucket, List<String> functions);
+}
@@ -0,0 +1,27 @@
+package com.josefy.nnpda.service;
+
+import com.josefy.nnpda.dto.sensor.SensorOwnershipDto;
+import com.josefy.nnpda.infrastructure.utils.Either;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+public interface ISensorOwnershipIndex {
+    Optional<SensorOwnershipDto> find(String sensorSerialNumber);
+    Optional<SensorOwnershipDto> findBySensorId(long sensorId);
+    List<SensorOwnershipDto> findByDevice(long deviceId);
+
+    // the sensor when a reading for it may be stored for the device, why not otherwise
+    default Either<String, SensorOwnershipDto> resolve(String sensorSerialNumber, Long deviceId) {
+        var sensor = find(sensorSerialNumber);
+        if (sensor.isEmpty()) {
+            return Either.left("Sensor with serial number '%s' not found.".formatted(sensorSerialNumber));
+        }
+        if (!Objects.equals(sensor.get().deviceId(), deviceId)) {
+            return Either.left("Sensor with serial number '%s' does not belong to given device."
+                    .formatted(sensorSerialNumber));
+        }
+        return Either.right(sensor.get());
+    }
+}
@@ -1,12 +1,18 @@
 package com.josefy.nnpda.service;
 
+import com.josefy.nnpda.dto.sensor.SensorDto;
 import com.josefy.nnpda.dto.sensor.SensorWithDeviceDto;
+import com.josefy.nnpda.dto.sensor.SensorWithDeviceResponseDto;
 import com.josefy.nnpda.infrastructure.utils.Either;
 import com.josefy.nnpda.infrastructure.utils.Status;
 import com.josefy.nnpda.model.Sensor;
 
+import java.util.List;
+
 public interface ISensorService {
-    Iterable<Sensor> findAll(boolean omitDevices);
+    // one query each
+    List<SensorDto> findAll();
+    List<SensorWithDeviceResponseDto> findAllWithDevices();
     Either<Status, Sensor> findById(long id);
     Either<Status, Sensor> findBySerialNumber(String serialNumber);
     Iterable<Sensor> findByName(String name);
@@ -0,0 +1,32 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.config.HibernateCacheConfig;
+import com.josefy.nnpda.dto.cache.CacheRegionStatisticsDto;
+import com.josefy.nnpda.dto.cache.CacheStatisticsDto;
+import com.josefy.nnpda.service.ICacheStatisticsService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import java.util.Objects;
+
+@Service
+public class CacheStatisticsService implements ICacheStatisticsService {
+    private final Statistics statistics;
+
+    public CacheStatisticsService(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public CacheStatisticsDto findStatistics() {
+        // null for regions hibernate didn't start, i.e. with the cache turned off
+        var regions = HibernateCacheConfig.REGIONS.stream()
+                .map(statistics::getCacheRegionStatistics)
+                .filter(Objects::nonNull)
+                .map(CacheRegionStatisticsDto::fromStatistics)
+                .toList();
+        return new CacheStatisticsDto(statistics.isStatisticsEnabled(), regions);
+    }
+}
@@ -0,0 +1,121 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.dto.deadletter.DeadLetterMeasurementDto;
+import com.josefy.nnpda.dto.deadletter.ReprocessResultDto;
+import com.josefy.nnpda.model.DeadLetterMeasurement;
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.repository.IDeadLetterMeasurementRepository;
+import com.josefy.nnpda.repository.IMeasurementWriter;
+import com.josefy.nnpda.repository.MeasurementRow;
+import com.josefy.nnpda.service.IDeadLetterService;
+import com.josefy.nnpda.service.ISensorOwnershipIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeadLetterService implements IDeadLetterService {
+    private final IDeadLetterMeasurementRepository deadLetterRepository;
+    private final ISensorOwnershipIndex sensorOwnershipIndex;
+    private final IMeasurementWriter measurementWriter;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void store(Device sender, List<Rejected> rejected) {
+        if (rejected.isEmpty()) {
+            return;
+        }
+        var receivedAt = Instant.now();
+        var deadLetters = new ArrayList<DeadLetterMeasurement>(rejected.size());
+        for (var rejection : rejected) {
+            var deadLetter = new DeadLetterMeasurement();
+            deadLetter.setDeviceId(sender.getId());
+            deadLetter.setDeviceSerialNumber(sender.getSerialNumber());
+            deadLetter.setSensorSerialNumber(rejection.measurement().serialNumber());
+            deadLetter.setTimestamp(rejection.measurement().timestamp());
+            deadLetter.setValue(rejection.measurement().value());
+            deadLetter.setReason(rejection.reason());
+            deadLetter.setReceivedAt(receivedAt);
+            deadLetters.add(deadLetter);
+        }
+        deadLetterRepository.saveAll(deadLetters);
+        log.warn("Device {} sent {} measurements that can't be attributed, kept as dead letters",
+                sender.getSerialNumber(), deadLetters.size());
+    }
+
+    @Override
+    public List<DeadLetterMeasurementDto> findAll(String deviceSerialNumber, int page, int size) {
+        var pageable = PageRequest.of(page, size, Sort.by("id"));
+        var deadLetters = deviceSerialNumber == null
+                ? deadLetterRepository.findAll(pageable)
+                : deadLetterRepository.findByDeviceSerialNumber(deviceSerialNumber, pageable);
+        return deadLetters.map(DeadLetterMeasurementDto::fromEntity).getContent();
+    }
+
+    /*
+     * Works through the dead letters in id order, one transaction per batch so a big backlog doesn't turn into
+     * one huge transaction. The ones that can be attributed to the device that sent them now are written
+     * and removed, the rest stays with the reason updated.
+     */
+    @Override
+    public ReprocessResultDto reprocess(List<Long> ids) {
+        var result = ReprocessResultDto.EMPTY;
+        long afterId = 0;
+        while (true) {
+            final long from = afterId;
+            var batch = transactionTemplate.execute(status -> {
+                var deadLetters = ids == null || ids.isEmpty()
+                        ? deadLetterRepository.findTop500ByIdGreaterThanOrderByIdAsc(from)
+                        : deadLetterRepository.findTop500ByIdGreaterThanAndIdInOrderByIdAsc(from, ids);
+                return deadLetters.isEmpty()
+                        ? null
+                        : new Batch(deadLetters.getLast().getId(), reprocessBatch(deadLetters));
+            });
+            if (batch == null) {
+                break;
+            }
+            afterId = batch.lastId();
+            result = result.plus(batch.result());
+        }
+        log.info("Reprocessed dead letters: {}", result);
+        return result;
+    }
+
+    private record Batch(long lastId, ReprocessResultDto result) {
+    }
+
+    private ReprocessResultDto reprocessBatch(List<DeadLetterMeasurement> deadLetters) {
+        var rows = new ArrayList<MeasurementRow>();
+        var attributed = new ArrayList<DeadLetterMeasurement>();
+        int stillRejected = 0;
+        for (var deadLetter : deadLetters) {
+            var sensor = sensorOwnershipIndex.resolve(deadLetter.getSensorSerialNumber(), deadLetter.getDeviceId());
+            var row = sensor.fold(
+                    reason -> {
+                        // managed, flushed with the transaction
+                        deadLetter.setReason(reason);
+                        deadLetter.setAttempts(deadLetter.getAttempts() + 1);
+                        return null;
+                    },
+                    ownership -> new MeasurementRow(ownership.sensorId(), deadLetter.getTimestamp(), deadLetter.getValue()));
+            if (row == null) {
+                stillRejected++;
+            } else {
+                rows.add(row);
+                attributed.add(deadLetter);
+            }
+        }
+        var written = measurementWriter.write(rows);
+        deadLetterRepository.deleteAllInBatch(attributed);
+        return ReprocessResultDto.of(attributed.size(), written, stillRejected);
+    }
+}
@@ -0,0 +1,88 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.dto.device.DeviceAssignmentDto;
+import com.josefy.nnpda.events.DeviceAssignmentChangedEvent;
+import com.josefy.nnpda.events.DeviceDeletedEvent;
+import com.josefy.nnpda.events.DeviceUpdatedEvent;
+import com.josefy.nnpda.repository.IUserDeviceRepository;
+import com.josefy.nnpda.service.IDeviceAssignmentIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/*
+ * Device serial -> (device id, users it's assigned to), so reads that only need the ownership of a device
+ * (the latest values) don't hit the database. Same life cycle as SensorOwnershipIndex, warmed once the application
+ * is ready and then following UserDeviceService / DeviceService after their transactions commit.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceAssignmentIndex implements IDeviceAssignmentIndex {
+    private record Assignments(long deviceId, Set<String> usernames) {
+    }
+
+    private final IUserDeviceRepository userDeviceRepository;
+    private final ConcurrentHashMap<String, Assignments> bySerialNumber = new ConcurrentHashMap<>();
+    private volatile boolean warm = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        var assignments = userDeviceRepository.findAllAssignments();
+        var bySerial = assignments.stream().collect(Collectors.groupingBy(DeviceAssignmentDto::serialNumber));
+        // changes that committed while we were loading are newer than the snapshot, don't overwrite them
+        bySerial.forEach((serialNumber, devices) -> bySerialNumber.putIfAbsent(serialNumber, new Assignments(
+                devices.get(0).deviceId(),
+                devices.stream().map(DeviceAssignmentDto::username).collect(Collectors.toUnmodifiableSet()))));
+        warm = true;
+        log.info("Device assignment index warmed up with {} assignments", assignments.size());
+    }
+
+    @Override
+    public Optional<Long> findAssignedDeviceId(String username, String deviceSerialNumber) {
+        if (!warm) {
+            return userDeviceRepository.findAssignedDeviceId(username, deviceSerialNumber);
+        }
+        var assignments = bySerialNumber.get(deviceSerialNumber);
+        return assignments != null && assignments.usernames().contains(username)
+                ? Optional.of(assignments.deviceId())
+                : Optional.empty();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeviceAssignmentChanged(DeviceAssignmentChangedEvent event) {
+        bySerialNumber.compute(event.serialNumber(), (serialNumber, assignments) -> {
+            var usernames = new HashSet<>(assignments == null ? Set.of() : assignments.usernames());
+            if (event.assigned()) {
+                usernames.add(event.username());
+            } else {
+                usernames.remove(event.username());
+            }
+            return usernames.isEmpty() ? null : new Assignments(event.deviceId(), Set.copyOf(usernames));
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeviceUpdated(DeviceUpdatedEvent event) {
+        if (event.previousSerialNumber() != null && !event.previousSerialNumber().equals(event.serialNumber())) {
+            var assignments = bySerialNumber.remove(event.previousSerialNumber());
+            if (assignments != null) {
+                bySerialNumber.put(event.serialNumber(), assignments);
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeviceDeleted(DeviceDeletedEvent event) {
+        bySerialNumber.remove(event.serialNumber());
+    }
+}
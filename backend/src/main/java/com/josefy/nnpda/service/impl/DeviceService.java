@@ -1,7 +1,13 @@
 package com.josefy.nnpda.service.impl;
 
 import com.josefy.nnpda.dto.device.CreateDeviceWithSensorSerialsDto;
+import com.josefy.nnpda.dto.device.DeviceDto;
 import com.josefy.nnpda.dto.device.DeviceWithSensorSerialsDto;
+import com.josefy.nnpda.dto.device.DeviceWithSensorsDto;
+import com.josefy.nnpda.events.DeviceCredentialRevokedEvent;
+import com.josefy.nnpda.events.DeviceDeletedEvent;
+import com.josefy.nnpda.events.DeviceUpdatedEvent;
+import com.josefy.nnpda.events.SensorAssignmentChangedEvent;
 import com.josefy.nnpda.infrastructure.repository.IDeviceCredentialRepository;
 import com.josefy.nnpda.infrastructure.utils.Either;
 import com.josefy.nnpda.infrastructure.utils.IHashProvider;
@@ -10,11 +16,11 @@ import com.josefy.nnpda.model.Device;
 import com.josefy.nnpda.model.DeviceCredential;
 import com.josefy.nnpda.model.Sensor;
 import com.josefy.nnpda.repository.IDeviceRepository;
-import com.josefy.nnpda.repository.IDeviceRepositoryEager;
 import com.josefy.nnpda.repository.ISensorRepository;
 import com.josefy.nnpda.service.IDeviceService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
@@ -25,19 +31,19 @@ import java.util.List;
 @RequiredArgsConstructor
 public class DeviceService implements IDeviceService {
     private final IDeviceRepository deviceRepository;
-    private final IDeviceRepositoryEager deviceRepositoryEager;
     private final ISensorRepository sensorRepository;
     private final IDeviceCredentialRepository deviceCredentialRepository;
     private final IHashProvider hashProvider;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
-    public Iterable<Device> findAll(boolean withSensors) {
-        if (withSensors) {
-            return deviceRepositoryEager.findAll();
-        }
-        else {
-            return deviceRepository.findAll();
-        }
+    public List<DeviceDto> findAll() {
+        return deviceRepository.findAllDtos();
+    }
+
+    @Override
+    public List<DeviceWithSensorsDto> findAllWithSensors() {
+        return DeviceWithSensorsDto.fromRows(deviceRepository.findAllWithSensorRows());
     }
     @Override
     public Either<Status, Device> findById(long id, boolean withSensors) {
@@ -74,17 +80,25 @@ public class DeviceService implements IDeviceService {
                 return Either.left(new Status("Sensors with serial numbers '%s' do not exist.".formatted(missingSerialNumbers),
                         HttpStatus.BAD_REQUEST));
             }
-            var device = new Device(serialNumber, deviceRequest.modelName());
-            sensors.forEach(sensor -> sensor.setDevice(device));
-            device.setSensors(sensors);
-        }
-        else {
-            toSave.setSerialNumber(serialNumber);
-            toSave.setModelName(deviceRequest.modelName());
+            sensors.forEach(sensor -> sensor.setDevice(toSave));
+            toSave.setSensors(sensors);
         }
+        toSave.setSerialNumber(serialNumber);
+        toSave.setModelName(deviceRequest.modelName());
         var credentials = generateCredentials(toSave, deviceRequest.apiKeyHash());
         toSave.setDeviceCredential(credentials);
-        return Either.right(deviceRepository.save(toSave));
+        var saved = deviceRepository.save(toSave);
+        publishAssignments(saved);
+        return Either.right(saved);
+    }
+
+    private void publishAssignments(Device device) {
+        for (var sensor : device.getSensors()) {
+            eventPublisher.publishEvent(new SensorAssignmentChangedEvent(sensor.getSerialNumber(),
+                    sensor.getSerialNumber(),
+                    sensor.getId(),
+                    device.getId()));
+        }
     }
 
     private DeviceCredential generateCredentials(Device toSave, String keyHash) {
@@ -136,20 +150,47 @@ public class DeviceService implements IDeviceService {
         }
 //        var credentials = generateCredentials(toSave, request.apiKeyHash());
 //        toSave.setDeviceCredential(credentials);
-        return Either.right(deviceRepository.save(toSave));
+        var saved = deviceRepository.save(toSave);
+        eventPublisher.publishEvent(new DeviceUpdatedEvent(saved.getId(), oldSerialNumber, saved.getSerialNumber()));
+        if (request.sensors() != null) {
+            publishAssignments(saved);
+        }
+        return Either.right(saved);
     }
 
     @Override
     @Transactional
     public Either<Status, Void> delete(long id) {
-        deviceRepository.deleteById(id);
+        deviceRepository.findById(id).ifPresent(this::delete);
         return Either.right(null);
     }
 
     @Override
     @Transactional
     public Either<Status, Void> delete(String serialNumber) {
-        deviceRepository.deleteBySerialNumber(serialNumber);
+        deviceRepository.findBySerialNumber(serialNumber).ifPresent(this::delete);
+        return Either.right(null);
+    }
+
+    @Override
+    @Transactional
+    public Either<Status, Void> revokeCredentials(String serialNumber) {
+        var device = deviceRepository.findBySerialNumberWithCredentials(serialNumber).orElse(null);
+        if (device == null) {
+            return Either.left(new Status("Device with serial number '%s' does not exist.".formatted(serialNumber),
+                    HttpStatus.NOT_FOUND));
+        }
+        var credential = device.getDeviceCredential();
+        if (!credential.isRevoked()) {
+            credential.setRevoked(true);
+            deviceCredentialRepository.save(credential);
+            eventPublisher.publishEvent(new DeviceCredentialRevokedEvent(device.getId(), credential.getDerivedId()));
+        }
         return Either.right(null);
     }
+
+    private void delete(Device device) {
+        deviceRepository.delete(device);
+        eventPublisher.publishEvent(new DeviceDeletedEvent(device.getId(), device.getSerialNumber()));
+    }
 }
@@ -0,0 +1,116 @@
+package com.josefy.nnpda.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.josefy.nnpda.repository.IMeasurementOutboxRepository.Entry;
+import com.josefy.nnpda.service.IMeasurementSearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Sends readings through the _bulk API into daily indices, named and shaped like the Logstash pipeline did so the
+ * Kibana index pattern keeps working. The document id is the sensor id and the timestamp, a reading that is sent
+ * again (resent by the device, retried here) overwrites its document instead of adding another one.
+ */
+@Component
+@ConditionalOnProperty(name = "search.indexing.enabled", havingValue = "true")
+@Slf4j
+public class ElasticsearchMeasurementIndex implements IMeasurementSearchIndex {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final DateTimeFormatter INDEX_DATE = DateTimeFormatter.ofPattern("yyyy.MM.dd").withZone(ZoneOffset.UTC);
+
+    private final RestClient restClient;
+    private final ObjectMapper objectMapper;
+    private final String indexPrefix;
+
+    public ElasticsearchMeasurementIndex(ObjectMapper objectMapper,
+                                         @Value("${search.elasticsearch.url:http://localhost:9200}") String url,
+                                         @Value("${search.elasticsearch.index-prefix:measurements-}") String indexPrefix,
+                                         @Value("${search.elasticsearch.connect-timeout:5s}") Duration connectTimeout,
+                                         @Value("${search.elasticsearch.read-timeout:30s}") Duration readTimeout) {
+        var requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .build());
+        requestFactory.setReadTimeout(readTimeout);
+        this.restClient = RestClient.builder()
+                .baseUrl(url)
+                .requestFactory(requestFactory)
+                .build();
+        this.objectMapper = objectMapper;
+        this.indexPrefix = indexPrefix;
+    }
+
+    @Override
+    public List<Integer> index(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+        var response = restClient.post()
+                .uri("/_bulk")
+                .contentType(NDJSON)
+                .body(bulkBody(entries))
+                .retrieve()
+                .body(JsonNode.class);
+        var items = response == null ? null : response.get("items");
+        if (items == null || items.size() != entries.size()) {
+            throw new IllegalStateException("Bulk response has %d items for %d documents"
+                    .formatted(items == null ? 0 : items.size(), entries.size()));
+        }
+        var statuses = new ArrayList<Integer>(entries.size());
+        for (var item : items) {
+            var result = item.elements().next();
+            int status = result.path("status").asInt();
+            if (status >= 300) {
+                log.debug("Failed to index {}: {}", result.path("_id").asText(), result.path("error"));
+            }
+            statuses.add(status);
+        }
+        return statuses;
+    }
+
+    private byte[] bulkBody(List<Entry> entries) {
+        var body = new ByteArrayOutputStream(entries.size() * 256);
+        try (var generator = objectMapper.getFactory().createGenerator(body)) {
+            generator.setRootValueSeparator(null);
+            for (var entry : entries) {
+                var timestamp = entry.timestamp().toInstant();
+                generator.writeStartObject();
+                generator.writeObjectFieldStart("index");
+                generator.writeStringField("_index", indexPrefix + INDEX_DATE.format(timestamp));
+                generator.writeStringField("_id", entry.sensorId() + "-" + ChronoUnit.MICROS.between(Instant.EPOCH, timestamp));
+                generator.writeEndObject();
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+
+                generator.writeStartObject();
+                generator.writeStringField("sensor_serial_number", entry.sensorSerialNumber());
+                generator.writeStringField("device_serial_number", entry.deviceSerialNumber());
+                generator.writeNumberField("value", entry.value());
+                generator.writeStringField("timestamp", timestamp.toString());
+                generator.writeStringField("@timestamp", timestamp.toString());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body.toByteArray();
+    }
+}
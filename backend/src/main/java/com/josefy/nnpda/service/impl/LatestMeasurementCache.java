@@ -0,0 +1,60 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.events.MeasurementsWrittenEvent;
+import com.josefy.nnpda.events.SensorDeletedEvent;
+import com.josefy.nnpda.repository.IMeasurementReader;
+import com.josefy.nnpda.repository.MeasurementRow;
+import com.josefy.nnpda.service.ILatestMeasurementCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Last known reading per sensor id. Updated once a write commits, so it never shows a reading that got rolled back,
+ * and warmed from the database when the application is ready. Both go through merge keeping the newer reading,
+ * whichever comes first. A written reading with the same timestamp replaces the cached one, the event only carries
+ * what was stored, so that's a corrected value (on-conflict update). The warm-up snapshot may be older than a
+ * committed write and never replaces on a tie.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LatestMeasurementCache implements ILatestMeasurementCache {
+    private final IMeasurementReader measurementReader;
+    private final ConcurrentHashMap<Long, MeasurementRow> bySensorId = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        var latest = measurementReader.findLatest();
+        latest.forEach(row -> offer(row, false));
+        log.info("Latest measurement cache warmed up with {} sensors", latest.size());
+    }
+
+    @Override
+    public Optional<MeasurementRow> find(long sensorId) {
+        return Optional.ofNullable(bySensorId.get(sensorId));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMeasurementsWritten(MeasurementsWrittenEvent event) {
+        event.rows().forEach(row -> offer(row, true));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSensorDeleted(SensorDeletedEvent event) {
+        bySensorId.remove(event.sensorId());
+    }
+
+    private void offer(MeasurementRow row, boolean replaceEqual) {
+        bySensorId.merge(row.sensorId(), row, (cached, offered) -> {
+            int newer = offered.timestamp().toInstant().compareTo(cached.timestamp().toInstant());
+            return newer > 0 || newer == 0 && replaceEqual ? offered : cached;
+        });
+    }
+}
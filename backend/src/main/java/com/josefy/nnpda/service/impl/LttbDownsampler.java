@@ -0,0 +1,144 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.repository.MeasurementRow;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+ * Largest-Triangle-Three-Buckets (Steinarsson) over readings arriving oldest first. The first and the last reading
+ * are always kept, the range in between is split into maxPoints - 2 buckets of equal time and from each bucket the
+ * reading forming the largest triangle with the reading picked before it and the average of the next bucket is
+ * kept. The buckets are split by time rather than by count, so the number of readings doesn't have to be known up
+ * front and only two buckets are held at a time, never the whole range.
+ */
+public final class LttbDownsampler {
+    private final Instant from;
+    private final double bucketMicros;
+    private final int buckets;
+    private final List<MeasurementRow> selected;
+
+    private MeasurementRow anchor;
+    // the latest reading isn't bucketed until another one arrives, it might be the last one
+    private MeasurementRow held;
+    private Bucket current;
+    private Bucket next;
+
+    public LttbDownsampler(OffsetDateTime from, OffsetDateTime to, int maxPoints) {
+        if (maxPoints < 3) {
+            throw new IllegalArgumentException("LTTB needs at least 3 points");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        this.from = from.toInstant();
+        this.buckets = maxPoints - 2;
+        this.bucketMicros = (double) ChronoUnit.MICROS.between(from, to) / buckets;
+        this.selected = new ArrayList<>(maxPoints);
+    }
+
+    public static List<MeasurementRow> downsample(Stream<MeasurementRow> rows, OffsetDateTime from,
+                                                  OffsetDateTime to, int maxPoints) {
+        var downsampler = new LttbDownsampler(from, to, maxPoints);
+        rows.forEachOrdered(downsampler::add);
+        return downsampler.finish();
+    }
+
+    public void add(MeasurementRow row) {
+        if (anchor == null) {
+            anchor = row;
+            selected.add(row);
+            return;
+        }
+        if (held != null) {
+            bucket(held);
+        }
+        held = row;
+    }
+
+    public List<MeasurementRow> finish() {
+        if (current != null) {
+            if (next != null) {
+                select(current, next.averageX(), next.averageY());
+                current = next;
+            }
+            select(current, x(held), held.value());
+        }
+        if (held != null) {
+            selected.add(held);
+        }
+        return selected;
+    }
+
+    private void bucket(MeasurementRow row) {
+        int index = (int) Math.min(buckets - 1, Math.max(0, x(row) / bucketMicros));
+        var tail = next != null ? next : current;
+        if (tail != null && tail.index == index) {
+            tail.add(row, x(row));
+            return;
+        }
+        // a new bucket, so the one before the tail is complete and can be picked from
+        if (next != null) {
+            select(current, next.averageX(), next.averageY());
+            current = next;
+        }
+        var bucket = new Bucket(index);
+        bucket.add(row, x(row));
+        if (current == null) {
+            current = bucket;
+        } else {
+            next = bucket;
+        }
+    }
+
+    private void select(Bucket bucket, double nextX, double nextY) {
+        double anchorX = x(anchor);
+        double anchorY = anchor.value();
+        MeasurementRow best = null;
+        double bestArea = -1;
+        for (var row : bucket.rows) {
+            // twice the area, only compared
+            double area = Math.abs((anchorX - nextX) * (row.value() - anchorY)
+                    - (anchorX - x(row)) * (nextY - anchorY));
+            if (area > bestArea) {
+                bestArea = area;
+                best = row;
+            }
+        }
+        selected.add(best);
+        anchor = best;
+    }
+
+    private double x(MeasurementRow row) {
+        return ChronoUnit.MICROS.between(from, row.timestamp().toInstant());
+    }
+
+    private static final class Bucket {
+        private final int index;
+        private final List<MeasurementRow> rows = new ArrayList<>();
+        private double sumX;
+        private double sumY;
+
+        Bucket(int index) {
+            this.index = index;
+        }
+
+        void add(MeasurementRow row, double x) {
+            rows.add(row);
+            sumX += x;
+            sumY += row.value();
+        }
+
+        double averageX() {
+            return sumX / rows.size();
+        }
+
+        double averageY() {
+            return sumY / rows.size();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.dto.measurement.MeasurementChangeDto;
+import com.josefy.nnpda.dto.measurement.MeasurementChangesDto;
+import com.josefy.nnpda.infrastructure.utils.Either;
+import com.josefy.nnpda.infrastructure.utils.Status;
+import com.josefy.nnpda.repository.IMeasurementChangeRepository;
+import com.josefy.nnpda.repository.IMeasurementChangeRepository.Position;
+import com.josefy.nnpda.service.IMeasurementChangeService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+@Service
+public class MeasurementChangeService implements IMeasurementChangeService {
+    private final IMeasurementChangeRepository changeRepository;
+    private final int maxPoints;
+
+    public MeasurementChangeService(IMeasurementChangeRepository changeRepository,
+                                    @Value("${measurements.query.max-points:10000}") int maxPoints) {
+        this.changeRepository = changeRepository;
+        this.maxPoints = maxPoints;
+    }
+
+    @Override
+    public Either<Status, MeasurementChangesDto> findChanges(String after, int limit) {
+        Position position;
+        try {
+            position = Position.parse(after);
+        } catch (IllegalArgumentException e) {
+            return Either.left(new Status("Invalid 'after': " + e.getMessage(), HttpStatus.BAD_REQUEST));
+        }
+        if (limit <= 0 || limit > maxPoints) {
+            return Either.left(new Status("Limit must be between 1 and %d.".formatted(maxPoints), HttpStatus.BAD_REQUEST));
+        }
+        var changes = changeRepository.findAfter(position, limit).stream()
+                .map(MeasurementChangeDto::fromChange)
+                .toList();
+        var next = changes.isEmpty() ? position.toString() : changes.get(changes.size() - 1).position();
+        return Either.right(new MeasurementChangesDto(changes, next));
+    }
+}
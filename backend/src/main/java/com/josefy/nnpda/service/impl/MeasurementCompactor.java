@@ -0,0 +1,134 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.events.MeasurementsCompactedEvent;
+import com.josefy.nnpda.repository.IMeasurementBlockRepository;
+import com.josefy.nnpda.repository.IMeasurementBlockRepository.SensorHour;
+import com.josefy.nnpda.repository.MeasurementRow;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Moves readings older than compact-after out of the measurements table into compressed blocks
+ * (MeasurementBlockCodec), one sensor-hour per transaction. Readings that show up later for an hour that's already
+ * compacted are merged into its blocks on the next run, replacing a block reading with the same timestamp.
+ */
+@Component
+@ConditionalOnProperty(name = "measurements.compaction.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class MeasurementCompactor {
+    private static final int HOURS_PER_QUERY = 1000;
+
+    private final IMeasurementBlockRepository blockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration compactAfter;
+    private final int blockSize;
+    private final Counter compactedRows;
+    private final Counter writtenBlocks;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public MeasurementCompactor(IMeasurementBlockRepository blockRepository,
+                                TransactionTemplate transactionTemplate,
+                                ApplicationEventPublisher eventPublisher,
+                                MeterRegistry meterRegistry,
+                                @Value("${measurements.compaction.compact-after:30d}") Duration compactAfter,
+                                @Value("${measurements.compaction.block-size:1000}") int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("measurements.compaction.block-size must be positive");
+        }
+        this.blockRepository = blockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.compactAfter = compactAfter;
+        this.blockSize = blockSize;
+        this.compactedRows = meterRegistry.counter("measurements.compaction.rows");
+        this.writtenBlocks = meterRegistry.counter("measurements.compaction.blocks");
+    }
+
+    @Scheduled(cron = "${measurements.compaction.cron:0 0 4 * * *}")
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Skipping measurement compaction, the previous run is still going");
+            return;
+        }
+        try {
+            var cutoff = OffsetDateTime.now(ZoneOffset.UTC).minus(compactAfter).truncatedTo(ChronoUnit.HOURS);
+            long rows = 0;
+            List<SensorHour> hours;
+            do {
+                hours = blockRepository.findCompactable(cutoff, HOURS_PER_QUERY);
+                for (var hour : hours) {
+                    rows += transactionTemplate.execute(status -> compact(hour));
+                }
+            } while (hours.size() == HOURS_PER_QUERY);
+            log.info("Compacted {} measurements older than {}", rows, cutoff);
+        } catch (RuntimeException e) {
+            // whatever committed stays compacted, the rest is picked up next time
+            log.error("Measurement compaction failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int compact(SensorHour hour) {
+        long sensorId = hour.sensorId();
+        var from = hour.start();
+        var to = from.plusHours(1);
+        blockRepository.lock(sensorId);
+        var rows = blockRepository.lockRows(sensorId, from, to);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        var merged = new TreeMap<Instant, MeasurementRow>();
+        for (var row : blockRepository.takeBlocks(sensorId, from, to)) {
+            merged.put(row.timestamp().toInstant(), row);
+        }
+        var minutes = new HashSet<OffsetDateTime>();
+        for (var row : rows) {
+            merged.put(row.row().timestamp().toInstant(), row.row());
+            minutes.add(minute(row.row()));
+        }
+
+        var block = new ArrayList<MeasurementRow>(blockSize);
+        for (var row : merged.values()) {
+            // full blocks are closed at the next minute, so no minute is split between two
+            if (block.size() >= blockSize && !minute(row).equals(minute(block.get(block.size() - 1)))) {
+                blockRepository.insert(sensorId, block);
+                writtenBlocks.increment();
+                block = new ArrayList<>(blockSize);
+            }
+            block.add(row);
+        }
+        blockRepository.insert(sensorId, block);
+        writtenBlocks.increment();
+        blockRepository.deleteRows(sensorId, from, to, rows);
+
+        eventPublisher.publishEvent(new MeasurementsCompactedEvent(merged.values().stream()
+                .filter(row -> minutes.contains(minute(row)))
+                .toList()));
+        compactedRows.increment(rows.size());
+        return rows.size();
+    }
+
+    private static OffsetDateTime minute(MeasurementRow row) {
+        return row.timestamp().withOffsetSameInstant(ZoneOffset.UTC).truncatedTo(ChronoUnit.MINUTES);
+    }
+}
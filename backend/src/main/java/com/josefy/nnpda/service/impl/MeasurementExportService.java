@@ -0,0 +1,159 @@
+package com.josefy.nnpda.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.josefy.nnpda.dto.measurement.MeasurementExportFormat;
+import com.josefy.nnpda.dto.sensor.SensorOwnershipDto;
+import com.josefy.nnpda.infrastructure.utils.Either;
+import com.josefy.nnpda.infrastructure.utils.Status;
+import com.josefy.nnpda.repository.IMeasurementReader;
+import com.josefy.nnpda.repository.MeasurementRow;
+import com.josefy.nnpda.service.IDeviceAssignmentIndex;
+import com.josefy.nnpda.service.IMeasurementExportService;
+import com.josefy.nnpda.service.ISensorOwnershipIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Exports go straight from the reader's cursor (measurements.query.fetch-size rows at a time) to the response, one
+ * sensor after another, so memory stays the same however long the range is. Nothing is read until the body is
+ * written, which happens on an MVC async thread, so the body opens its own transaction for the cursors.
+ */
+@Service
+@Slf4j
+public class MeasurementExportService implements IMeasurementExportService {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final IDeviceAssignmentIndex deviceAssignmentIndex;
+    private final ISensorOwnershipIndex sensorOwnershipIndex;
+    private final IMeasurementReader measurementReader;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public MeasurementExportService(IDeviceAssignmentIndex deviceAssignmentIndex,
+                                    ISensorOwnershipIndex sensorOwnershipIndex,
+                                    IMeasurementReader measurementReader,
+                                    ObjectMapper objectMapper,
+                                    PlatformTransactionManager transactionManager) {
+        this.deviceAssignmentIndex = deviceAssignmentIndex;
+        this.sensorOwnershipIndex = sensorOwnershipIndex;
+        this.measurementReader = measurementReader;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    @Override
+    public Either<Status, StreamingResponseBody> export(String username, String deviceSerialNumber,
+                                                        OffsetDateTime from, OffsetDateTime to,
+                                                        MeasurementExportFormat format, boolean gzip) {
+        if (!from.isBefore(to)) {
+            return Either.left(new Status("'from' must be before 'to'.", HttpStatus.BAD_REQUEST));
+        }
+        var deviceId = deviceAssignmentIndex.findAssignedDeviceId(username, deviceSerialNumber);
+        if (deviceId.isEmpty()) {
+            return Either.left(new Status(
+                    "Device with serial number " + deviceSerialNumber + " is not assigned to the user.",
+                    HttpStatus.NOT_FOUND));
+        }
+        var sensors = sensorOwnershipIndex.findByDevice(deviceId.get()).stream()
+                .sorted(Comparator.comparing(SensorOwnershipDto::serialNumber))
+                .toList();
+        return Either.right(output -> {
+            var target = gzip ? new GZIPOutputStream(output, BUFFER_SIZE) : output;
+            var writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE);
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(writer, sensors, from, to, format));
+            } catch (UncheckedIOException e) {
+                // the client went away, the cursors are closed and the transaction is rolled back by now
+                log.info("Export of device {} for {} aborted: {}", deviceSerialNumber, username, e.getMessage());
+                throw e.getCause();
+            }
+            writer.flush();
+            if (target instanceof GZIPOutputStream gzipOutput) {
+                gzipOutput.finish();
+            }
+        });
+    }
+
+    private void write(Writer writer, List<SensorOwnershipDto> sensors, OffsetDateTime from, OffsetDateTime to,
+                       MeasurementExportFormat format) {
+        try {
+            switch (format) {
+                case CSV -> writeCsv(writer, sensors, from, to);
+                case NDJSON -> writeNdjson(writer, sensors, from, to);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeCsv(Writer writer, List<SensorOwnershipDto> sensors, OffsetDateTime from, OffsetDateTime to)
+            throws IOException {
+        writer.write("sensor_serial_number,timestamp,value\n");
+        for (var sensor : sensors) {
+            var serialNumber = csvField(sensor.serialNumber());
+            try (var rows = measurementReader.stream(sensor.sensorId(), from, to)) {
+                for (var iterator = rows.iterator(); iterator.hasNext(); ) {
+                    var row = iterator.next();
+                    writer.write(serialNumber);
+                    writer.write(',');
+                    writer.write(timestamp(row));
+                    writer.write(',');
+                    writer.write(Double.toString(row.value()));
+                    writer.write('\n');
+                }
+            }
+        }
+    }
+
+    private void writeNdjson(Writer writer, List<SensorOwnershipDto> sensors, OffsetDateTime from, OffsetDateTime to)
+            throws IOException {
+        // the generator writes into the buffered writer, which is flushed and closed by the caller
+        try (var generator = objectMapper.getFactory().createGenerator(writer)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            for (var sensor : sensors) {
+                try (var rows = measurementReader.stream(sensor.sensorId(), from, to)) {
+                    for (var iterator = rows.iterator(); iterator.hasNext(); ) {
+                        var row = iterator.next();
+                        generator.writeStartObject();
+                        generator.writeStringField("sensorSerialNumber", sensor.serialNumber());
+                        generator.writeStringField("timestamp", timestamp(row));
+                        generator.writeNumberField("value", row.value());
+                        generator.writeEndObject();
+                        generator.writeRaw('\n');
+                    }
+                }
+            }
+        }
+    }
+
+    private static String timestamp(MeasurementRow row) {
+        return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(row.timestamp());
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,233 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.dto.measurement.LatestMeasurementDto;
+import com.josefy.nnpda.dto.sensor.SensorOwnershipDto;
+import com.josefy.nnpda.events.DeviceAssignmentChangedEvent;
+import com.josefy.nnpda.events.DeviceDeletedEvent;
+import com.josefy.nnpda.events.MeasurementsWrittenEvent;
+import com.josefy.nnpda.infrastructure.utils.Either;
+import com.josefy.nnpda.infrastructure.utils.Status;
+import com.josefy.nnpda.service.IDeviceAssignmentIndex;
+import com.josefy.nnpda.service.ILatestMeasurementCache;
+import com.josefy.nnpda.service.IMeasurementFeed;
+import com.josefy.nnpda.service.ISensorOwnershipIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/*
+ * Fan-out of committed readings to SSE subscribers, grouped by device. Publishing never touches the database or a
+ * socket, it only offers the readings of a commit to the bounded buffer of every subscriber of the device, as a
+ * single entry however many readings the commit had; each subscriber is
+ * drained by its own virtual thread, so a slow connection only ever blocks itself. A subscriber whose buffer fills
+ * up is disconnected rather than slowing anyone down, EventSource reconnects and starts over from the latest values.
+ */
+@Component
+@Slf4j
+public class MeasurementFeed implements IMeasurementFeed {
+    private static final String MEASUREMENT_EVENT = "measurement";
+
+    private final IDeviceAssignmentIndex deviceAssignmentIndex;
+    private final ISensorOwnershipIndex sensorOwnershipIndex;
+    private final ILatestMeasurementCache latestMeasurementCache;
+    private final int bufferSize;
+    private final Duration timeout;
+    private final ConcurrentHashMap<Long, Set<Subscriber>> subscribersByDeviceId = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("measurement-feed-", 0).factory());
+    private final Counter sentReadings;
+    private final Counter droppedSubscribers;
+
+    public MeasurementFeed(IDeviceAssignmentIndex deviceAssignmentIndex,
+                           ISensorOwnershipIndex sensorOwnershipIndex,
+                           ILatestMeasurementCache latestMeasurementCache,
+                           MeterRegistry meterRegistry,
+                           @Value("${measurements.feed.buffer-size:256}") int bufferSize,
+                           @Value("${measurements.feed.timeout:30m}") Duration timeout) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("measurements.feed.buffer-size must be positive");
+        }
+        this.deviceAssignmentIndex = deviceAssignmentIndex;
+        this.sensorOwnershipIndex = sensorOwnershipIndex;
+        this.latestMeasurementCache = latestMeasurementCache;
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        Gauge.builder("measurements.feed.subscribers", subscriberCount, AtomicInteger::get).register(meterRegistry);
+        this.sentReadings = meterRegistry.counter("measurements.feed.sent");
+        this.droppedSubscribers = meterRegistry.counter("measurements.feed.dropped");
+    }
+
+    @Override
+    public Either<Status, SseEmitter> subscribe(String username, String deviceSerialNumber) {
+        var deviceId = deviceAssignmentIndex.findAssignedDeviceId(username, deviceSerialNumber);
+        if (deviceId.isEmpty()) {
+            return Either.left(new Status(
+                    "Device with serial number " + deviceSerialNumber + " is not assigned to the user.",
+                    HttpStatus.NOT_FOUND));
+        }
+        var subscriber = new Subscriber(deviceId.get(), username, new SseEmitter(timeout.toMillis()));
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+        subscriber.emitter.onTimeout(() -> unsubscribe(subscriber));
+        subscriber.emitter.onError(e -> unsubscribe(subscriber));
+        // registered before the snapshot is taken, a reading committing in between is sent twice rather than lost
+        subscribersByDeviceId.computeIfAbsent(subscriber.deviceId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+        var latest = sensorOwnershipIndex.findByDevice(subscriber.deviceId).stream()
+                .sorted(Comparator.comparing(SensorOwnershipDto::serialNumber))
+                .flatMap(sensor -> latestMeasurementCache.find(sensor.sensorId()).stream()
+                        .map(row -> new LatestMeasurementDto(sensor.serialNumber(), row.timestamp(), row.value())))
+                .toList();
+        if (!latest.isEmpty()) {
+            offer(subscriber, latest);
+        }
+        return Either.right(subscriber.emitter);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMeasurementsWritten(MeasurementsWrittenEvent event) {
+        if (subscribersByDeviceId.isEmpty()) {
+            return;
+        }
+        Map<Long, List<LatestMeasurementDto>> byDeviceId = new LinkedHashMap<>();
+        for (var row : event.rows()) {
+            sensorOwnershipIndex.findBySensorId(row.sensorId())
+                    .filter(sensor -> sensor.deviceId() != null && subscribersByDeviceId.containsKey(sensor.deviceId()))
+                    .ifPresent(sensor -> byDeviceId.computeIfAbsent(sensor.deviceId(), id -> new ArrayList<>())
+                            .add(new LatestMeasurementDto(sensor.serialNumber(), row.timestamp(), row.value())));
+        }
+        byDeviceId.forEach((deviceId, readings) -> {
+            for (var subscriber : subscribersByDeviceId.getOrDefault(deviceId, Set.of())) {
+                offer(subscriber, readings);
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeviceAssignmentChanged(DeviceAssignmentChangedEvent event) {
+        if (!event.assigned()) {
+            disconnect(event.deviceId(), subscriber -> subscriber.username.equals(event.username()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeviceDeleted(DeviceDeletedEvent event) {
+        disconnect(event.deviceId(), subscriber -> true);
+    }
+
+    // comments keep proxies from closing idle connections and find the dead ones
+    @Scheduled(fixedDelayString = "${measurements.feed.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        subscribersByDeviceId.values().forEach(subscribers -> subscribers.forEach(subscriber -> offer(subscriber, null)));
+    }
+
+    @PreDestroy
+    public void close() {
+        subscribersByDeviceId.values().forEach(subscribers -> subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        senders.shutdownNow();
+    }
+
+    // null is a heartbeat
+    private void offer(Subscriber subscriber, List<LatestMeasurementDto> readings) {
+        if (subscriber.closed.get()) {
+            return;
+        }
+        if (!subscriber.buffer.offer(readings == null ? List.of() : readings)) {
+            log.warn("Dropping slow measurement feed subscriber {} of device {}, {} commits behind",
+                    subscriber.username, subscriber.deviceId, bufferSize);
+            droppedSubscribers.increment();
+            subscriber.close();
+            return;
+        }
+        if (subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            do {
+                List<LatestMeasurementDto> readings;
+                while (!subscriber.closed.get() && (readings = subscriber.buffer.poll()) != null) {
+                    if (readings.isEmpty()) {
+                        subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                    for (var reading : readings) {
+                        subscriber.emitter.send(SseEmitter.event().name(MEASUREMENT_EVENT).data(reading));
+                        sentReadings.increment();
+                    }
+                }
+                subscriber.draining.set(false);
+                // an offer between the last poll and the reset saw draining still set, pick it up here
+            } while (!subscriber.buffer.isEmpty() && !subscriber.closed.get() && subscriber.draining.compareAndSet(false, true));
+        } catch (IOException | IllegalStateException e) {
+            // the client went away, the emitter's callbacks unsubscribe it
+            subscriber.close();
+        }
+    }
+
+    private void disconnect(long deviceId, Predicate<Subscriber> filter) {
+        subscribersByDeviceId.getOrDefault(deviceId, Set.of()).stream()
+                .filter(filter)
+                .toList()
+                .forEach(Subscriber::close);
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscriber.closed.set(true);
+        subscribersByDeviceId.computeIfPresent(subscriber.deviceId, (id, subscribers) -> {
+            if (subscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    private final class Subscriber {
+        private final long deviceId;
+        private final String username;
+        private final SseEmitter emitter;
+        // readings per commit, an empty list is a heartbeat
+        private final BlockingQueue<List<LatestMeasurementDto>> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        private Subscriber(long deviceId, String username, SseEmitter emitter) {
+            this.deviceId = deviceId;
+            this.username = username;
+            this.emitter = emitter;
+        }
+
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                unsubscribe(this);
+                emitter.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.events.MeasurementsWrittenEvent;
+import com.josefy.nnpda.repository.IMeasurementOutboxRepository;
+import com.josefy.nnpda.service.IMeasurementSearchIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+
+/*
+ * Transactional outbox in front of elasticsearch. Every write appends its readings to measurement_outbox in the same
+ * transaction, so a reading is queued for indexing exactly when it commits, late and resent ones included. The worker
+ * claims the oldest due entries, sends them in one bulk request and deletes what elasticsearch took in the same
+ * transaction; the outbox itself is the checkpoint, a crash or a failed request leaves the entries for the next run.
+ * Rejected documents are retried with a growing delay and given up after max-attempts, a failing cluster backs the
+ * whole worker off.
+ */
+@Component
+@ConditionalOnProperty(name = "search.indexing.enabled", havingValue = "true")
+@Slf4j
+public class MeasurementIndexer {
+    private final IMeasurementOutboxRepository outboxRepository;
+    private final IMeasurementSearchIndex searchIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+    private final Counter indexedDocuments;
+    private final Counter retriedDocuments;
+    private final Counter rejectedDocuments;
+    private final Counter failedRequests;
+    private Duration backoff = Duration.ZERO;
+    private Instant pausedUntil = Instant.MIN;
+
+    public MeasurementIndexer(IMeasurementOutboxRepository outboxRepository,
+                              IMeasurementSearchIndex searchIndex,
+                              TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${search.indexing.batch-size:1000}") int batchSize,
+                              @Value("${search.indexing.max-attempts:10}") int maxAttempts,
+                              @Value("${search.indexing.min-backoff:1s}") Duration minBackoff,
+                              @Value("${search.indexing.max-backoff:5m}") Duration maxBackoff) {
+        this.outboxRepository = outboxRepository;
+        this.searchIndex = searchIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+        this.indexedDocuments = meterRegistry.counter("search.indexing.documents", "result", "indexed");
+        this.retriedDocuments = meterRegistry.counter("search.indexing.documents", "result", "retried");
+        this.rejectedDocuments = meterRegistry.counter("search.indexing.documents", "result", "rejected");
+        this.failedRequests = meterRegistry.counter("search.indexing.failures");
+    }
+
+    @EventListener
+    public void onMeasurementsWritten(MeasurementsWrittenEvent event) {
+        outboxRepository.append(event.rows());
+    }
+
+    @Scheduled(fixedDelayString = "${search.indexing.interval:PT1S}")
+    public void run() {
+        if (Instant.now().isBefore(pausedUntil)) {
+            return;
+        }
+        try {
+            int claimed;
+            do {
+                claimed = transactionTemplate.execute(status -> indexBatch());
+            } while (claimed == batchSize);
+            backoff = Duration.ZERO;
+        } catch (RuntimeException e) {
+            // the batch is rolled back, its entries stay in the outbox untouched
+            failedRequests.increment();
+            backoff = backoff.isZero() ? minBackoff : min(backoff.multipliedBy(2), maxBackoff);
+            pausedUntil = Instant.now().plus(backoff);
+            log.warn("Failed to index measurements, retrying in {}: {}", backoff, e.getMessage());
+        }
+    }
+
+    private int indexBatch() {
+        var entries = outboxRepository.claim(batchSize);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        var statuses = searchIndex.index(entries);
+        var done = new ArrayList<Long>(entries.size());
+        var retry = new ArrayList<Long>();
+        for (int i = 0; i < entries.size(); i++) {
+            var entry = entries.get(i);
+            int status = statuses.get(i);
+            if (status < 300) {
+                done.add(entry.id());
+                indexedDocuments.increment();
+            } else if (entry.attempts() + 1 >= maxAttempts) {
+                log.error("Giving up indexing reading of sensor {} at {} after {} attempts, last status {}",
+                        entry.sensorSerialNumber(), entry.timestamp(), entry.attempts() + 1, status);
+                done.add(entry.id());
+                rejectedDocuments.increment();
+            } else {
+                retry.add(entry.id());
+                retriedDocuments.increment();
+            }
+        }
+        outboxRepository.delete(done);
+        // 429s and mapping errors alike, a mapping error just runs out of attempts sooner or later
+        outboxRepository.retry(retry, minBackoff, maxBackoff);
+        return entries.size();
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
@@ -0,0 +1,312 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.repository.IMeasurementWriter;
+import com.josefy.nnpda.repository.MeasurementRow;
+import com.josefy.nnpda.service.IMeasurementIngestionQueue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Write-behind ingestion: validated batches wait in a bounded queue and a few writer threads drain them,
+ * coalescing whatever is queued into one bigger transaction. Only exists with measurements.ingestion.mode=async.
+ * Stops after the web server, so everything that got accepted is written (or spilled to disk) before the
+ * datasource goes away. The readings were acknowledged already, so a batch that can't be written is spilled as
+ * well and replayed later; one that keeps failing is set aside as a .failed file rather than dropped.
+ */
+@Service
+@ConditionalOnProperty(name = "measurements.ingestion.mode", havingValue = "async")
+@Slf4j
+public class MeasurementIngestionQueue implements IMeasurementIngestionQueue, SmartLifecycle {
+    public enum BackpressurePolicy { BLOCK, REJECT, SPILL }
+
+    private static final long POLL_INTERVAL_MS = 500;
+    private static final Duration MIN_REPLAY_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_REPLAY_BACKOFF = Duration.ofMinutes(5);
+
+    private final IMeasurementWriter measurementWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<List<MeasurementRow>> queue;
+    private final int writerCount;
+    private final int coalesceRows;
+    private final BackpressurePolicy backpressure;
+    private final Duration blockTimeout;
+    private final Duration drainTimeout;
+    private final MeasurementSpillDirectory spillDirectory;
+    private final int replayAttempts;
+    private final boolean virtualThreads;
+
+    private final Counter queuedBatches;
+    private final Counter spilledBatches;
+    private final Counter rejectedBatches;
+    private final Counter writtenRows;
+    private final Counter skippedRows;
+    private final Counter failedRows;
+
+    private ExecutorService writers;
+    private volatile boolean running = false;
+    // a failed replay most likely means the database is gone, nobody replays until this passes
+    private volatile Duration replayBackoff = Duration.ZERO;
+    private volatile Instant replayPausedUntil = Instant.MIN;
+
+    public MeasurementIngestionQueue(IMeasurementWriter measurementWriter,
+                                     TransactionTemplate transactionTemplate,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${measurements.ingestion.queue.capacity:1024}") int capacity,
+                                     @Value("${measurements.ingestion.queue.writers:2}") int writerCount,
+                                     @Value("${measurements.ingestion.queue.coalesce-rows:10000}") int coalesceRows,
+                                     @Value("${measurements.ingestion.queue.backpressure:block}") BackpressurePolicy backpressure,
+                                     @Value("${measurements.ingestion.queue.block-timeout:5s}") Duration blockTimeout,
+                                     @Value("${measurements.ingestion.queue.drain-timeout:30s}") Duration drainTimeout,
+                                     @Value("${measurements.ingestion.queue.spill-directory:${java.io.tmpdir}/nnpda-spill}") Path spillDirectory,
+                                     @Value("${measurements.ingestion.queue.replay-attempts:10}") int replayAttempts,
+                                     @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads)
+            throws IOException {
+        this.measurementWriter = measurementWriter;
+        this.transactionTemplate = transactionTemplate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerCount = writerCount;
+        this.coalesceRows = coalesceRows;
+        this.backpressure = backpressure;
+        this.blockTimeout = blockTimeout;
+        this.drainTimeout = drainTimeout;
+        this.spillDirectory = new MeasurementSpillDirectory(spillDirectory);
+        this.replayAttempts = replayAttempts;
+        this.virtualThreads = virtualThreads;
+
+        Gauge.builder("measurements.ingestion.queue.depth", queue, BlockingQueue::size)
+                .description("Batches waiting for a writer")
+                .register(meterRegistry);
+        Gauge.builder("measurements.ingestion.queue.remaining", queue, BlockingQueue::remainingCapacity)
+                .description("Batches that can still be queued before backpressure kicks in")
+                .register(meterRegistry);
+        Gauge.builder("measurements.ingestion.spill.pending", this.spillDirectory, MeasurementSpillDirectory::pending)
+                .description("Spilled batches waiting to be replayed")
+                .register(meterRegistry);
+        queuedBatches = meterRegistry.counter("measurements.ingestion.batches", "result", "queued");
+        spilledBatches = meterRegistry.counter("measurements.ingestion.batches", "result", "spilled");
+        rejectedBatches = meterRegistry.counter("measurements.ingestion.batches", "result", "rejected");
+        writtenRows = meterRegistry.counter("measurements.ingestion.rows", "result", "written");
+        skippedRows = meterRegistry.counter("measurements.ingestion.rows", "result", "skipped");
+        failedRows = meterRegistry.counter("measurements.ingestion.rows", "result", "failed");
+    }
+
+    @Override
+    public EnqueueResult enqueue(List<MeasurementRow> rows) {
+        if (!running) {
+            rejectedBatches.increment();
+            return EnqueueResult.REJECTED;
+        }
+        if (offer(rows)) {
+            queuedBatches.increment();
+            return EnqueueResult.QUEUED;
+        }
+        if (backpressure == BackpressurePolicy.SPILL) {
+            try {
+                spillDirectory.spill(rows);
+                spilledBatches.increment();
+                return EnqueueResult.SPILLED;
+            } catch (IOException e) {
+                log.error("Failed to spill {} measurements", rows.size(), e);
+            }
+        }
+        rejectedBatches.increment();
+        return EnqueueResult.REJECTED;
+    }
+
+    private boolean offer(List<MeasurementRow> rows) {
+        if (backpressure != BackpressurePolicy.BLOCK) {
+            return queue.offer(rows);
+        }
+        try {
+            return queue.offer(rows, blockTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public int depth() {
+        return queue.size();
+    }
+
+    private void drain() {
+        while (running || !queue.isEmpty()) {
+            List<MeasurementRow> first;
+            try {
+                first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                if (running) {
+                    replaySpilled();
+                }
+                continue;
+            }
+            var batches = new ArrayList<List<MeasurementRow>>();
+            batches.add(first);
+            int rowCount = first.size();
+            while (rowCount < coalesceRows) {
+                var next = queue.poll();
+                if (next == null) {
+                    break;
+                }
+                batches.add(next);
+                rowCount += next.size();
+            }
+            writeCoalesced(batches, rowCount);
+        }
+    }
+
+    private void writeCoalesced(List<List<MeasurementRow>> batches, int rowCount) {
+        var rows = new ArrayList<MeasurementRow>(rowCount);
+        batches.forEach(rows::addAll);
+        if (write(rows)) {
+            return;
+        }
+        if (batches.size() == 1) {
+            spillFailed(rows);
+            return;
+        }
+        // one bad batch shouldn't take down the ones it got coalesced with
+        for (var batch : batches) {
+            if (!write(batch)) {
+                spillFailed(batch);
+            }
+        }
+    }
+
+    private boolean write(List<MeasurementRow> rows) {
+        try {
+            var result = transactionTemplate.execute(status -> measurementWriter.write(rows));
+            writtenRows.increment(result.written());
+            skippedRows.increment(result.skipped());
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to write {} queued measurements", rows.size(), e);
+            return false;
+        }
+    }
+
+    private void spillFailed(List<MeasurementRow> rows) {
+        try {
+            spillDirectory.spill(rows);
+            spilledBatches.increment();
+        } catch (IOException e) {
+            failedRows.increment(rows.size());
+            log.error("Lost {} accepted measurements, failed to write and to spill them", rows.size(), e);
+        }
+    }
+
+    private void replaySpilled() {
+        if (Instant.now().isBefore(replayPausedUntil)) {
+            return;
+        }
+        Optional<Path> claimed;
+        try {
+            claimed = spillDirectory.claimOldest();
+        } catch (IOException e) {
+            log.error("Failed to claim spilled measurements", e);
+            return;
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+        var file = claimed.get();
+        try {
+            List<MeasurementRow> rows;
+            try {
+                rows = spillDirectory.read(file);
+            } catch (IOException | RuntimeException e) {
+                log.error("Can't read spilled measurements {}, setting them aside", file, e);
+                spillDirectory.fail(file);
+                return;
+            }
+            if (write(rows)) {
+                spillDirectory.complete(file);
+                replayBackoff = Duration.ZERO;
+                return;
+            }
+            int failures = spillDirectory.recordFailure(file);
+            if (failures >= replayAttempts) {
+                log.error("Setting {} spilled measurements aside in {} after {} failed replays", rows.size(), file, failures);
+                failedRows.increment(rows.size());
+                spillDirectory.fail(file);
+            } else {
+                spillDirectory.release(file);
+            }
+            var backoff = replayBackoff.isZero() ? MIN_REPLAY_BACKOFF : replayBackoff.multipliedBy(2);
+            replayBackoff = backoff.compareTo(MAX_REPLAY_BACKOFF) < 0 ? backoff : MAX_REPLAY_BACKOFF;
+            replayPausedUntil = Instant.now().plus(replayBackoff);
+        } catch (IOException e) {
+            log.error("Failed to move spilled measurements {}", file, e);
+        }
+    }
+
+    @Override
+    public void start() {
+        // writers spend most of their time waiting on the database, same as the request threads
+        var threads = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform();
+        writers = Executors.newFixedThreadPool(writerCount, threads.name("measurement-writer-", 0).factory());
+        running = true;
+        for (int i = 0; i < writerCount; i++) {
+            writers.submit(this::drain);
+        }
+        log.info("Async measurement ingestion started, {} {} writers, {} backpressure",
+                writerCount, virtualThreads ? "virtual" : "platform", backpressure);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        writers.shutdown();
+        try {
+            if (!writers.awaitTermination(drainTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Ingestion queue not drained in {}, spilling {} batches", drainTimeout, queue.size());
+                writers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writers.shutdownNow();
+        }
+        // replayed on the next start
+        List<MeasurementRow> rows;
+        while ((rows = queue.poll()) != null) {
+            spillFailed(rows);
+        }
+        log.info("Async measurement ingestion stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // lower phase = stopped later, the web server (graceful shutdown) has to stop handing us batches first
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+}
@@ -0,0 +1,122 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.repository.IMeasurementPartitionRepository;
+import com.josefy.nnpda.repository.MeasurementPartition;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Keeps partitions of the measurements table ready ahead of time, so an insert never has to land in the default
+ * partition. Partitions are aligned to UTC days (or ISO weeks) and continue from the last existing one, switching
+ * the interval only affects partitions created from then on.
+ */
+@Component
+@Slf4j
+public class MeasurementPartitionMaintainer {
+    public enum Interval { DAY, WEEK }
+
+    private static final String PREFIX = "measurements_p";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final IMeasurementPartitionRepository partitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Interval interval;
+    private final Duration createAhead;
+    private final AtomicReference<OffsetDateTime> horizon = new AtomicReference<>();
+    private volatile boolean reportedUnpartitioned = false;
+
+    public MeasurementPartitionMaintainer(IMeasurementPartitionRepository partitionRepository,
+                                          TransactionTemplate transactionTemplate,
+                                          MeterRegistry meterRegistry,
+                                          @Value("${measurements.partitioning.interval:day}") Interval interval,
+                                          @Value("${measurements.partitioning.create-ahead:14d}") Duration createAhead) {
+        this.partitionRepository = partitionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.interval = interval;
+        this.createAhead = createAhead;
+    }
+
+    // not from the constructor, the gauge would get hold of a half constructed this
+    @PostConstruct
+    public void registerGauge() {
+        Gauge.builder("measurements.partitions.ahead", this, MeasurementPartitionMaintainer::secondsAhead)
+                .description("Time until the last measurements partition ends")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        createPartitions();
+    }
+
+    @Scheduled(cron = "${measurements.partitioning.cron:0 0 * * * *}")
+    public void createPartitions() {
+        if (!partitionRepository.isPartitioned()) {
+            if (!reportedUnpartitioned) {
+                log.info("Measurements table is not partitioned, skipping partition maintenance");
+                reportedUnpartitioned = true;
+            }
+            return;
+        }
+        var now = OffsetDateTime.now(ZoneOffset.UTC);
+        var end = partitionRepository.findAll().stream()
+                .map(MeasurementPartition::to)
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .map(to -> to.withOffsetSameInstant(ZoneOffset.UTC))
+                .orElseGet(() -> start(now));
+        var target = now.plus(createAhead);
+        while (end.isBefore(target)) {
+            var from = end;
+            var to = next(from);
+            var name = PREFIX + from.format(SUFFIX);
+            try {
+                transactionTemplate.executeWithoutResult(status -> partitionRepository.create(name, from, to));
+            } catch (RuntimeException e) {
+                log.error("Failed to create measurements partition {} [{}, {})", name, from, to, e);
+                break;
+            }
+            log.info("Created measurements partition {} [{}, {})", name, from, to);
+            end = to;
+        }
+        horizon.set(end);
+    }
+
+    private double secondsAhead() {
+        var end = horizon.get();
+        return end == null ? 0 : Duration.between(OffsetDateTime.now(ZoneOffset.UTC), end).toSeconds();
+    }
+
+    private OffsetDateTime start(OffsetDateTime time) {
+        var day = time.truncatedTo(ChronoUnit.DAYS);
+        return interval == Interval.WEEK ? day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : day;
+    }
+
+    // the start of the next interval, a partition starting off the grid just gets shorter
+    private OffsetDateTime next(OffsetDateTime from) {
+        var start = start(from);
+        return interval == Interval.WEEK ? start.plusWeeks(1) : start.plusDays(1);
+    }
+}
@@ -0,0 +1,65 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.events.MeasurementsCompactedEvent;
+import com.josefy.nnpda.events.MeasurementsWrittenEvent;
+import com.josefy.nnpda.repository.IMeasurementRollupRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/*
+ * Keeps the 1m / 1h / 1d rollups up to date. Every write marks the minute buckets it touched in the same
+ * transaction, the worker picks the marks up shortly after and re-aggregates just those buckets. With several
+ * instances the marks are claimed with SKIP LOCKED, so each bucket is refreshed by one of them.
+ */
+@Component
+@ConditionalOnProperty(name = "measurements.rollups.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class MeasurementRollupWorker {
+    private final IMeasurementRollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Counter refreshedBuckets;
+
+    public MeasurementRollupWorker(IMeasurementRollupRepository rollupRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${measurements.rollups.batch-size:5000}") int batchSize) {
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.refreshedBuckets = meterRegistry.counter("measurements.rollups.refreshed");
+    }
+
+    @EventListener
+    public void onMeasurementsWritten(MeasurementsWrittenEvent event) {
+        rollupRepository.markDirty(event.rows());
+    }
+
+    // refresh skips compacted minutes, they're written here and only the hours and days are left to it
+    @EventListener
+    public void onMeasurementsCompacted(MeasurementsCompactedEvent event) {
+        rollupRepository.replaceMinutes(event.rows());
+        rollupRepository.markDirty(event.rows());
+    }
+
+    @Scheduled(fixedDelayString = "${measurements.rollups.refresh-interval:PT5S}")
+    public void refresh() {
+        try {
+            int claimed;
+            do {
+                claimed = transactionTemplate.execute(status -> rollupRepository.refresh(batchSize));
+                refreshedBuckets.increment(claimed);
+            } while (claimed == batchSize);
+        } catch (RuntimeException e) {
+            // the marks of a failed batch are rolled back with it and picked up again next time
+            log.error("Failed to refresh measurement rollups", e);
+        }
+    }
+}
@@ -1,52 +1,238 @@
 package com.josefy.nnpda.service.impl;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.josefy.nnpda.dto.measurement.DeviceMeasurementDto;
+import com.josefy.nnpda.dto.measurement.IngestionResultDto;
+import com.josefy.nnpda.dto.measurement.RejectedMeasurementDto;
 import com.josefy.nnpda.dto.measurement.SensorMeasurementDto;
 import com.josefy.nnpda.infrastructure.exceptions.BadRequestException;
-import com.josefy.nnpda.infrastructure.exceptions.NotFoundException;
+import com.josefy.nnpda.infrastructure.utils.Either;
 import com.josefy.nnpda.infrastructure.utils.Status;
 import com.josefy.nnpda.model.Device;
-import com.josefy.nnpda.model.Measurement;
-import com.josefy.nnpda.repository.IMeasurementRepository;
-import com.josefy.nnpda.repository.ISensorRepository;
+import com.josefy.nnpda.repository.IMeasurementWriter;
+import com.josefy.nnpda.repository.MeasurementRow;
+import com.josefy.nnpda.repository.MeasurementWriteResult;
+import com.josefy.nnpda.service.IDeadLetterService;
+import com.josefy.nnpda.service.IMeasurementIngestionQueue;
 import com.josefy.nnpda.service.IMeasurementService;
-import jakarta.transaction.Transactional;
-import lombok.RequiredArgsConstructor;
+import com.josefy.nnpda.service.ISensorOwnershipIndex;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class MeasurementService implements IMeasurementService {
-    private final ISensorRepository sensorRepository;
-    private final IMeasurementRepository measurementRepository;
+    private static final Status QUEUE_FULL = new Status("Ingestion queue is full, retry later.",
+            HttpStatus.TOO_MANY_REQUESTS);
 
+    private final ISensorOwnershipIndex sensorOwnershipIndex;
+    private final IMeasurementWriter measurementWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate streamTransactionTemplate;
+    // only there with measurements.ingestion.mode=async
+    private final Optional<IMeasurementIngestionQueue> ingestionQueue;
+    private final IDeadLetterService deadLetterService;
+    private final ObjectMapper objectMapper;
+    private final int streamChunkSize;
+    private final int maxReportedRejections;
+
+    public MeasurementService(ISensorOwnershipIndex sensorOwnershipIndex,
+                              IMeasurementWriter measurementWriter,
+                              TransactionTemplate transactionTemplate,
+                              Optional<IMeasurementIngestionQueue> ingestionQueue,
+                              IDeadLetterService deadLetterService,
+                              ObjectMapper objectMapper,
+                              @Value("${measurements.ingestion.stream-chunk-size:1000}") int streamChunkSize,
+                              @Value("${measurements.ingestion.max-reported-rejections:1000}") int maxReportedRejections,
+                              @Value("${measurements.ingestion.stream-transaction-timeout:5m}") Duration streamTransactionTimeout) {
+        this.sensorOwnershipIndex = sensorOwnershipIndex;
+        this.measurementWriter = measurementWriter;
+        this.transactionTemplate = transactionTemplate;
+        this.streamTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager(), transactionTemplate);
+        this.streamTransactionTemplate.setTimeout((int) streamTransactionTimeout.toSeconds());
+        this.ingestionQueue = ingestionQueue;
+        this.deadLetterService = deadLetterService;
+        this.objectMapper = objectMapper;
+        this.streamChunkSize = streamChunkSize;
+        this.maxReportedRejections = maxReportedRejections;
+    }
+
+    /*
+     * Readings for unknown sensors or sensors of another device don't fail the batch anymore, they're reported
+     * back by index and kept as dead letters, so one misconfigured sensor doesn't make the device resend everything.
+     */
     @Override
-    @Transactional
-    public Status ingestMeasurements(Device assumedSender,
+    public Either<Status, IngestionResultDto> ingestMeasurements(Device assumedSender,
                                      DeviceMeasurementDto deviceMeasurementDto) {
-        List<Measurement> measurements = new ArrayList<>();
-        for (SensorMeasurementDto dto : deviceMeasurementDto.measurements()) {
-            var sensor = sensorRepository.findBySerialNumber(dto.serialNumber())
-                    .orElseThrow(() -> new NotFoundException("Sensor", "serial number", dto.serialNumber()));
-            if (!sensor.getDevice().equals(assumedSender)) {
-                throw new BadRequestException("Measurements",
-                        "Sensor with serial number '%s' does not belong to given device."
-                        .formatted(dto.serialNumber(), assumedSender.getSerialNumber()));
+        var measurements = deviceMeasurementDto.measurements();
+        var rejections = new Rejections(assumedSender);
+        List<MeasurementRow> rows = new ArrayList<>(measurements.size());
+        for (int i = 0; i < measurements.size(); i++) {
+            var row = rejections.resolve(i, measurements.get(i));
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        if (ingestionQueue.isPresent()) {
+            if (!rows.isEmpty() && ingestionQueue.get().enqueue(rows) == IMeasurementIngestionQueue.EnqueueResult.REJECTED) {
+                return Either.left(QUEUE_FULL);
+            }
+            transactionTemplate.executeWithoutResult(status -> rejections.flush());
+            return Either.right(IngestionResultDto.queued(measurements.size(), rejections.count, rejections.reported));
+        }
+        var result = transactionTemplate.execute(status -> {
+            rejections.flush();
+            return measurementWriter.write(rows);
+        });
+        return Either.right(IngestionResultDto.written(measurements.size(), result,
+                rejections.count, rejections.reported));
+    }
+
+    /*
+     * Big offline backlogs go straight through the request's transaction rather than the write-behind queue,
+     * they would only flood it. Chunks are written as soon as they fill up, an invalid reading further down
+     * rolls the whole upload back, same as the bound endpoint.
+     * The body isn't read off the socket here, ApiKeyAuthenticationFilter has to receive and verify all of it
+     * first. It keeps up to device-requests.spool-threshold of it in memory and the rest in a temp file, the parser
+     * reads that back a buffer at a time and holds no more than a chunk of rows. So the transaction only lasts as
+     * long as parsing and writing, never as long as the upload, and its timeout bounds even that, COPY included
+     * (see JdbcMeasurementWriter).
+     */
+    @Override
+    public Either<Status, IngestionResultDto> ingestMeasurementStream(Device assumedSender,
+                                                                      InputStream body) {
+        var result = streamTransactionTemplate.execute(status -> {
+            try (var parser = objectMapper.getFactory().createParser(body)) {
+                return readMeasurements(parser, assumedSender);
+            } catch (JsonProcessingException e) {
+                throw new BadRequestException("Measurements", "malformed JSON, " + e.getOriginalMessage());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            Measurement measurement = new Measurement();
-            measurement.setSensor(sensor);
-            measurement.setValue(dto.value());
-            measurement.setTimestamp(dto.timestamp());
-            measurements.add(measurement);
-        }
-        measurementRepository.saveAll(measurements);
-        return Status.SUCCESS;
+        });
+        log.debug("Streamed {} measurements from device {}", result.received(), assumedSender.getSerialNumber());
+        return Either.right(result);
+    }
+
+    private IngestionResultDto readMeasurements(JsonParser parser, Device sender) throws IOException {
+        expect(parser.nextToken(), JsonToken.START_OBJECT);
+        int count = 0;
+        var written = MeasurementWriteResult.EMPTY;
+        var rejections = new Rejections(sender);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (!"measurements".equals(parser.currentName())) {
+                parser.nextToken();
+                parser.skipChildren();
+                continue;
+            }
+            expect(parser.nextToken(), JsonToken.START_ARRAY);
+            var chunk = new ArrayList<MeasurementRow>(streamChunkSize);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                var row = rejections.resolve(count, readMeasurement(parser, count));
+                count++;
+                if (row == null) {
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == streamChunkSize) {
+                    written = written.plus(measurementWriter.write(chunk));
+                    chunk.clear();
+                    rejections.flush();
+                }
+            }
+            expect(parser.currentToken(), JsonToken.END_ARRAY);
+            if (!chunk.isEmpty()) {
+                written = written.plus(measurementWriter.write(chunk));
+            }
+            rejections.flush();
+        }
+        if (count == 0) {
+            throw new BadRequestException("Measurements", "measurements must not be empty");
+        }
+        return IngestionResultDto.written(count, written, rejections.count, rejections.reported);
+    }
+
+    private SensorMeasurementDto readMeasurement(JsonParser parser, int index) throws IOException {
+        String serialNumber = null;
+        Double value = null;
+        OffsetDateTime timestamp = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.currentName();
+            var token = parser.nextToken();
+            switch (field) {
+                case "serialNumber" -> serialNumber = token == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+                case "value" -> value = token.isNumeric() ? parser.getDoubleValue() : null;
+                case "timestamp" -> timestamp = token == JsonToken.VALUE_STRING ? parseTimestamp(parser.getText(), index) : null;
+                default -> parser.skipChildren();
+            }
+        }
+        if (value == null) {
+            throw new BadRequestException("Measurements", "measurements[%d]: Value is required.".formatted(index));
+        }
+        if (timestamp == null) {
+            throw new BadRequestException("Measurements", "measurements[%d]: Timestamp must not be null".formatted(index));
+        }
+        return new SensorMeasurementDto(serialNumber, value, timestamp);
+    }
+
+    private static OffsetDateTime parseTimestamp(String text, int index) {
+        try {
+            return OffsetDateTime.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Measurements",
+                    "measurements[%d]: '%s' is not an ISO 8601 timestamp".formatted(index, text));
+        }
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) {
+        if (actual != expected) {
+            throw new BadRequestException("Measurements", "expected %s but got %s".formatted(expected, actual));
+        }
+    }
+
+    // rejected readings of one request, only the first few are reported back but all become dead letters
+    private final class Rejections {
+        private final Device sender;
+        private final List<RejectedMeasurementDto> reported = new ArrayList<>();
+        private final List<IDeadLetterService.Rejected> pending = new ArrayList<>();
+        private int count = 0;
+
+        Rejections(Device sender) {
+            this.sender = sender;
+        }
+
+        MeasurementRow resolve(int index, SensorMeasurementDto measurement) {
+            return sensorOwnershipIndex.resolve(measurement.serialNumber(), sender.getId()).fold(
+                    reason -> {
+                        count++;
+                        if (reported.size() < maxReportedRejections) {
+                            reported.add(new RejectedMeasurementDto(index, reason));
+                        }
+                        pending.add(new IDeadLetterService.Rejected(measurement, reason));
+                        return null;
+                    },
+                    sensor -> new MeasurementRow(sensor.sensorId(), measurement.timestamp(), measurement.value()));
+        }
+
+        void flush() {
+            deadLetterService.store(sender, pending);
+            pending.clear();
+        }
     }
 }
@@ -0,0 +1,139 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.repository.MeasurementRow;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Overflow of the ingestion queue, one csv file (sensor_id,timestamp,value) per spilled batch.
+ * Files are written under a temporary name and renamed when complete, a writer claims a file by renaming it again,
+ * so a batch is never picked up twice or half-written. Batches the writers failed to write end up here as well.
+ */
+@Slf4j
+class MeasurementSpillDirectory {
+    private static final String SPILLED = ".csv";
+    private static final String CLAIMED = ".claimed";
+    private static final String FAILED = ".failed";
+    private static final String TEMPORARY = ".tmp";
+
+    private final Path directory;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();
+    // failed replays per spilled file since startup
+    private final ConcurrentHashMap<String, Integer> failures = new ConcurrentHashMap<>();
+
+    MeasurementSpillDirectory(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        for (var file : list()) {
+            var name = file.getFileName().toString();
+            if (name.endsWith(TEMPORARY)) {
+                Files.deleteIfExists(file);
+            } else if (name.endsWith(CLAIMED)) {
+                // claimed by a writer of the previous run that didn't get to finish
+                Files.move(file, rename(file, CLAIMED, SPILLED), StandardCopyOption.ATOMIC_MOVE);
+                pending.incrementAndGet();
+            } else if (name.endsWith(SPILLED)) {
+                pending.incrementAndGet();
+            }
+        }
+        if (pending.get() > 0) {
+            log.info("Found {} spilled measurement batches in {}", pending.get(), directory);
+        }
+    }
+
+    void spill(List<MeasurementRow> rows) throws IOException {
+        var name = "%d-%08d".formatted(System.currentTimeMillis(), sequence.incrementAndGet());
+        var temporary = directory.resolve(name + TEMPORARY);
+        try (var out = Files.newBufferedWriter(temporary)) {
+            for (var row : rows) {
+                out.write(Long.toString(row.sensorId()));
+                out.write(',');
+                out.write(row.timestamp().toString());
+                out.write(',');
+                out.write(Double.toString(row.value()));
+                out.newLine();
+            }
+        }
+        Files.move(temporary, directory.resolve(name + SPILLED), StandardCopyOption.ATOMIC_MOVE);
+        pending.incrementAndGet();
+    }
+
+    Optional<Path> claimOldest() throws IOException {
+        var spilled = list().stream()
+                .filter(file -> file.getFileName().toString().endsWith(SPILLED))
+                .sorted()
+                .toList();
+        for (var file : spilled) {
+            try {
+                return Optional.of(Files.move(file, rename(file, SPILLED, CLAIMED), StandardCopyOption.ATOMIC_MOVE));
+            } catch (NoSuchFileException e) {
+                // another writer was faster
+            }
+        }
+        return Optional.empty();
+    }
+
+    List<MeasurementRow> read(Path claimed) throws IOException {
+        var rows = new ArrayList<MeasurementRow>();
+        for (var line : Files.readAllLines(claimed)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            var columns = line.split(",", 3);
+            rows.add(new MeasurementRow(Long.parseLong(columns[0]),
+                    OffsetDateTime.parse(columns[1]),
+                    Double.parseDouble(columns[2])));
+        }
+        return rows;
+    }
+
+    void complete(Path claimed) throws IOException {
+        Files.deleteIfExists(claimed);
+        failures.remove(claimed.getFileName().toString());
+        pending.decrementAndGet();
+    }
+
+    // returns how many replays of the file failed so far
+    int recordFailure(Path claimed) {
+        return failures.merge(claimed.getFileName().toString(), 1, Integer::sum);
+    }
+
+    // back in line for another replay
+    void release(Path claimed) throws IOException {
+        Files.move(claimed, rename(claimed, CLAIMED, SPILLED), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // kept around for manual inspection instead of being retried forever
+    void fail(Path claimed) throws IOException {
+        Files.move(claimed, rename(claimed, CLAIMED, FAILED), StandardCopyOption.ATOMIC_MOVE);
+        failures.remove(claimed.getFileName().toString());
+        pending.decrementAndGet();
+    }
+
+    int pending() {
+        return pending.get();
+    }
+
+    private List<Path> list() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+    private static Path rename(Path file, String from, String to) {
+        var name = file.getFileName().toString();
+        return file.resolveSibling(name.substring(0, name.length() - from.length()) + to);
+    }
+}
@@ -0,0 +1,199 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.dto.retention.RetentionReportDto;
+import com.josefy.nnpda.model.RetentionClass;
+import com.josefy.nnpda.repository.IMeasurementPartitionRepository;
+import com.josefy.nnpda.repository.IMeasurementRetentionRepository;
+import com.josefy.nnpda.repository.IRetentionClassRepository;
+import com.josefy.nnpda.repository.MeasurementPartition;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Enforces the retention classes in two steps. Partitions that ended before the longest retention of any sensor
+ * only hold expired rows, they're detached and dropped. Whatever expired elsewhere (sensors with a shorter class,
+ * the partition straddling the cutoff, an unpartitioned table) goes with small keyset deletes per sensor, each
+ * in its own short transaction with a pause in between, so ingestion never waits on a long DELETE. Compacted blocks
+ * go whole, once their newest reading expired.
+ */
+@Component
+@Slf4j
+public class RetentionEngine {
+    // below anything a device could have sent
+    private static final OffsetDateTime BEGINNING = OffsetDateTime.of(1, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private final IMeasurementPartitionRepository partitionRepository;
+    private final IMeasurementRetentionRepository retentionRepository;
+    private final IRetentionClassRepository retentionClassRepository;
+    private final String defaultClass;
+    private final int batchSize;
+    private final Duration batchPause;
+    private final Duration lockTimeout;
+
+    private final Counter droppedRowsCounter;
+    private final Counter droppedBytesCounter;
+    private final Counter deletedRowsCounter;
+    private final Counter deletedBytesCounter;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicReference<RetentionReportDto> lastReport = new AtomicReference<>();
+
+    public RetentionEngine(IMeasurementPartitionRepository partitionRepository,
+                           IMeasurementRetentionRepository retentionRepository,
+                           IRetentionClassRepository retentionClassRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${measurements.retention.default-class:}") String defaultClass,
+                           @Value("${measurements.retention.batch-size:5000}") int batchSize,
+                           @Value("${measurements.retention.batch-pause:50ms}") Duration batchPause,
+                           @Value("${measurements.retention.lock-timeout:2s}") Duration lockTimeout) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("measurements.retention.batch-size must be positive");
+        }
+        this.partitionRepository = partitionRepository;
+        this.retentionRepository = retentionRepository;
+        this.retentionClassRepository = retentionClassRepository;
+        this.defaultClass = defaultClass;
+        this.batchSize = batchSize;
+        this.batchPause = batchPause;
+        this.lockTimeout = lockTimeout;
+
+        droppedRowsCounter = meterRegistry.counter("measurements.retention.rows", "action", "dropped");
+        droppedBytesCounter = meterRegistry.counter("measurements.retention.bytes", "action", "dropped");
+        deletedRowsCounter = meterRegistry.counter("measurements.retention.rows", "action", "deleted");
+        deletedBytesCounter = meterRegistry.counter("measurements.retention.bytes", "action", "deleted");
+    }
+
+    @Scheduled(cron = "${measurements.retention.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (run().isEmpty()) {
+            log.warn("Skipping scheduled retention, the previous run is still going");
+        }
+    }
+
+    // empty when a run is already in progress
+    public Optional<RetentionReportDto> run() {
+        if (!running.compareAndSet(false, true)) {
+            return Optional.empty();
+        }
+        try {
+            var report = enforce();
+            lastReport.set(report);
+            log.info("Retention dropped {} partitions ({} rows, {} bytes), deleted {} rows (~{} bytes), postponed {}",
+                    report.droppedPartitions().size(), report.droppedRows(), report.droppedBytes(),
+                    report.deletedRows(), report.deletedBytes(), report.postponedPartitions());
+            return Optional.of(report);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Optional<RetentionReportDto> lastReport() {
+        return Optional.ofNullable(lastReport.get());
+    }
+
+    private RetentionReportDto enforce() {
+        var startedAt = Instant.now();
+        var now = OffsetDateTime.now(ZoneOffset.UTC);
+        var retentionDays = retentionDaysBySensor();
+
+        var dropped = new ArrayList<String>();
+        var postponed = new ArrayList<String>();
+        long droppedRows = 0;
+        long droppedBytes = 0;
+        // a sensor kept forever keeps every partition
+        boolean everyoneExpires = !retentionDays.isEmpty() && !retentionDays.containsValue(null);
+        if (everyoneExpires && partitionRepository.isPartitioned()) {
+            int longest = retentionDays.values().stream().mapToInt(Integer::intValue).max().orElseThrow();
+            var cutoff = now.minusDays(longest);
+            for (MeasurementPartition partition : partitionRepository.findAll()) {
+                if (partition.to() == null || partition.to().isAfter(cutoff)) {
+                    continue;
+                }
+                var size = partitionRepository.size(partition.name());
+                if (!partitionRepository.drop(partition.name(), lockTimeout)) {
+                    log.warn("Partition {} is due but couldn't be detached within {}, postponed", partition.name(), lockTimeout);
+                    postponed.add(partition.name());
+                    continue;
+                }
+                dropped.add(partition.name());
+                droppedRows += size.rows();
+                droppedBytes += size.bytes();
+            }
+        }
+
+        double averageRowBytes = retentionRepository.averageRowBytes();
+        long deletedRows = 0;
+        long deletedBlockRows = 0;
+        long deletedBlockBytes = 0;
+        for (var entry : retentionDays.entrySet()) {
+            if (entry.getValue() != null) {
+                var cutoff = now.minusDays(entry.getValue());
+                deletedRows += deleteExpired(entry.getKey(), cutoff);
+                var blocks = retentionRepository.deleteBlocks(entry.getKey(), cutoff);
+                deletedBlockRows += blocks.rows();
+                deletedBlockBytes += blocks.bytes();
+            }
+        }
+        long deletedBytes = Math.round(deletedRows * averageRowBytes) + deletedBlockBytes;
+        deletedRows += deletedBlockRows;
+
+        droppedRowsCounter.increment(droppedRows);
+        droppedBytesCounter.increment(droppedBytes);
+        deletedRowsCounter.increment(deletedRows);
+        deletedBytesCounter.increment(deletedBytes);
+        return new RetentionReportDto(startedAt, Instant.now(), dropped, droppedRows, droppedBytes,
+                deletedRows, deletedBytes, postponed);
+    }
+
+    // null for sensors that are kept forever
+    private Map<Long, Integer> retentionDaysBySensor() {
+        Integer defaultDays = null;
+        if (!defaultClass.isBlank()) {
+            defaultDays = retentionClassRepository.findByName(defaultClass)
+                    .map(RetentionClass::getRetentionDays)
+                    .orElse(null);
+            if (defaultDays == null) {
+                log.warn("Default retention class '{}' doesn't exist, unassigned sensors are kept forever", defaultClass);
+            }
+        }
+        var days = new HashMap<Long, Integer>();
+        for (var sensor : retentionRepository.findSensorRetentions()) {
+            days.put(sensor.sensorId(), sensor.retentionDays() != null ? sensor.retentionDays() : defaultDays);
+        }
+        return days;
+    }
+
+    private long deleteExpired(long sensorId, OffsetDateTime cutoff) {
+        long deleted = 0;
+        var from = BEGINNING;
+        while (true) {
+            var batch = retentionRepository.deleteBatch(sensorId, from, cutoff, batchSize);
+            deleted += batch.rows();
+            if (batch.rows() < batchSize) {
+                return deleted;
+            }
+            from = batch.lastTimestamp();
+            try {
+                Thread.sleep(batchPause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return deleted;
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.dto.retention.RetentionClassDto;
+import com.josefy.nnpda.dto.retention.RetentionReportDto;
+import com.josefy.nnpda.infrastructure.utils.Either;
+import com.josefy.nnpda.infrastructure.utils.Status;
+import com.josefy.nnpda.model.RetentionClass;
+import com.josefy.nnpda.repository.IDeviceRepository;
+import com.josefy.nnpda.repository.IRetentionClassRepository;
+import com.josefy.nnpda.repository.ISensorRepository;
+import com.josefy.nnpda.service.IRetentionService;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class RetentionService implements IRetentionService {
+    private final IRetentionClassRepository retentionClassRepository;
+    private final IDeviceRepository deviceRepository;
+    private final ISensorRepository sensorRepository;
+    private final RetentionEngine retentionEngine;
+
+    @Override
+    public List<RetentionClass> findAll() {
+        return retentionClassRepository.findAll();
+    }
+
+    @Override
+    @Transactional
+    public Either<Status, RetentionClass> create(RetentionClassDto request) {
+        if (retentionClassRepository.existsByName(request.name())) {
+            return Either.left(new Status("Retention class '%s' already exists.".formatted(request.name()),
+                    HttpStatus.CONFLICT));
+        }
+        return Either.right(retentionClassRepository.save(new RetentionClass(request.name(), request.retentionDays())));
+    }
+
+    @Override
+    @Transactional
+    public Either<Status, RetentionClass> update(String name, RetentionClassDto request) {
+        var retentionClass = retentionClassRepository.findByName(name).orElse(null);
+        if (retentionClass == null) {
+            return Either.left(notFound(name));
+        }
+        if (!name.equals(request.name()) && retentionClassRepository.existsByName(request.name())) {
+            return Either.left(new Status("Retention class '%s' already exists.".formatted(request.name()),
+                    HttpStatus.CONFLICT));
+        }
+        retentionClass.setName(request.name());
+        retentionClass.setRetentionDays(request.retentionDays());
+        return Either.right(retentionClassRepository.save(retentionClass));
+    }
+
+    @Override
+    @Transactional
+    public Either<Status, Void> delete(String name) {
+        var retentionClass = retentionClassRepository.findByName(name).orElse(null);
+        if (retentionClass == null) {
+            return Either.right(null);
+        }
+        // unassigning silently could hand the sensors to a shorter default class
+        long assignments = sensorRepository.countByRetentionClass(retentionClass)
+                + deviceRepository.countByRetentionClass(retentionClass);
+        if (assignments > 0) {
+            return Either.left(new Status("Retention class '%s' is still assigned %d times.".formatted(name, assignments),
+                    HttpStatus.CONFLICT));
+        }
+        retentionClassRepository.delete(retentionClass);
+        return Either.right(null);
+    }
+
+    @Override
+    @Transactional
+    public Either<Status, Void> assignToDevice(String deviceSerialNumber, String retentionClassName) {
+        var device = deviceRepository.findBySerialNumber(deviceSerialNumber).orElse(null);
+        if (device == null) {
+            return Either.left(new Status("Device with serial number '%s' does not exist.".formatted(deviceSerialNumber),
+                    HttpStatus.NOT_FOUND));
+        }
+        return resolve(retentionClassName).fold(Either::<Status, Void>left, retentionClass -> {
+            device.setRetentionClass(retentionClass);
+            deviceRepository.save(device);
+            return Either.right(null);
+        });
+    }
+
+    @Override
+    @Transactional
+    public Either<Status, Void> assignToSensor(String sensorSerialNumber, String retentionClassName) {
+        var sensor = sensorRepository.findBySerialNumber(sensorSerialNumber).orElse(null);
+        if (sensor == null) {
+            return Either.left(new Status("Sensor with serial number '%s' does not exist.".formatted(sensorSerialNumber),
+                    HttpStatus.NOT_FOUND));
+        }
+        return resolve(retentionClassName).fold(Either::<Status, Void>left, retentionClass -> {
+            sensor.setRetentionClass(retentionClass);
+            sensorRepository.save(sensor);
+            return Either.right(null);
+        });
+    }
+
+    @Override
+    public Either<Status, RetentionReportDto> enforce() {
+        return retentionEngine.run()
+                .map(Either::<Status, RetentionReportDto>right)
+                .orElseGet(() -> Either.left(new Status("Retention is already running.", HttpStatus.CONFLICT)));
+    }
+
+    @Override
+    public Either<Status, RetentionReportDto> lastReport() {
+        return retentionEngine.lastReport()
+                .map(Either::<Status, RetentionReportDto>right)
+                .orElseGet(() -> Either.left(new Status("Retention has not run yet.", HttpStatus.NOT_FOUND)));
+    }
+
+    private Either<Status, RetentionClass> resolve(String name) {
+        if (name == null) {
+            return Either.right(null);
+        }
+        return retentionClassRepository.findByName(name)
+                .map(Either::<Status, RetentionClass>right)
+                .orElseGet(() -> Either.left(notFound(name)));
+    }
+
+    private static Status notFound(String name) {
+        return new Status("Retention class '%s' does not exist.".formatted(name), HttpStatus.NOT_FOUND);
+    }
+}
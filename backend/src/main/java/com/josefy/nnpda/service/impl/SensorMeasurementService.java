@@ -0,0 +1,169 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.dto.measurement.MeasurementAggregateSeriesDto;
+import com.josefy.nnpda.dto.measurement.MeasurementPointDto;
+import com.josefy.nnpda.dto.measurement.MeasurementRollupSeriesDto;
+import com.josefy.nnpda.dto.measurement.MeasurementSeriesDto;
+import com.josefy.nnpda.infrastructure.utils.Either;
+import com.josefy.nnpda.infrastructure.utils.Status;
+import com.josefy.nnpda.model.Sensor;
+import com.josefy.nnpda.repository.IMeasurementReader;
+import com.josefy.nnpda.repository.IMeasurementRollupRepository;
+import com.josefy.nnpda.repository.MeasurementAggregate;
+import com.josefy.nnpda.repository.ISensorRepository;
+import com.josefy.nnpda.repository.MeasurementRollupTier;
+import com.josefy.nnpda.service.ISensorMeasurementService;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+@Service
+public class SensorMeasurementService implements ISensorMeasurementService {
+    private final ISensorRepository sensorRepository;
+    private final IMeasurementRollupRepository rollupRepository;
+    private final IMeasurementReader measurementReader;
+    private final long maxBuckets;
+    private final int maxPoints;
+
+    public SensorMeasurementService(ISensorRepository sensorRepository,
+                                    IMeasurementRollupRepository rollupRepository,
+                                    IMeasurementReader measurementReader,
+                                    @Value("${measurements.query.max-buckets:10000}") long maxBuckets,
+                                    @Value("${measurements.query.max-points:10000}") int maxPoints) {
+        this.sensorRepository = sensorRepository;
+        this.rollupRepository = rollupRepository;
+        this.measurementReader = measurementReader;
+        this.maxBuckets = maxBuckets;
+        this.maxPoints = maxPoints;
+    }
+
+    @Override
+    @Transactional
+    public Either<Status, MeasurementSeriesDto> findMeasurements(String username, String sensorSerialNumber,
+                                                                 OffsetDateTime from, OffsetDateTime to,
+                                                                 OffsetDateTime after, int limit) {
+        if (!from.isBefore(to)) {
+            return Either.left(new Status("'from' must be before 'to'.", HttpStatus.BAD_REQUEST));
+        }
+        if (limit <= 0 || limit > maxPoints) {
+            return Either.left(new Status("Limit must be between 1 and %d.".formatted(maxPoints), HttpStatus.BAD_REQUEST));
+        }
+        if (after != null && (after.isBefore(from) || !after.isBefore(to))) {
+            return Either.left(new Status("'after' must be within the range.", HttpStatus.BAD_REQUEST));
+        }
+        return findOwnedSensor(username, sensorSerialNumber).fold(Either::left, sensor -> {
+            try (var rows = after == null
+                    ? measurementReader.stream(sensor.getId(), from, to)
+                    : measurementReader.streamAfter(sensor.getId(), after, to)) {
+                // one extra reading tells whether there's another page
+                var page = rows.limit(limit + 1L).map(MeasurementPointDto::fromRow).toList();
+                if (page.size() <= limit) {
+                    return Either.right(new MeasurementSeriesDto(sensor.getSerialNumber(), page, null));
+                }
+                page = page.subList(0, limit);
+                return Either.right(new MeasurementSeriesDto(sensor.getSerialNumber(), page,
+                        page.get(limit - 1).timestamp()));
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public Either<Status, MeasurementSeriesDto> findDownsampledMeasurements(String username, String sensorSerialNumber,
+                                                                            OffsetDateTime from, OffsetDateTime to,
+                                                                            int points) {
+        if (!from.isBefore(to)) {
+            return Either.left(new Status("'from' must be before 'to'.", HttpStatus.BAD_REQUEST));
+        }
+        if (points < 3 || points > maxPoints) {
+            return Either.left(new Status("Points must be between 3 and %d.".formatted(maxPoints), HttpStatus.BAD_REQUEST));
+        }
+        return findOwnedSensor(username, sensorSerialNumber).fold(Either::left, sensor -> {
+            // one pass over the cursor, only the picked readings and the two buckets in play are kept
+            try (var rows = measurementReader.stream(sensor.getId(), from, to)) {
+                var picked = LttbDownsampler.downsample(rows, from, to, points).stream()
+                        .map(MeasurementPointDto::fromRow)
+                        .toList();
+                return Either.right(new MeasurementSeriesDto(sensor.getSerialNumber(), picked, null));
+            }
+        });
+    }
+
+    @Override
+    public Either<Status, MeasurementRollupSeriesDto> findRollups(String username, String sensorSerialNumber,
+                                                                  OffsetDateTime from, OffsetDateTime to,
+                                                                  Duration resolution) {
+        return findTier(from, to, resolution).fold(Either::left, tier ->
+                findOwnedSensor(username, sensorSerialNumber).fold(Either::left, sensor -> Either.right(
+                        new MeasurementRollupSeriesDto(sensor.getSerialNumber(), resolution, tier.name(),
+                                rollupRepository.find(sensor.getId(), tier, resolution, from, to)))));
+    }
+
+    @Override
+    public Either<Status, MeasurementAggregateSeriesDto> findAggregates(String username, String sensorSerialNumber,
+                                                                        OffsetDateTime from, OffsetDateTime to,
+                                                                        Duration bucket, List<String> functions) {
+        if (functions.isEmpty()) {
+            return Either.left(new Status("At least one function is required.", HttpStatus.BAD_REQUEST));
+        }
+        var requested = new LinkedHashSet<MeasurementAggregate>();
+        for (var name : functions) {
+            var function = MeasurementAggregate.fromKey(name);
+            if (function.isEmpty()) {
+                return Either.left(new Status("Unknown function '%s'.".formatted(name), HttpStatus.BAD_REQUEST));
+            }
+            requested.add(function.get());
+        }
+        var distinct = List.copyOf(requested);
+        return findTier(from, to, bucket).fold(Either::left, tier ->
+                findOwnedSensor(username, sensorSerialNumber).fold(Either::left, sensor -> {
+                    var buckets = rollupRepository.aggregate(sensor.getId(), tier, bucket, from, to, distinct);
+                    // in the order they were asked for
+                    var values = new LinkedHashMap<String, List<? extends Number>>();
+                    for (var function : distinct) {
+                        values.put(function.key(), buckets.values().get(function));
+                    }
+                    return Either.right(new MeasurementAggregateSeriesDto(sensor.getSerialNumber(), bucket,
+                            tier.name(), buckets.epochMillis(), values));
+                }));
+    }
+
+    private Either<Status, MeasurementRollupTier> findTier(OffsetDateTime from, OffsetDateTime to, Duration bucket) {
+        var invalid = validateRange(from, to, bucket);
+        if (invalid != null) {
+            return Either.left(invalid);
+        }
+        return MeasurementRollupTier.coarsestFor(bucket)
+                .map(Either::<Status, MeasurementRollupTier>right)
+                .orElseGet(() -> Either.left(new Status("Bucket size must be a whole number of minutes.",
+                        HttpStatus.BAD_REQUEST)));
+    }
+
+    private Status validateRange(OffsetDateTime from, OffsetDateTime to, Duration bucket) {
+        if (!from.isBefore(to)) {
+            return new Status("'from' must be before 'to'.", HttpStatus.BAD_REQUEST);
+        }
+        if (bucket.isZero() || bucket.isNegative()) {
+            return new Status("Bucket size must be positive.", HttpStatus.BAD_REQUEST);
+        }
+        if (Duration.between(from, to).dividedBy(bucket) > maxBuckets) {
+            return new Status("The range would have more than %d buckets, use a larger one.".formatted(maxBuckets),
+                    HttpStatus.BAD_REQUEST);
+        }
+        return null;
+    }
+
+    private Either<Status, Sensor> findOwnedSensor(String username, String sensorSerialNumber) {
+        return sensorRepository.findByUsernameAndSerialNumber(username, sensorSerialNumber)
+                .map(Either::<Status, Sensor>right)
+                .orElseGet(() -> Either.left(new Status(
+                        "Sensor with serial number '%s' not found.".formatted(sensorSerialNumber), HttpStatus.NOT_FOUND)));
+    }
+}
@@ -0,0 +1,138 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.dto.sensor.SensorOwnershipDto;
+import com.josefy.nnpda.events.DeviceDeletedEvent;
+import com.josefy.nnpda.events.SensorAssignmentChangedEvent;
+import com.josefy.nnpda.events.SensorDeletedEvent;
+import com.josefy.nnpda.repository.ISensorRepository;
+import com.josefy.nnpda.service.ISensorOwnershipIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Sensor serial -> (sensor id, owning device id), so ingestion doesn't have to hit the catalog for every reading,
+ * and device id -> its sensors' serials for the reads that list a device.
+ * Filled once the application is ready, after that it only follows the changes made through
+ * SensorService / DeviceService (applied after their transactions commit).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SensorOwnershipIndex implements ISensorOwnershipIndex {
+    private final ISensorRepository sensorRepository;
+    private final ConcurrentHashMap<String, SensorOwnershipDto> bySerialNumber = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<String>> serialNumbersByDeviceId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, String> serialNumbersBySensorId = new ConcurrentHashMap<>();
+    private volatile boolean warm = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        var ownerships = sensorRepository.findAllOwnerships();
+        // changes that committed while we were loading are newer than the snapshot, don't overwrite them
+        ownerships.forEach(this::putIfAbsent);
+        warm = true;
+        log.info("Sensor ownership index warmed up with {} sensors", ownerships.size());
+    }
+
+    @Override
+    public Optional<SensorOwnershipDto> find(String sensorSerialNumber) {
+        if (sensorSerialNumber == null) {
+            return Optional.empty();
+        }
+        var ownership = bySerialNumber.get(sensorSerialNumber);
+        if (ownership != null || warm) {
+            return Optional.ofNullable(ownership);
+        }
+        // devices can start sending before we're warm, the catalog is the source of truth until then
+        return sensorRepository.findOwnershipBySerialNumber(sensorSerialNumber);
+    }
+
+    @Override
+    public Optional<SensorOwnershipDto> findBySensorId(long sensorId) {
+        if (!warm) {
+            return sensorRepository.findOwnershipBySensorId(sensorId);
+        }
+        return Optional.ofNullable(serialNumbersBySensorId.get(sensorId))
+                .map(bySerialNumber::get)
+                .filter(ownership -> ownership.sensorId() == sensorId);
+    }
+
+    @Override
+    public List<SensorOwnershipDto> findByDevice(long deviceId) {
+        if (!warm) {
+            return sensorRepository.findOwnershipsByDeviceId(deviceId);
+        }
+        return serialNumbersByDeviceId.getOrDefault(deviceId, Set.of()).stream()
+                .map(bySerialNumber::get)
+                .filter(ownership -> ownership != null && Objects.equals(ownership.deviceId(), deviceId))
+                .toList();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSensorAssignmentChanged(SensorAssignmentChangedEvent event) {
+        if (event.previousSerialNumber() != null && !event.previousSerialNumber().equals(event.serialNumber())) {
+            remove(event.previousSerialNumber());
+        }
+        put(new SensorOwnershipDto(event.serialNumber(), event.sensorId(), event.deviceId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSensorDeleted(SensorDeletedEvent event) {
+        remove(event.serialNumber());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onDeviceDeleted(DeviceDeletedEvent event) {
+        var serialNumbers = serialNumbersByDeviceId.remove(event.deviceId());
+        if (serialNumbers != null) {
+            serialNumbers.forEach(serial -> bySerialNumber.computeIfPresent(serial, (key, ownership) ->
+                    Objects.equals(ownership.deviceId(), event.deviceId()) ? ownership.withDevice(null) : ownership));
+        }
+    }
+
+    // writers keep both maps in step, readers don't lock
+    private synchronized void put(SensorOwnershipDto ownership) {
+        unlink(bySerialNumber.put(ownership.serialNumber(), ownership));
+        link(ownership);
+    }
+
+    private synchronized void putIfAbsent(SensorOwnershipDto ownership) {
+        if (bySerialNumber.putIfAbsent(ownership.serialNumber(), ownership) == null) {
+            link(ownership);
+        }
+    }
+
+    private synchronized void remove(String serialNumber) {
+        unlink(bySerialNumber.remove(serialNumber));
+    }
+
+    private void link(SensorOwnershipDto ownership) {
+        serialNumbersBySensorId.put(ownership.sensorId(), ownership.serialNumber());
+        if (ownership.deviceId() != null) {
+            serialNumbersByDeviceId.computeIfAbsent(ownership.deviceId(), id -> ConcurrentHashMap.newKeySet())
+                    .add(ownership.serialNumber());
+        }
+    }
+
+    private void unlink(SensorOwnershipDto ownership) {
+        if (ownership != null) {
+            serialNumbersBySensorId.remove(ownership.sensorId(), ownership.serialNumber());
+        }
+        if (ownership != null && ownership.deviceId() != null) {
+            serialNumbersByDeviceId.computeIfPresent(ownership.deviceId(), (id, serialNumbers) -> {
+                serialNumbers.remove(ownership.serialNumber());
+                return serialNumbers.isEmpty() ? null : serialNumbers;
+            });
+        }
+    }
+}
@@ -1,33 +1,41 @@
 package com.josefy.nnpda.service.impl;
 
+import com.josefy.nnpda.dto.sensor.SensorDto;
 import com.josefy.nnpda.dto.sensor.SensorWithDeviceDto;
+import com.josefy.nnpda.dto.sensor.SensorWithDeviceResponseDto;
+import com.josefy.nnpda.events.SensorAssignmentChangedEvent;
+import com.josefy.nnpda.events.SensorDeletedEvent;
 import com.josefy.nnpda.infrastructure.utils.Either;
 import com.josefy.nnpda.infrastructure.utils.Status;
 import com.josefy.nnpda.model.Device;
 import com.josefy.nnpda.model.Sensor;
 import com.josefy.nnpda.repository.IDeviceRepository;
 import com.josefy.nnpda.repository.ISensorRepository;
-import com.josefy.nnpda.repository.ISensorRepositoryEager;
 import com.josefy.nnpda.service.ISensorService;
 import jakarta.transaction.Transactional;
 import jdk.jfr.Timespan;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 public class SensorService implements ISensorService {
     private final ISensorRepository sensorRepository;
-    private final ISensorRepositoryEager sensorRepositoryEager;
     private final IDeviceRepository deviceRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
-    public Iterable<Sensor> findAll(boolean omitDevices) {
-        var result = omitDevices
-                ? sensorRepository.findAll()
-                : sensorRepositoryEager.findAll();
-        return result;
+    public List<SensorDto> findAll() {
+        return sensorRepository.findAllDtos();
+    }
+
+    @Override
+    public List<SensorWithDeviceResponseDto> findAllWithDevices() {
+        return sensorRepository.findAllWithDevices();
     }
 
     @Override
@@ -70,6 +78,7 @@ public class SensorService implements ISensorService {
         if (device != null) {
             deviceRepository.save(device);
         }
+        publishAssignment(null, savedSensor);
         return Either.right(savedSensor);
     }
 
@@ -101,23 +110,38 @@ public class SensorService implements ISensorService {
             device.getSensors().add(sensor);
             deviceRepository.save(device);
         }
-        return Either.right(sensorRepository.save(sensor));
+        var savedSensor = sensorRepository.save(sensor);
+        publishAssignment(oldSerialNumber, savedSensor);
+        return Either.right(savedSensor);
+    }
+
+    private void publishAssignment(String previousSerialNumber, Sensor sensor) {
+        var device = sensor.getDevice();
+        eventPublisher.publishEvent(new SensorAssignmentChangedEvent(previousSerialNumber,
+                sensor.getSerialNumber(),
+                sensor.getId(),
+                device == null ? null : device.getId()));
     }
 
     @Override
     @Transactional
     public Either<Status, Void> delete(long id) {
-        sensorRepository.deleteById(id);
+        sensorRepository.findById(id).ifPresent(this::delete);
         return Either.right(null);
     }
 
     @Override
     @Transactional
     public Either<Status, Void> delete(String serialNumber) {
-        sensorRepository.deleteBySerialNumber(serialNumber);
+        sensorRepository.findBySerialNumber(serialNumber).ifPresent(this::delete);
         return Either.right(null);
     }
 
+    private void delete(Sensor sensor) {
+        sensorRepository.delete(sensor);
+        eventPublisher.publishEvent(new SensorDeletedEvent(sensor.getId(), sensor.getSerialNumber()));
+    }
+
     @Override
     public Iterable<Sensor> findByDevice(String deviceSerialNumber) {
         return sensorRepository.findByDeviceSerialNumber(deviceSerialNumber);
@@ -1,6 +1,10 @@
 package com.josefy.nnpda.service.impl;
 
+import com.josefy.nnpda.dto.measurement.DeviceLatestMeasurementsDto;
+import com.josefy.nnpda.dto.measurement.LatestMeasurementDto;
+import com.josefy.nnpda.dto.sensor.SensorOwnershipDto;
 import com.josefy.nnpda.dto.sensor.SensorWithDeviceResponseDto;
+import com.josefy.nnpda.events.DeviceAssignmentChangedEvent;
 import com.josefy.nnpda.infrastructure.exceptions.NotFoundException;
 import com.josefy.nnpda.infrastructure.repository.IUserRepository;
 import com.josefy.nnpda.infrastructure.utils.Either;
@@ -12,12 +16,17 @@ import com.josefy.nnpda.model.UserDevice;
 import com.josefy.nnpda.repository.IDeviceRepository;
 import com.josefy.nnpda.repository.IDeviceRepositoryEager;
 import com.josefy.nnpda.repository.IUserDeviceRepository;
+import com.josefy.nnpda.service.IDeviceAssignmentIndex;
+import com.josefy.nnpda.service.ILatestMeasurementCache;
+import com.josefy.nnpda.service.ISensorOwnershipIndex;
 import com.josefy.nnpda.service.IUserDeviceService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.util.Comparator;
 import java.util.List;
 
 @Service
@@ -27,7 +36,10 @@ public class UserDeviceService implements IUserDeviceService {
     private final IDeviceRepositoryEager deviceRepositoryEager;
     private final IUserDeviceRepository userDeviceRepository;
     private final IUserRepository userRepository;
-
+    private final IDeviceAssignmentIndex deviceAssignmentIndex;
+    private final ISensorOwnershipIndex sensorOwnershipIndex;
+    private final ILatestMeasurementCache latestMeasurementCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public List<Device> findAssignedDevicesByUser(String username) {
@@ -53,6 +65,23 @@ public class UserDeviceService implements IUserDeviceService {
                 .toList();
     }
 
+    // only from the in-memory indexes and cache
+    @Override
+    public Either<Status, DeviceLatestMeasurementsDto> findLatestMeasurements(String username, String deviceSerialNumber) {
+        return deviceAssignmentIndex.findAssignedDeviceId(username, deviceSerialNumber)
+                .map(deviceId -> Either.<Status, DeviceLatestMeasurementsDto>right(new DeviceLatestMeasurementsDto(
+                        deviceSerialNumber,
+                        sensorOwnershipIndex.findByDevice(deviceId).stream()
+                                .sorted(Comparator.comparing(SensorOwnershipDto::serialNumber))
+                                .map(sensor -> latestMeasurementCache.find(sensor.sensorId())
+                                        .map(row -> new LatestMeasurementDto(sensor.serialNumber(), row.timestamp(), row.value()))
+                                        .orElseGet(() -> new LatestMeasurementDto(sensor.serialNumber(), null, null)))
+                                .toList())))
+                .orElseGet(() -> Either.left(new Status(
+                        "Device with serial number " + deviceSerialNumber + " is not assigned to the user.",
+                        HttpStatus.NOT_FOUND)));
+    }
+
     @Override
     @Transactional
     public Either<Status, Void> unassignDeviceFromUser(String serialNumber, String username) {
@@ -62,6 +91,7 @@ public class UserDeviceService implements IUserDeviceService {
                 .orElseThrow(() -> new NotFoundException("Device", "serialNumber", serialNumber));
         if (userDeviceRepository.existsByUserAndSerialNumber(user, serialNumber)) {
             userDeviceRepository.unassignDeviceFromUser(user, serialNumber);
+            eventPublisher.publishEvent(new DeviceAssignmentChangedEvent(device.getId(), serialNumber, username, false));
             return Either.right(null);
         } else {
             return Either.left(new Status("Device with serial number " + serialNumber + " is not assigned to the user.",
@@ -81,6 +111,7 @@ public class UserDeviceService implements IUserDeviceService {
             userDevice.setUser(user);
             userDevice.setDevice(device);
             userDeviceRepository.save(userDevice);
+            eventPublisher.publishEvent(new DeviceAssignmentChangedEvent(device.getId(), serialNumber, username, true));
             return Either.right(userDevice);
         } else {
             return Either.left(new Status("Device with serial number " + serialNumber + " is already assigned to the user.",
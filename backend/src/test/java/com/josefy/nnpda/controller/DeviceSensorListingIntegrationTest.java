@@ -0,0 +1,132 @@
+package com.josefy.nnpda.controller;
+
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.Sensor;
+import com.josefy.nnpda.repository.IDeviceRepository;
+import com.josefy.nnpda.repository.ISensorRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// the listings have to stay one statement however many devices and sensors there are
+@SpringBootTest(properties = {
+        "logging.level.org.hibernate=INFO",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Testcontainers
+@WithMockUser(roles = "ADMIN")
+public class DeviceSensorListingIntegrationTest {
+    private static final int DEVICES = 5;
+    private static final int SENSORS_PER_DEVICE = 3;
+
+    @Container
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("testdb")
+                    .withUsername("testuser")
+                    .withPassword("testpass");
+
+    @DynamicPropertySource
+    public static void registerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgresContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresContainer::getUsername);
+        registry.add("spring.datasource.password", postgresContainer::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private IDeviceRepository deviceRepository;
+    @Autowired
+    private ISensorRepository sensorRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    public void setUp() {
+        if (deviceRepository.count() > 0) {
+            return;
+        }
+        for (int i = 0; i < DEVICES; i++) {
+            var device = deviceRepository.save(new Device("DEVICE%06d".formatted(i), "ESP32"));
+            for (int j = 0; j < SENSORS_PER_DEVICE; j++) {
+                var sensor = new Sensor("sensor " + j, "SENSOR%02d%02d".formatted(i, j));
+                sensor.setDevice(device);
+                sensorRepository.save(sensor);
+            }
+        }
+        deviceRepository.save(new Device("NOSENSORS001", "ESP32"));
+        sensorRepository.save(new Sensor("loose", "NODEVICE0001"));
+    }
+
+    @Test
+    public void shouldListDevicesInOneStatement() throws Exception {
+        perform("/devices")
+                .andExpect(jsonPath("$.length()").value(DEVICES + 1))
+                .andExpect(jsonPath("$[0].serialNumber").value("DEVICE000000"))
+                .andExpect(jsonPath("$[0].sensors").doesNotExist());
+        assertStatements(1);
+    }
+
+    @Test
+    public void shouldListDevicesWithSensorsInOneStatement() throws Exception {
+        perform("/devices?withSensors=true")
+                .andExpect(jsonPath("$.length()").value(DEVICES + 1))
+                .andExpect(jsonPath("$[0].sensors.length()").value(SENSORS_PER_DEVICE))
+                .andExpect(jsonPath("$[0].sensors[2].serialNumber").value("SENSOR0002"))
+                .andExpect(jsonPath("$[%d].sensors.length()".formatted(DEVICES)).value(0));
+        assertStatements(1);
+    }
+
+    @Test
+    public void shouldListSensorsInOneStatement() throws Exception {
+        perform("/sensors?omitDevices=true")
+                .andExpect(jsonPath("$.length()").value(DEVICES * SENSORS_PER_DEVICE + 1))
+                .andExpect(jsonPath("$[0].deviceSerial").doesNotExist());
+        assertStatements(1);
+    }
+
+    @Test
+    public void shouldListSensorsWithDevicesInOneStatement() throws Exception {
+        perform("/sensors")
+                .andExpect(jsonPath("$.length()").value(DEVICES * SENSORS_PER_DEVICE + 1))
+                .andExpect(jsonPath("$[0].deviceSerial").value("DEVICE000000"))
+                .andExpect(jsonPath("$[%d].deviceSerial".formatted(DEVICES * SENSORS_PER_DEVICE)).isEmpty());
+        assertStatements(1);
+    }
+
+    private ResultActions perform(String path) throws Exception {
+        statistics().clear();
+        return mockMvc.perform(get(path)).andExpect(status().isOk());
+    }
+
+    private void assertStatements(long expected) {
+        assertEquals(expected, statistics().getPrepareStatementCount());
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
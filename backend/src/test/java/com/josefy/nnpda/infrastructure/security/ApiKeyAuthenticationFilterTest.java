@@ -0,0 +1,131 @@
+package com.josefy.nnpda.infrastructure.security;
+
+import com.josefy.nnpda.infrastructure.dto.DeviceCredentialDto;
+import com.josefy.nnpda.infrastructure.service.IDeviceCredentialService;
+import com.josefy.nnpda.infrastructure.utils.Sha256Provider;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// a handler must never run on a body the device didn't sign, whatever it does with it
+public class ApiKeyAuthenticationFilterTest {
+    private static final String KEY = "api-key";
+    private static final String BODY = "{\"measurements\":[{\"serialNumber\":\"S1\",\"value\":1.0,\"timestamp\":\"2024-05-01T12:00:00Z\"}]}";
+
+    private final Sha256Provider hashProvider = new Sha256Provider();
+    private final IDeviceCredentialService credentials = mock(IDeviceCredentialService.class);
+    private final AtomicReference<byte[]> handled = new AtomicReference<>();
+    private final FilterChain handler = (request, response) -> handled.set(request.getInputStream().readAllBytes());
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void shouldPassSignedBodiesToTheHandler() throws Exception {
+        // spooled to disk on the way, the threshold is below the body size
+        var response = filter(16, 1024).apply(request(BODY, hashProvider.hmac(BODY, KEY)));
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertArrayEquals(BODY.getBytes(StandardCharsets.UTF_8), handled.get());
+    }
+
+    @Test
+    public void shouldRejectUnsignedBodiesBeforeTheHandler() throws Exception {
+        var response = filter(1024, 1024).apply(request(BODY, hashProvider.hmac(BODY + " ", KEY)));
+
+        assertEquals(HttpServletResponse.SC_UNAUTHORIZED, response.getStatus());
+        assertNull(handled.get());
+    }
+
+    @Test
+    public void shouldRejectBodiesOverTheLimit() throws Exception {
+        var response = filter(16, 32).apply(request(BODY, hashProvider.hmac(BODY, KEY)));
+
+        assertEquals(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, response.getStatus());
+        assertNull(handled.get());
+    }
+
+    @Test
+    public void shouldHandTheBodyToAReadListener() throws Exception {
+        FilterChain asyncHandler = (request, response) -> {
+            request.startAsync();
+            var in = request.getInputStream();
+            var received = new ByteArrayOutputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    var buffer = new byte[16];
+                    int read;
+                    while (in.isReady() && (read = in.read(buffer)) != -1) {
+                        received.write(buffer, 0, read);
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    handled.set(received.toByteArray());
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    throw new AssertionError(t);
+                }
+            });
+        };
+        var request = request(BODY, hashProvider.hmac(BODY, KEY));
+        request.setAsyncSupported(true);
+
+        var response = filter(1024, 1024, asyncHandler).apply(request);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertArrayEquals(BODY.getBytes(StandardCharsets.UTF_8), handled.get());
+    }
+
+    private Filter filter(long spoolThreshold, long maxBodySize) {
+        return filter(spoolThreshold, maxBodySize, handler);
+    }
+
+    private Filter filter(long spoolThreshold, long maxBodySize, FilterChain handler) {
+        when(credentials.findDeviceWithCredentials("derived")).thenReturn(Optional.of(
+                new DeviceCredentialDto("derived", KEY, false, 1, "DEVICE000001", "ESP32")));
+        var filter = new ApiKeyAuthenticationFilter(credentials, hashProvider,
+                DataSize.ofBytes(spoolThreshold), DataSize.ofBytes(maxBodySize));
+        return request -> {
+            var response = new MockHttpServletResponse();
+            filter.doFilter(request, response, handler);
+            return response;
+        };
+    }
+
+    private static MockHttpServletRequest request(String body, String signature) {
+        var request = new MockHttpServletRequest("POST", "/api/devices/measurements");
+        request.addHeader("X-DERIVED-ID", "derived");
+        request.addHeader("X-HMAC-SIG", signature);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private interface Filter {
+        MockHttpServletResponse apply(MockHttpServletRequest request) throws Exception;
+    }
+}
@@ -0,0 +1,76 @@
+package com.josefy.nnpda.infrastructure.service.impl;
+
+import com.josefy.nnpda.events.DeviceUpdatedEvent;
+import com.josefy.nnpda.infrastructure.repository.IDeviceCredentialRepository;
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.DeviceCredential;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// an eviction must win over a lookup that read the device before the change committed
+public class DeviceCredentialServiceTest {
+    private final IDeviceCredentialRepository repository = mock(IDeviceCredentialRepository.class);
+    private final DeviceCredentialService service = new DeviceCredentialService(repository, new SimpleMeterRegistry(),
+            100, Duration.ofMinutes(10));
+    private final AtomicReference<String> serialNumber = new AtomicReference<>("DEVICE000001");
+
+    @Test
+    public void shouldEvictEveryIdOfTheDevice() {
+        when(repository.findDeviceWithCredentials("derived")).thenAnswer(invocation -> credential("derived"));
+        when(repository.findDeviceWithCredentials("other")).thenAnswer(invocation -> credential("other"));
+        service.findDeviceWithCredentials("derived");
+        service.findDeviceWithCredentials("other");
+
+        serialNumber.set("DEVICE000002");
+        service.onDeviceUpdated(new DeviceUpdatedEvent(1, "DEVICE000001", "DEVICE000002"));
+
+        assertEquals("DEVICE000002", service.findDeviceWithCredentials("derived").orElseThrow().serialNumber());
+        assertEquals("DEVICE000002", service.findDeviceWithCredentials("other").orElseThrow().serialNumber());
+    }
+
+    @Test
+    public void shouldDropLoadsThatRacedWithAnEviction() throws Exception {
+        var loading = new CountDownLatch(1);
+        var evicted = new CountDownLatch(1);
+        when(repository.findDeviceWithCredentials("derived")).thenAnswer(invocation -> {
+            var stale = credential("derived");
+            if (loading.getCount() > 0) {
+                loading.countDown();
+                assertTrue(evicted.await(5, TimeUnit.SECONDS));
+            }
+            return stale;
+        });
+
+        var lookup = CompletableFuture.supplyAsync(() -> service.findDeviceWithCredentials("derived"));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        // the rename commits while the lookup still holds the old row
+        serialNumber.set("DEVICE000002");
+        service.onDeviceUpdated(new DeviceUpdatedEvent(1, "DEVICE000001", "DEVICE000002"));
+        evicted.countDown();
+
+        assertEquals("DEVICE000002", lookup.get(5, TimeUnit.SECONDS).orElseThrow().serialNumber());
+        assertEquals("DEVICE000002", service.findDeviceWithCredentials("derived").orElseThrow().serialNumber());
+    }
+
+    private Optional<DeviceCredential> credential(String derivedId) {
+        var device = new Device(serialNumber.get(), "ESP32");
+        device.setId(1L);
+        var credential = new DeviceCredential();
+        credential.setDevice(device);
+        credential.setDerivedId(derivedId);
+        credential.setApiKey("key-" + derivedId);
+        return Optional.of(credential);
+    }
+}
@@ -0,0 +1,45 @@
+package com.josefy.nnpda.infrastructure.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Sha256ProviderTest {
+    private final Sha256Provider provider = new Sha256Provider();
+
+    @Test
+    public void shouldVerifyOwnSignatureRepeatedly() throws Exception {
+        var body = "{\"measurements\":[]}";
+        var signature = provider.hmac(body, "key");
+        // second round runs on the pooled mac
+        for (int i = 0; i < 2; i++) {
+            assertTrue(provider.isHmacValid(body, "key", signature));
+            assertTrue(provider.isHmacValid(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), "key", signature));
+        }
+    }
+
+    @Test
+    public void shouldRejectWrongKeyOrSignature() {
+        var body = "{\"measurements\":[]}";
+        var signature = provider.hmac(body, "key");
+        assertFalse(provider.isHmacValid(body, "other-key", signature));
+        assertFalse(provider.isHmacValid(body + " ", "key", signature));
+        assertFalse(provider.isHmacValid(body, "key", signature.substring(0, signature.length() - 4)));
+        assertFalse(provider.isHmacValid(body, "key", signature + "AAAA"));
+        assertFalse(provider.isHmacValid(body, "key", "*" + signature.substring(1)));
+        assertFalse(provider.isHmacValid(body, "key", null));
+    }
+
+    @Test
+    public void shouldVerifyIncrementalUpdates() {
+        var body = "{\"measurements\":[]}".getBytes(StandardCharsets.UTF_8);
+        var verifier = provider.hmacVerifier("key");
+        verifier.update(body[0]);
+        verifier.update(body, 1, body.length - 1);
+        assertTrue(verifier.verify(provider.hmac("{\"measurements\":[]}", "key")));
+    }
+}
@@ -0,0 +1,67 @@
+package com.josefy.nnpda.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MeasurementBlockCodecTest {
+    private static final OffsetDateTime START = OffsetDateTime.of(2024, 3, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    public void shouldRoundTripRegularReadingsCompactly() {
+        var rows = new ArrayList<MeasurementRow>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add(new MeasurementRow(7, START.plusSeconds(i * 10L), 21.5 + (i % 20) * 0.25));
+        }
+        var block = MeasurementBlockCodec.encode(rows);
+        assertEquals(rows, MeasurementBlockCodec.decode(7, block));
+        // a row with its indexes takes ~70 bytes
+        assertTrue(block.length < rows.size() * 4, "block takes " + block.length + " bytes");
+    }
+
+    @Test
+    public void shouldRoundTripIrregularReadings() {
+        var random = new Random(42);
+        var rows = new ArrayList<MeasurementRow>();
+        var timestamp = START;
+        for (int i = 0; i < 5000; i++) {
+            // jitter down to microseconds, gaps of up to days, repeated and special values
+            timestamp = timestamp.plusNanos(random.nextInt(5) == 0 ? random.nextLong(1, 3_000_000_000_000_000L) / 1000 * 1000
+                    : random.nextInt(2_000_000) * 1000L);
+            double value = switch (random.nextInt(6)) {
+                case 0 -> rows.isEmpty() ? 0 : rows.get(rows.size() - 1).value();
+                case 1 -> Double.NaN;
+                case 2 -> -0.0;
+                case 3 -> random.nextInt(5) == 0 ? Double.MAX_VALUE : Double.MIN_VALUE;
+                default -> random.nextGaussian() * 1000;
+            };
+            rows.add(new MeasurementRow(3, timestamp, value));
+        }
+        var decoded = MeasurementBlockCodec.decode(3, MeasurementBlockCodec.encode(rows));
+        assertEquals(rows.size(), decoded.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertTrue(rows.get(i).timestamp().isEqual(decoded.get(i).timestamp()));
+            assertEquals(Double.doubleToRawLongBits(rows.get(i).value()), Double.doubleToRawLongBits(decoded.get(i).value()));
+        }
+    }
+
+    @Test
+    public void shouldRoundTripSingleReading() {
+        var rows = List.of(new MeasurementRow(1, START, 1.0));
+        assertEquals(rows, MeasurementBlockCodec.decode(1, MeasurementBlockCodec.encode(rows)));
+    }
+
+    @Test
+    public void shouldRejectUnorderedReadings() {
+        var rows = List.of(new MeasurementRow(1, START, 1.0), new MeasurementRow(1, START.minusSeconds(1), 2.0));
+        assertThrows(IllegalArgumentException.class, () -> MeasurementBlockCodec.encode(rows));
+    }
+}
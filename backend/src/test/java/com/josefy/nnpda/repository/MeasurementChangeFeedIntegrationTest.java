@@ -0,0 +1,120 @@
+package com.josefy.nnpda.repository;
+
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.Sensor;
+import com.josefy.nnpda.repository.IMeasurementChangeRepository.Change;
+import com.josefy.nnpda.repository.IMeasurementChangeRepository.Position;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// writers don't wait on each other, the feed waits for the oldest of them instead
+@SpringBootTest(properties = "logging.level.org.hibernate=INFO")
+@ActiveProfiles({"test", "migrations"})
+@Testcontainers
+public class MeasurementChangeFeedIntegrationTest {
+    private static final OffsetDateTime AT = OffsetDateTime.of(2024, 5, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @Container
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("testdb")
+                    .withUsername("testuser")
+                    .withPassword("testpass");
+
+    @DynamicPropertySource
+    public static void registerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgresContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresContainer::getUsername);
+        registry.add("spring.datasource.password", postgresContainer::getPassword);
+    }
+
+    @Autowired
+    private IMeasurementChangeRepository changeRepository;
+    @Autowired
+    private IMeasurementWriter measurementWriter;
+    @Autowired
+    private IDeviceRepository deviceRepository;
+    @Autowired
+    private ISensorRepository sensorRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void shouldLetWritersOverlapAndStillFeedEveryReadingInOrder() throws Exception {
+        long first = sensor("FEED00000001");
+        long second = sensor("FEED00000002");
+        var written = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        try (var executor = Executors.newFixedThreadPool(2)) {
+            // stays open until released, like a streamed upload
+            var slow = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                measurementWriter.write(List.of(
+                        new MeasurementRow(first, AT, 1), new MeasurementRow(first, AT.plusSeconds(1), 2)));
+                written.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException("interrupted", e);
+                }
+            }));
+            assertTrue(written.await(10, TimeUnit.SECONDS));
+
+            // would block until release with a lock shared by the writers
+            executor.submit(() -> transactionTemplate.execute(status ->
+                    measurementWriter.write(List.of(new MeasurementRow(second, AT, 3))))).get(5, TimeUnit.SECONDS);
+
+            // the slow writer is older than the one that committed, so neither can be fed yet
+            assertEquals(List.of(), feed());
+
+            release.countDown();
+            slow.get(10, TimeUnit.SECONDS);
+        }
+
+        var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        var changes = feed();
+        while (changes.size() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+            changes = feed();
+        }
+        assertEquals(List.of("FEED00000001", "FEED00000001", "FEED00000002"),
+                changes.stream().map(Change::sensorSerialNumber).toList());
+        assertEquals(List.of(1.0, 2.0, 3.0), changes.stream().map(Change::value).toList());
+        assertTrue(changes.get(0).position().xid() < changes.get(2).position().xid(), changes.toString());
+
+        // paging from the last position picks up nothing twice
+        assertEquals(List.of(), changeRepository.findAfter(changes.get(2).position(), 100));
+    }
+
+    private List<Change> feed() {
+        return changeRepository.findAfter(new Position(0, 0), 100).stream()
+                .filter(change -> change.sensorSerialNumber().startsWith("FEED"))
+                .toList();
+    }
+
+    private long sensor(String serialNumber) {
+        var device = deviceRepository.save(new Device(serialNumber, "ESP32"));
+        var sensor = new Sensor("fed", serialNumber);
+        sensor.setDevice(device);
+        return sensorRepository.save(sensor).getId();
+    }
+}
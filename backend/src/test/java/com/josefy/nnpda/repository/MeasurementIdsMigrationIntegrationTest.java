@@ -0,0 +1,105 @@
+package com.josefy.nnpda.repository;
+
+import com.josefy.nnpda.model.Measurement;
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.DriverManager;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// a database that had readings before the rest of the changelogs ran, hibernate's id blocks must start past them
+@SpringBootTest(properties = "logging.level.org.hibernate=INFO")
+@ActiveProfiles({"test", "migrations"})
+@Testcontainers
+public class MeasurementIdsMigrationIntegrationTest {
+    // the changesets of db.changelog-initial.yml, the schema before partitioning
+    private static final int BASELINE_CHANGESETS = 8;
+    private static final int LEGACY_READINGS = 250;
+    private static final OffsetDateTime AT = OffsetDateTime.of(2024, 5, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @Container
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("testdb")
+                    .withUsername("testuser")
+                    .withPassword("testpass");
+
+    @DynamicPropertySource
+    public static void registerProperties(DynamicPropertyRegistry registry) throws Exception {
+        // runs before the context starts, so its Liquibase run picks up from here
+        legacyReadings(postgresContainer.getJdbcUrl(), postgresContainer.getUsername(), postgresContainer.getPassword());
+        registry.add("spring.datasource.url", postgresContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresContainer::getUsername);
+        registry.add("spring.datasource.password", postgresContainer::getPassword);
+    }
+
+    @Autowired
+    private IMeasurementRepository measurementRepository;
+    @Autowired
+    private ISensorRepository sensorRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void shouldHandOutIdsPastTheExistingReadings() {
+        var sensor = sensorRepository.findBySerialNumber("LEGACY000001").orElseThrow();
+        var measurements = new ArrayList<Measurement>();
+        for (int i = 0; i < 2 * Measurement.ALLOCATION_SIZE; i++) {
+            var measurement = new Measurement();
+            measurement.setSensor(sensor);
+            measurement.setTimestamp(AT.plusDays(1).plusSeconds(i));
+            measurement.setValue((double) i);
+            measurements.add(measurement);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> measurementRepository.saveAll(measurements));
+
+        assertEquals(LEGACY_READINGS + measurements.size(), measurementRepository.count());
+        // the primary key is (id, timestamp), a reused id wouldn't fail the insert
+        assertEquals(LEGACY_READINGS + measurements.size(),
+                jdbcTemplate.queryForObject("SELECT count(DISTINCT id) FROM measurements", Long.class));
+        var lowest = jdbcTemplate.queryForObject(
+                "SELECT min(id) FROM measurements WHERE timestamp > ?", Long.class, AT.plusHours(1));
+        assertTrue(lowest > LEGACY_READINGS, "first new id " + lowest);
+    }
+
+    // ids 1..LEGACY_READINGS as an identity column would have left them
+    private static void legacyReadings(String url, String username, String password) throws Exception {
+        try (var connection = DriverManager.getConnection(url, username, password)) {
+            var database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            new Liquibase("db/changelog/db.changelog-master.yml", new ClassLoaderResourceAccessor(), database)
+                    .update(BASELINE_CHANGESETS, new Contexts(), new LabelExpression());
+            // liquibase leaves the connection in manual commit mode
+            connection.setAutoCommit(true);
+            try (var statement = connection.createStatement()) {
+                statement.execute("INSERT INTO sensors (name, serial_number) VALUES ('legacy', 'LEGACY000001')");
+                statement.execute("""
+                        INSERT INTO measurements (id, sensor_id, timestamp, value)
+                        SELECT i, (SELECT id FROM sensors), '%s'::timestamptz - i * interval '1 second', i
+                        FROM generate_series(1, %d) i""".formatted(AT, LEGACY_READINGS));
+            }
+        }
+    }
+}
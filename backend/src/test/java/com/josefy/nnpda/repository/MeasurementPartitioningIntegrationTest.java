@@ -0,0 +1,120 @@
+package com.josefy.nnpda.repository;
+
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.Sensor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// the schema of the migrations profile, built by the changelogs alone and validated by hibernate on startup
+@SpringBootTest(properties = "logging.level.org.hibernate=INFO")
+@ActiveProfiles({"test", "migrations"})
+@Testcontainers
+public class MeasurementPartitioningIntegrationTest {
+    @Container
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("testdb")
+                    .withUsername("testuser")
+                    .withPassword("testpass");
+
+    @DynamicPropertySource
+    public static void registerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgresContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresContainer::getUsername);
+        registry.add("spring.datasource.password", postgresContainer::getPassword);
+    }
+
+    @Autowired
+    private IMeasurementPartitionRepository partitionRepository;
+    @Autowired
+    private IDeviceRepository deviceRepository;
+    @Autowired
+    private ISensorRepository sensorRepository;
+    @Autowired
+    private IMeasurementWriter measurementWriter;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void shouldPartitionMeasurementsAhead() {
+        assertTrue(partitionRepository.isPartitioned());
+        var today = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS);
+        var names = partitionRepository.findAll().stream().map(MeasurementPartition::name).toList();
+        // created by the maintainer on startup
+        assertTrue(names.contains(partitionName(today.plusDays(13))), names.toString());
+    }
+
+    @Test
+    public void shouldRouteReadingsToTheirPartitions() {
+        long sensorId = sensor("PARTITION001");
+        var now = OffsetDateTime.now(ZoneOffset.UTC);
+        var rows = List.of(
+                new MeasurementRow(sensorId, now.minusYears(1), 1),
+                new MeasurementRow(sensorId, now, 2),
+                new MeasurementRow(sensorId, now.plusYears(1), 3));
+
+        assertEquals(new MeasurementWriteResult(3, 0, 0),
+                transactionTemplate.execute(status -> measurementWriter.write(rows)));
+
+        var partitions = jdbcTemplate.queryForList(
+                "SELECT tableoid::regclass::text FROM measurements WHERE sensor_id = ? ORDER BY timestamp",
+                String.class, sensorId);
+        assertEquals(List.of("measurements_history", partitionName(now), "measurements_default"), partitions);
+    }
+
+    @Test
+    public void shouldKeepEveryColumnOfReadingsMovedOutOfTheDefaultPartition() {
+        long sensorId = sensor("PARTITION002");
+        var day = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS).plusYears(2);
+        transactionTemplate.execute(status -> measurementWriter.write(List.of(new MeasurementRow(sensorId, day.plusHours(1), 4))));
+        var before = reading(sensorId);
+        assertEquals("measurements_default", before.get("partition"));
+
+        transactionTemplate.executeWithoutResult(status ->
+                partitionRepository.create(partitionName(day), day, day.plusDays(1)));
+
+        var after = reading(sensorId);
+        assertEquals(partitionName(day), after.get("partition"));
+        assertEquals(before.get("id"), after.get("id"));
+        assertEquals(before.get("ingest_xid"), after.get("ingest_xid"));
+        assertEquals(before.get("ingest_seq"), after.get("ingest_seq"));
+    }
+
+    private Map<String, Object> reading(long sensorId) {
+        return jdbcTemplate.queryForMap("""
+                SELECT id, ingest_xid::text, ingest_seq, tableoid::regclass::text AS partition
+                FROM measurements WHERE sensor_id = ?""", sensorId);
+    }
+
+    private long sensor(String serialNumber) {
+        var device = deviceRepository.save(new Device(serialNumber, "ESP32"));
+        var sensor = new Sensor("partitioned", serialNumber);
+        sensor.setDevice(device);
+        return sensorRepository.save(sensor).getId();
+    }
+
+    private static String partitionName(OffsetDateTime day) {
+        return "measurements_p" + day.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+    }
+}
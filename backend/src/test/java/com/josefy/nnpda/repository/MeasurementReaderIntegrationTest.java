@@ -0,0 +1,127 @@
+package com.josefy.nnpda.repository;
+
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.Sensor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// plain rows inside a block's range come out in order, on the same timestamp the row replaces the block's reading
+@SpringBootTest(properties = "logging.level.org.hibernate=INFO")
+@ActiveProfiles({"test", "migrations"})
+@Testcontainers
+public class MeasurementReaderIntegrationTest {
+    private static final OffsetDateTime AT = OffsetDateTime.of(2024, 5, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @Container
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("testdb")
+                    .withUsername("testuser")
+                    .withPassword("testpass");
+
+    @DynamicPropertySource
+    public static void registerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgresContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresContainer::getUsername);
+        registry.add("spring.datasource.password", postgresContainer::getPassword);
+    }
+
+    @Autowired
+    private IMeasurementReader measurementReader;
+    @Autowired
+    private IMeasurementBlockRepository blockRepository;
+    @Autowired
+    private IMeasurementWriter measurementWriter;
+    @Autowired
+    private IDeviceRepository deviceRepository;
+    @Autowired
+    private ISensorRepository sensorRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void shouldMergeRowsIntoTheBlocksTheyFallInto() {
+        long sensorId = sensor("READER000001");
+        // blocks at 0..40 and 60..80, values are the second they were taken at
+        transactionTemplate.executeWithoutResult(status -> {
+            blockRepository.insert(sensorId, readings(sensorId, 0, 10, 20, 30, 40));
+            blockRepository.insert(sensorId, readings(sensorId, 60, 70, 80));
+        });
+        // inside the first block, on its 20 and its last reading, after it, on the first reading of the second
+        transactionTemplate.execute(status -> measurementWriter.write(List.of(
+                new MeasurementRow(sensorId, AT.plusSeconds(15), 15),
+                new MeasurementRow(sensorId, AT.plusSeconds(20), -20),
+                new MeasurementRow(sensorId, AT.plusSeconds(40), -40),
+                new MeasurementRow(sensorId, AT.plusSeconds(50), 50),
+                new MeasurementRow(sensorId, AT.plusSeconds(60), -60))));
+
+        assertEquals(List.of(0.0, 10.0, 15.0, -20.0, 30.0, -40.0, 50.0, -60.0, 70.0, 80.0),
+                values(() -> measurementReader.stream(sensorId, AT, AT.plusHours(1))));
+        // cut inside both blocks
+        assertEquals(List.of(10.0, 15.0, -20.0, 30.0, -40.0, 50.0, -60.0),
+                values(() -> measurementReader.stream(sensorId, AT.plusSeconds(10), AT.plusSeconds(70))));
+        // the page after a replaced reading skips both of them
+        assertEquals(List.of(30.0, -40.0, 50.0, -60.0, 70.0, 80.0),
+                values(() -> measurementReader.streamAfter(sensorId, AT.plusSeconds(20), AT.plusHours(1))));
+    }
+
+    @Test
+    public void shouldTakeTheLatestReadingFromWhicheverIsNewer() {
+        long compacted = sensor("READER000002");
+        long newerRow = sensor("READER000003");
+        transactionTemplate.executeWithoutResult(status -> {
+            blockRepository.insert(compacted, readings(compacted, 0, 10, 20));
+            blockRepository.insert(newerRow, readings(newerRow, 0, 10, 20));
+        });
+        transactionTemplate.execute(status -> measurementWriter.write(List.of(
+                new MeasurementRow(compacted, AT.plusSeconds(5), -5),
+                new MeasurementRow(newerRow, AT.plusSeconds(30), -30))));
+
+        var latest = measurementReader.findLatest().stream()
+                .filter(row -> row.sensorId() == compacted || row.sensorId() == newerRow)
+                .sorted(Comparator.comparingLong(MeasurementRow::sensorId))
+                .map(MeasurementRow::value)
+                .toList();
+        assertEquals(List.of(20.0, -30.0), latest);
+    }
+
+    private List<Double> values(Supplier<Stream<MeasurementRow>> reading) {
+        // the cursor needs a transaction
+        return transactionTemplate.execute(status -> {
+            try (var rows = reading.get()) {
+                return rows.map(MeasurementRow::value).toList();
+            }
+        });
+    }
+
+    private static List<MeasurementRow> readings(long sensorId, int... seconds) {
+        return Arrays.stream(seconds)
+                .mapToObj(second -> new MeasurementRow(sensorId, AT.plusSeconds(second), second))
+                .toList();
+    }
+
+    private long sensor(String serialNumber) {
+        var device = deviceRepository.save(new Device(serialNumber, "ESP32"));
+        var sensor = new Sensor("read", serialNumber);
+        sensor.setDevice(device);
+        return sensorRepository.save(sensor).getId();
+    }
+}
@@ -0,0 +1,169 @@
+package com.josefy.nnpda.repository;
+
+import com.josefy.nnpda.dto.measurement.MeasurementRollupDto;
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.Sensor;
+import com.josefy.nnpda.service.impl.MeasurementCompactor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// buckets are aggregated again from scratch, whatever arrives late or gets compacted in between
+@SpringBootTest(properties = {
+        "logging.level.org.hibernate=INFO",
+        // refreshed by the tests themselves
+        "measurements.rollups.refresh-interval=PT1H"
+})
+@ActiveProfiles({"test", "migrations"})
+@Testcontainers
+public class MeasurementRollupIntegrationTest {
+    // long past measurements.compaction.compact-after
+    private static final OffsetDateTime AT = OffsetDateTime.of(2024, 5, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @Container
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("testdb")
+                    .withUsername("testuser")
+                    .withPassword("testpass");
+
+    @DynamicPropertySource
+    public static void registerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgresContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresContainer::getUsername);
+        registry.add("spring.datasource.password", postgresContainer::getPassword);
+    }
+
+    @Autowired
+    private IMeasurementRollupRepository rollupRepository;
+    @Autowired
+    private IMeasurementWriter measurementWriter;
+    @Autowired
+    private MeasurementCompactor compactor;
+    @Autowired
+    private IDeviceRepository deviceRepository;
+    @Autowired
+    private ISensorRepository sensorRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void shouldFoldLateReadingsIntoEveryTier() {
+        long sensorId = sensor("ROLLUP000001");
+        write(new MeasurementRow(sensorId, AT.plusSeconds(10), 1),
+                new MeasurementRow(sensorId, AT.plusSeconds(30), 3),
+                new MeasurementRow(sensorId, AT.plusSeconds(90), 5));
+        refresh();
+
+        var minutes = minutes(sensorId);
+        assertEquals(2, minutes.size());
+        assertBucket(minutes.get(0), AT, 2, 1, 3, 1, 3);
+        assertBucket(minutes.get(1), AT.plusMinutes(1), 1, 5, 5, 5, 5);
+
+        // older than everything in its minute, so it becomes the first reading of the minute, hour and day
+        write(new MeasurementRow(sensorId, AT.plusSeconds(5), 7));
+        refresh();
+
+        minutes = minutes(sensorId);
+        assertBucket(minutes.get(0), AT, 3, 1, 7, 7, 3);
+        assertBucket(minutes.get(1), AT.plusMinutes(1), 1, 5, 5, 5, 5);
+        assertBucket(single(sensorId, MeasurementRollupTier.HOUR), AT, 4, 1, 7, 7, 5);
+        assertBucket(single(sensorId, MeasurementRollupTier.DAY), AT.withHour(0), 4, 1, 7, 7, 5);
+    }
+
+    @Test
+    public void shouldKeepCompactedMinutesWhenTheyAreAggregatedAgain() {
+        long sensorId = sensor("ROLLUP000002");
+        write(new MeasurementRow(sensorId, AT.plusSeconds(10), 1),
+                new MeasurementRow(sensorId, AT.plusSeconds(20), 2),
+                new MeasurementRow(sensorId, AT.plusSeconds(70), 4));
+        refresh();
+        compactor.run();
+        refresh();
+
+        assertEquals(0, plainRows(sensorId));
+        var minutes = minutes(sensorId);
+        assertEquals(2, minutes.size());
+        assertBucket(minutes.get(0), AT, 2, 1, 2, 1, 2);
+        assertBucket(single(sensorId, MeasurementRollupTier.HOUR), AT, 3, 1, 4, 1, 4);
+
+        // a late reading for a compacted minute, its other readings are only in the block
+        write(new MeasurementRow(sensorId, AT.plusSeconds(30), 3));
+        refresh();
+
+        // left as the compactor wrote it rather than aggregated from the one plain row
+        assertBucket(minutes(sensorId).get(0), AT, 2, 1, 2, 1, 2);
+
+        // the next compaction merges the reading into the block and writes the minute again
+        compactor.run();
+        refresh();
+
+        assertEquals(0, plainRows(sensorId));
+        minutes = minutes(sensorId);
+        assertBucket(minutes.get(0), AT, 3, 1, 3, 1, 3);
+        assertBucket(minutes.get(1), AT.plusMinutes(1), 1, 4, 4, 4, 4);
+        assertBucket(single(sensorId, MeasurementRollupTier.HOUR), AT, 4, 1, 4, 1, 4);
+        assertBucket(single(sensorId, MeasurementRollupTier.DAY), AT.withHour(0), 4, 1, 4, 1, 4);
+    }
+
+    private void write(MeasurementRow... rows) {
+        transactionTemplate.execute(status -> measurementWriter.write(List.of(rows)));
+    }
+
+    // everything that's dirty, the way MeasurementRollupWorker does it
+    private void refresh() {
+        int claimed;
+        do {
+            claimed = transactionTemplate.execute(status -> rollupRepository.refresh(100));
+        } while (claimed == 100);
+    }
+
+    private List<MeasurementRollupDto> minutes(long sensorId) {
+        return rollupRepository.find(sensorId, MeasurementRollupTier.MINUTE, Duration.ofMinutes(1),
+                AT.withHour(0), AT.withHour(0).plusDays(1));
+    }
+
+    private MeasurementRollupDto single(long sensorId, MeasurementRollupTier tier) {
+        var buckets = rollupRepository.find(sensorId, tier, tier.size(), AT.withHour(0), AT.withHour(0).plusDays(1));
+        assertEquals(1, buckets.size(), buckets.toString());
+        return buckets.get(0);
+    }
+
+    private long plainRows(long sensorId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM measurements WHERE sensor_id = ?", Long.class, sensorId);
+    }
+
+    private static void assertBucket(MeasurementRollupDto bucket, OffsetDateTime start, long count,
+                                     double min, double max, double first, double last) {
+        assertEquals(start.toInstant(), bucket.bucket().toInstant(), bucket.toString());
+        assertEquals(count, bucket.count(), bucket.toString());
+        assertEquals(min, bucket.min(), bucket.toString());
+        assertEquals(max, bucket.max(), bucket.toString());
+        assertEquals(first, bucket.first(), bucket.toString());
+        assertEquals(last, bucket.last(), bucket.toString());
+    }
+
+    private long sensor(String serialNumber) {
+        var device = deviceRepository.save(new Device(serialNumber, "ESP32"));
+        var sensor = new Sensor("rolled up", serialNumber);
+        sensor.setDevice(device);
+        return sensorRepository.save(sensor).getId();
+    }
+}
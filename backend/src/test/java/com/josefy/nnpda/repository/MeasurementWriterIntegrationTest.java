@@ -0,0 +1,223 @@
+package com.josefy.nnpda.repository;
+
+import com.josefy.nnpda.events.MeasurementsWrittenEvent;
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.Measurement;
+import com.josefy.nnpda.model.Sensor;
+import com.josefy.nnpda.repository.impl.JdbcMeasurementWriter;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// what the writer and saveAll store, the timings are in MeasurementWriterBenchmark (jmh)
+@SpringBootTest(properties = {
+        "logging.level.org.hibernate=INFO",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=" + MeasurementWriterIntegrationTest.BATCH_SIZE,
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@ActiveProfiles("test")
+@Testcontainers
+public class MeasurementWriterIntegrationTest {
+    private static final int ROWS = 20_000;
+    static final int BATCH_SIZE = 1000;
+
+    @Container
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("testdb")
+                    .withUsername("testuser")
+                    .withPassword("testpass")
+                    .withUrlParam("reWriteBatchedInserts", "true");
+
+    @DynamicPropertySource
+    public static void registerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgresContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresContainer::getUsername);
+        registry.add("spring.datasource.password", postgresContainer::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+    }
+
+    @Autowired
+    private IDeviceRepository deviceRepository;
+    @Autowired
+    private ISensorRepository sensorRepository;
+    @Autowired
+    private IMeasurementRepository measurementRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void writersShouldStoreEveryReading() {
+        var device = deviceRepository.save(new Device("THROUGHPUT01", "BENCH"));
+        var sensor = new Sensor("bench", "THROUGHPUT01");
+        sensor.setDevice(device);
+        sensor = sensorRepository.save(sensor);
+
+        final var target = sensor;
+        transactionTemplate.executeWithoutResult(status -> measurementRepository.saveAll(entities(target, 0, ROWS)));
+        var batch = transactionTemplate.execute(status ->
+                writer(JdbcMeasurementWriter.Mode.BATCH, JdbcMeasurementWriter.Conflict.FAIL).write(rows(target.getId(), 1)));
+        var copy = transactionTemplate.execute(status ->
+                writer(JdbcMeasurementWriter.Mode.COPY, JdbcMeasurementWriter.Conflict.FAIL).write(rows(target.getId(), 2)));
+        assertEquals(new MeasurementWriteResult(ROWS, 0, 0), batch);
+        assertEquals(new MeasurementWriteResult(ROWS, 0, 0), copy);
+
+        assertEquals(3L * ROWS, measurementRepository.count());
+        for (int run = 0; run < 3; run++) {
+            // every run stores value i at second i of its day
+            var mismatches = jdbcTemplate.queryForObject("""
+                    SELECT count(*) FROM measurements
+                    WHERE sensor_id = ? AND timestamp >= ? AND timestamp < ?
+                      AND value <> extract(epoch FROM timestamp - ?)""", Long.class,
+                    target.getId(), base(run), base(run + 1), base(run));
+            assertEquals(0L, mismatches, "run " + run);
+        }
+    }
+
+    @Test
+    public void upsertShouldReportInsertedUpdatedAndSkipped() {
+        var device = deviceRepository.save(new Device("UPSERT000001", "BENCH"));
+        var sensor = new Sensor("upsert", "UPSERT000001");
+        sensor.setDevice(device);
+        long sensorId = sensorRepository.save(sensor).getId();
+        var at = base(10);
+
+        for (var mode : JdbcMeasurementWriter.Mode.values()) {
+            var first = List.of(new MeasurementRow(sensorId, at, 1), new MeasurementRow(sensorId, at.plusSeconds(1), 2));
+            var skip = writer(mode, JdbcMeasurementWriter.Conflict.SKIP);
+            assertEquals(new MeasurementWriteResult(2, 0, 0), transactionTemplate.execute(s -> skip.write(first)));
+            // the retry of a timed out request
+            assertEquals(new MeasurementWriteResult(0, 0, 2), transactionTemplate.execute(s -> skip.write(first)));
+
+            var second = List.of(new MeasurementRow(sensorId, at, 1),
+                    new MeasurementRow(sensorId, at.plusSeconds(1), 20),
+                    new MeasurementRow(sensorId, at.plusSeconds(2), 3),
+                    new MeasurementRow(sensorId, at.plusSeconds(2), 30));
+            var update = writer(mode, JdbcMeasurementWriter.Conflict.UPDATE);
+            assertEquals(new MeasurementWriteResult(1, 1, 2), transactionTemplate.execute(s -> update.write(second)));
+            assertEquals(30.0, jdbcTemplate.queryForObject(
+                    "SELECT value FROM measurements WHERE sensor_id = ? AND timestamp = ?", Double.class,
+                    sensorId, at.plusSeconds(2)));
+
+            jdbcTemplate.update("DELETE FROM measurements WHERE sensor_id = ?", sensorId);
+        }
+    }
+
+    // a resent reading the merge left alone must not reach the cache, the feed or the search index
+    @Test
+    public void mergeShouldOnlyPublishWhatItStored() {
+        var device = deviceRepository.save(new Device("STORED000001", "BENCH"));
+        var sensor = new Sensor("stored", "STORED000001");
+        sensor.setDevice(device);
+        long sensorId = sensorRepository.save(sensor).getId();
+        var at = base(15);
+        var published = new ArrayList<MeasurementRow>();
+        ApplicationEventPublisher publisher = event -> published.addAll(((MeasurementsWrittenEvent) event).rows());
+
+        for (var mode : JdbcMeasurementWriter.Mode.values()) {
+            var skip = writer(mode, JdbcMeasurementWriter.Conflict.SKIP, publisher);
+            transactionTemplate.execute(s -> skip.write(List.of(new MeasurementRow(sensorId, at, 1))));
+            published.clear();
+            transactionTemplate.execute(s -> skip.write(List.of(
+                    new MeasurementRow(sensorId, at, 10), new MeasurementRow(sensorId, at.plusSeconds(1), 2))));
+            assertEquals(List.of(new MeasurementRow(sensorId, at.plusSeconds(1), 2)), utc(published));
+
+            var update = writer(mode, JdbcMeasurementWriter.Conflict.UPDATE, publisher);
+            published.clear();
+            transactionTemplate.execute(s -> update.write(List.of(
+                    new MeasurementRow(sensorId, at, 10), new MeasurementRow(sensorId, at.plusSeconds(1), 2))));
+            assertEquals(List.of(new MeasurementRow(sensorId, at, 10)), utc(published));
+
+            jdbcTemplate.update("DELETE FROM measurements WHERE sensor_id = ?", sensorId);
+        }
+    }
+
+    // statements Hibernate sends per ingested batch, pooled sequence ids against one INSERT ... RETURNING per row
+    @Test
+    public void saveAllShouldBatchWithPooledIds() {
+        var device = deviceRepository.save(new Device("POOLEDIDS001", "BENCH"));
+        var sensor = new Sensor("pooled", "POOLEDIDS001");
+        sensor.setDevice(device);
+        final var target = sensorRepository.save(sensor);
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        int run = 20;
+        for (int readings : new int[]{100, 1000, 5000}) {
+            final int day = run++;
+            statistics.clear();
+            transactionTemplate.executeWithoutResult(status -> measurementRepository.saveAll(entities(target, day, readings)));
+            long statements = statistics.getPrepareStatementCount();
+            long idCalls = (readings + Measurement.ALLOCATION_SIZE - 1) / Measurement.ALLOCATION_SIZE;
+            long batches = (readings + BATCH_SIZE - 1) / BATCH_SIZE;
+            assertEquals(readings, statistics.getEntityInsertCount());
+            // the pooled optimizer may fetch one block ahead when it starts
+            assertTrue(statements <= idCalls + batches + 1, "expected about " + (idCalls + batches) + " statements");
+        }
+        jdbcTemplate.update("DELETE FROM measurements WHERE sensor_id = ?", target.getId());
+    }
+
+    private JdbcMeasurementWriter writer(JdbcMeasurementWriter.Mode mode, JdbcMeasurementWriter.Conflict conflict) {
+        return writer(mode, conflict, event -> {});
+    }
+
+    private JdbcMeasurementWriter writer(JdbcMeasurementWriter.Mode mode, JdbcMeasurementWriter.Conflict conflict,
+                                         ApplicationEventPublisher publisher) {
+        return new JdbcMeasurementWriter(jdbcTemplate, publisher, mode, conflict, BATCH_SIZE);
+    }
+
+    private static List<MeasurementRow> utc(List<MeasurementRow> rows) {
+        return rows.stream()
+                .map(row -> new MeasurementRow(row.sensorId(), row.timestamp().withOffsetSameInstant(ZoneOffset.UTC),
+                        row.value()))
+                .toList();
+    }
+
+    // each run gets its own day so uk_sensor_timestamp doesn't get in the way
+    private static OffsetDateTime base(int run) {
+        return OffsetDateTime.of(2024, 1, 1 + run, 0, 0, 0, 0, ZoneOffset.UTC);
+    }
+
+    private static List<Measurement> entities(Sensor sensor, int run, int count) {
+        var result = new ArrayList<Measurement>(count);
+        for (int i = 0; i < count; i++) {
+            var measurement = new Measurement();
+            measurement.setSensor(sensor);
+            measurement.setTimestamp(base(run).plusSeconds(i));
+            measurement.setValue((double) i);
+            result.add(measurement);
+        }
+        return result;
+    }
+
+    private static List<MeasurementRow> rows(long sensorId, int run) {
+        var result = new ArrayList<MeasurementRow>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            result.add(new MeasurementRow(sensorId, base(run).plusSeconds(i), i));
+        }
+        return result;
+    }
+}
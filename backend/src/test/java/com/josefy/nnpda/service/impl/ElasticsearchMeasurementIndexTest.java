@@ -0,0 +1,100 @@
+package com.josefy.nnpda.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.josefy.nnpda.repository.IMeasurementOutboxRepository.Entry;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// against a stand-in for the _bulk endpoint
+public class ElasticsearchMeasurementIndexTest {
+    private static final OffsetDateTime TIMESTAMP = OffsetDateTime.of(2024, 5, 1, 23, 59, 30, 0, ZoneOffset.ofHours(2));
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> requests = new ArrayList<>();
+    private HttpServer server;
+    private int status = 200;
+    private String response;
+    private ElasticsearchMeasurementIndex index;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/_bulk", exchange -> {
+            requests.add(exchange.getRequestHeaders().getFirst("Content-Type") + "\n"
+                    + new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            var body = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        index = new ElasticsearchMeasurementIndex(objectMapper, "http://localhost:" + server.getAddress().getPort(),
+                "measurements-", Duration.ofSeconds(1), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldSendNdjsonAndReturnItemStatuses() throws IOException {
+        response = """
+                {"took": 3, "errors": true, "items": [
+                    {"index": {"_index": "measurements-2024.05.01", "_id": "7-1714600770000000", "status": 201}},
+                    {"index": {"_index": "measurements-2024.05.01", "_id": "8-1714600770000000", "status": 429,
+                               "error": {"type": "es_rejected_execution_exception"}}}
+                ]}""";
+        var statuses = index.index(List.of(
+                new Entry(1, 7, "SENSOR7", "DEVICE1", TIMESTAMP, 21.5, 0),
+                new Entry(2, 8, "SENSOR8", null, TIMESTAMP, -3, 0)));
+
+        assertEquals(List.of(201, 429), statuses);
+        assertEquals(1, requests.size());
+        var lines = requests.get(0).split("\n");
+        assertEquals("application/x-ndjson", lines[0]);
+        assertEquals(5, lines.length);
+        // the index is picked by the UTC day
+        assertEquals(objectMapper.readTree("""
+                {"index": {"_index": "measurements-2024.05.01", "_id": "7-1714600770000000"}}"""),
+                objectMapper.readTree(lines[1]));
+        assertEquals(objectMapper.readTree("""
+                {"sensor_serial_number": "SENSOR7", "device_serial_number": "DEVICE1", "value": 21.5,
+                 "timestamp": "2024-05-01T21:59:30Z", "@timestamp": "2024-05-01T21:59:30Z"}"""),
+                objectMapper.readTree(lines[2]));
+        assertEquals(objectMapper.readTree("""
+                {"sensor_serial_number": "SENSOR8", "device_serial_number": null, "value": -3.0,
+                 "timestamp": "2024-05-01T21:59:30Z", "@timestamp": "2024-05-01T21:59:30Z"}"""),
+                objectMapper.readTree(lines[4]));
+    }
+
+    @Test
+    public void shouldThrowWhenTheRequestFails() {
+        status = 503;
+        response = "{\"error\": \"unavailable\"}";
+        assertThrows(RestClientResponseException.class,
+                () -> index.index(List.of(new Entry(1, 7, "SENSOR7", "DEVICE1", TIMESTAMP, 21.5, 0))));
+    }
+
+    @Test
+    public void shouldThrowWhenItemsAreMissing() {
+        response = "{\"errors\": false, \"items\": []}";
+        assertThrows(IllegalStateException.class,
+                () -> index.index(List.of(new Entry(1, 7, "SENSOR7", "DEVICE1", TIMESTAMP, 21.5, 0))));
+    }
+}
@@ -0,0 +1,52 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.events.MeasurementsWrittenEvent;
+import com.josefy.nnpda.repository.IMeasurementReader;
+import com.josefy.nnpda.repository.MeasurementRow;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// the latest API has to show a corrected value for the same timestamp, but never an older reading
+public class LatestMeasurementCacheTest {
+    private static final OffsetDateTime AT = OffsetDateTime.of(2024, 5, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private final IMeasurementReader measurementReader = mock(IMeasurementReader.class);
+    private final LatestMeasurementCache cache = new LatestMeasurementCache(measurementReader);
+
+    @Test
+    public void shouldReplaceTheCachedReadingWithAStoredCorrection() {
+        cache.onMeasurementsWritten(new MeasurementsWrittenEvent(List.of(new MeasurementRow(1, AT, 1))));
+        // same instant, another offset
+        var corrected = new MeasurementRow(1, AT.withOffsetSameInstant(ZoneOffset.ofHours(2)), 2);
+        cache.onMeasurementsWritten(new MeasurementsWrittenEvent(List.of(corrected)));
+
+        assertEquals(Optional.of(corrected), cache.find(1));
+    }
+
+    @Test
+    public void shouldKeepTheNewerReading() {
+        var latest = new MeasurementRow(1, AT.plusSeconds(1), 2);
+        cache.onMeasurementsWritten(new MeasurementsWrittenEvent(List.of(latest, new MeasurementRow(1, AT, 1))));
+
+        assertEquals(Optional.of(latest), cache.find(1));
+    }
+
+    @Test
+    public void shouldNotLetTheWarmUpSnapshotReplaceAWrittenReading() {
+        var written = new MeasurementRow(1, AT, 2);
+        cache.onMeasurementsWritten(new MeasurementsWrittenEvent(List.of(written)));
+        when(measurementReader.findLatest()).thenReturn(List.of(new MeasurementRow(1, AT, 1)));
+
+        cache.warmUp();
+
+        assertEquals(Optional.of(written), cache.find(1));
+    }
+}
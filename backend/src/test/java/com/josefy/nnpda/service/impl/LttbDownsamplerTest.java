@@ -0,0 +1,61 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.repository.MeasurementRow;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LttbDownsamplerTest {
+    private static final OffsetDateTime START = OffsetDateTime.of(2024, 3, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    public void shouldKeepAtMostMaxPointsIncludingFirstAndLast() {
+        var rows = IntStream.range(0, 86_400)
+                .mapToObj(i -> row(i, Math.sin(i / 600.0)))
+                .toList();
+        var picked = LttbDownsampler.downsample(rows.stream(), START, START.plusDays(1), 500);
+        assertTrue(picked.size() <= 500, "picked " + picked.size());
+        assertTrue(picked.size() >= 490, "picked " + picked.size());
+        assertEquals(rows.get(0), picked.get(0));
+        assertEquals(rows.get(rows.size() - 1), picked.get(picked.size() - 1));
+        for (int i = 1; i < picked.size(); i++) {
+            assertTrue(picked.get(i).timestamp().isAfter(picked.get(i - 1).timestamp()));
+        }
+    }
+
+    @Test
+    public void shouldKeepSpikes() {
+        var rows = new ArrayList<MeasurementRow>();
+        for (int i = 0; i < 10_000; i++) {
+            rows.add(row(i, i == 4321 ? 100 : i == 8765 ? -100 : 20));
+        }
+        var picked = LttbDownsampler.downsample(rows.stream(), START, START.plusSeconds(10_000), 50);
+        assertTrue(picked.contains(rows.get(4321)));
+        assertTrue(picked.contains(rows.get(8765)));
+    }
+
+    @Test
+    public void shouldKeepEverythingWhenSparse() {
+        var rows = List.of(row(0, 1), row(3600, 5), row(7200, 2), row(20_000, 8));
+        assertEquals(rows, LttbDownsampler.downsample(rows.stream(), START, START.plusDays(1), 100));
+        assertEquals(List.of(), LttbDownsampler.downsample(Stream.empty(), START, START.plusDays(1), 100));
+    }
+
+    @Test
+    public void shouldRejectTooFewPoints() {
+        assertThrows(IllegalArgumentException.class, () -> new LttbDownsampler(START, START.plusDays(1), 2));
+    }
+
+    private static MeasurementRow row(int second, double value) {
+        return new MeasurementRow(1, START.plusSeconds(second), value);
+    }
+}
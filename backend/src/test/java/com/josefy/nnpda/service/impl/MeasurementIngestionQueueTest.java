@@ -0,0 +1,154 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.repository.IMeasurementWriter;
+import com.josefy.nnpda.repository.MeasurementRow;
+import com.josefy.nnpda.repository.MeasurementWriteResult;
+import com.josefy.nnpda.service.IMeasurementIngestionQueue.EnqueueResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+// accepted readings the database didn't take have to end up on disk, never just in a counter
+public class MeasurementIngestionQueueTest {
+    private static final OffsetDateTime AT = OffsetDateTime.of(2024, 5, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @TempDir
+    private Path spillDirectory;
+    private final List<MeasurementRow> written = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private MeasurementIngestionQueue queue;
+
+    @AfterEach
+    public void tearDown() {
+        if (queue.isRunning()) {
+            queue.stop();
+        }
+    }
+
+    @Test
+    public void shouldSpillAndReplayBatchesThatFailedToWrite() throws Exception {
+        failuresLeft.set(2);
+        queue = queue(10);
+        var rows = List.of(new MeasurementRow(1, AT, 1), new MeasurementRow(1, AT.plusSeconds(1), 2));
+
+        assertEquals(EnqueueResult.QUEUED, queue.enqueue(rows));
+
+        // the write and the first replay fail, the second replay (a second later) goes through
+        awaitWritten(rows.size(), Duration.ofSeconds(10));
+        assertEquals(rows, written);
+        assertEquals(List.of(), spilledFiles());
+    }
+
+    @Test
+    public void shouldSetAsideBatchesThatKeepFailing() throws Exception {
+        failuresLeft.set(Integer.MAX_VALUE);
+        queue = queue(1);
+        var rows = List.of(new MeasurementRow(1, AT, 1));
+
+        assertEquals(EnqueueResult.QUEUED, queue.enqueue(rows));
+
+        var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (spilledFiles().stream().noneMatch(file -> file.endsWith(".failed")) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        var files = spilledFiles();
+        assertEquals(1, files.size(), files.toString());
+        assertTrue(files.get(0).endsWith(".failed"), files.toString());
+        assertEquals(List.of("1," + AT + ",1.0"), Files.readAllLines(spillDirectory.resolve(files.get(0))));
+    }
+
+    @Test
+    public void shouldSpillWhatIsStillQueuedWhenStopped() throws Exception {
+        var blocked = new CountDownLatch(1);
+        var first = new AtomicBoolean(true);
+        IMeasurementWriter stuck = rows -> {
+            if (first.getAndSet(false)) {
+                blocked.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException("interrupted", e);
+                }
+            }
+            written.addAll(rows);
+            return new MeasurementWriteResult(rows.size(), 0, 0);
+        };
+        queue = new MeasurementIngestionQueue(stuck, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new SimpleMeterRegistry(), 16, 1, 1, MeasurementIngestionQueue.BackpressurePolicy.BLOCK,
+                Duration.ofSeconds(1), Duration.ofMillis(100), spillDirectory, 10, false);
+        queue.start();
+        for (int i = 0; i < 3; i++) {
+            queue.enqueue(List.of(new MeasurementRow(1, AT.plusSeconds(i), i)));
+        }
+        blocked.await();
+
+        queue.stop();
+
+        // the interrupted write is spilled, the rest either made it or was spilled by stop()
+        var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (written.size() + spilledRows() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(3, written.size() + spilledRows());
+    }
+
+    private MeasurementIngestionQueue queue(int replayAttempts) throws IOException {
+        var queue = new MeasurementIngestionQueue(writer(), new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new SimpleMeterRegistry(), 16, 1, 10_000, MeasurementIngestionQueue.BackpressurePolicy.BLOCK,
+                Duration.ofSeconds(1), Duration.ofSeconds(5), spillDirectory, replayAttempts, false);
+        queue.start();
+        return queue;
+    }
+
+    private IMeasurementWriter writer() {
+        return rows -> {
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new IllegalStateException("database unavailable");
+            }
+            written.addAll(rows);
+            return new MeasurementWriteResult(rows.size(), 0, 0);
+        };
+    }
+
+    private void awaitWritten(int rows, Duration timeout) throws InterruptedException {
+        var deadline = System.nanoTime() + timeout.toNanos();
+        while (written.size() < rows && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    private int spilledRows() throws IOException {
+        int rows = 0;
+        for (var file : spilledFiles()) {
+            if (file.endsWith(".csv")) {
+                rows += Files.readAllLines(spillDirectory.resolve(file)).size();
+            }
+        }
+        return rows;
+    }
+
+    private List<String> spilledFiles() throws IOException {
+        try (var files = Files.list(spillDirectory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.dto.device.CreateDeviceWithSensorSerialsDto;
+import com.josefy.nnpda.dto.measurement.IngestionResultDto;
+import com.josefy.nnpda.dto.sensor.SensorWithDeviceDto;
+import com.josefy.nnpda.infrastructure.repository.IRoleRepository;
+import com.josefy.nnpda.infrastructure.repository.IUserRepository;
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.Role;
+import com.josefy.nnpda.model.RoleEnum;
+import com.josefy.nnpda.model.Sensor;
+import com.josefy.nnpda.model.User;
+import com.josefy.nnpda.repository.MeasurementRow;
+import com.josefy.nnpda.service.IDeviceService;
+import com.josefy.nnpda.service.ILatestMeasurementCache;
+import com.josefy.nnpda.service.IMeasurementService;
+import com.josefy.nnpda.service.ISensorService;
+import com.josefy.nnpda.service.IUserDeviceService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+// streamed uploads are written chunk by chunk, what happens after the commit has to see every chunk
+@SpringBootTest(properties = {
+        "logging.level.org.hibernate=INFO",
+        "measurements.ingestion.stream-chunk-size=" + MeasurementStreamIntegrationTest.CHUNK_SIZE,
+        "measurements.ingestion.stream-transaction-timeout=" + MeasurementStreamIntegrationTest.TIMEOUT_SECONDS + "s"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Testcontainers
+public class MeasurementStreamIntegrationTest {
+    static final int CHUNK_SIZE = 2;
+    static final int TIMEOUT_SECONDS = 2;
+    private static final Pattern VALUE = Pattern.compile("\"value\":([0-9.]+)");
+    private static final OffsetDateTime AT = OffsetDateTime.of(2024, 5, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @Container
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("testdb")
+                    .withUsername("testuser")
+                    .withPassword("testpass");
+
+    @DynamicPropertySource
+    public static void registerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgresContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresContainer::getUsername);
+        registry.add("spring.datasource.password", postgresContainer::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+    }
+
+    @Autowired
+    private IMeasurementService measurementService;
+    @Autowired
+    private IDeviceService deviceService;
+    @Autowired
+    private ISensorService sensorService;
+    @Autowired
+    private ILatestMeasurementCache latestMeasurementCache;
+    @Autowired
+    private IUserDeviceService userDeviceService;
+    @Autowired
+    private IRoleRepository roleRepository;
+    @Autowired
+    private IUserRepository userRepository;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void shouldCacheTheLatestReadingOfEveryChunk() {
+        // newest first, so the latest reading is in the first chunk and the last one is partial
+        var device = device("STREAMDEV001", "STREAMSEN001");
+        long sensorId = sensorId("STREAMSEN001");
+        stream(device, "STREAMSEN001", 5);
+
+        assertEquals(Optional.of(new MeasurementRow(sensorId, AT.plusSeconds(5), 5)),
+                latestMeasurementCache.find(sensorId).map(this::utc));
+    }
+
+    @Test
+    public void shouldCacheTheLatestReadingWhenTheLastChunkIsFull() {
+        var device = device("STREAMDEV002", "STREAMSEN002");
+        long sensorId = sensorId("STREAMSEN002");
+        stream(device, "STREAMSEN002", 2 * CHUNK_SIZE);
+
+        assertEquals(Optional.of(new MeasurementRow(sensorId, AT.plusSeconds(2 * CHUNK_SIZE), 2 * CHUNK_SIZE)),
+                latestMeasurementCache.find(sensorId).map(this::utc));
+    }
+
+    @Test
+    @WithMockUser(username = "streamer")
+    public void shouldFeedEveryChunkToSubscribers() throws Exception {
+        var device = device("STREAMDEV003", "STREAMSEN003");
+        var role = roleRepository.findByName(RoleEnum.ROLE_USER)
+                .orElseGet(() -> roleRepository.save(new Role(RoleEnum.ROLE_USER)));
+        userRepository.save(new User("streamer", "streamer@example.com", "password", role));
+        userDeviceService.assignDeviceToUser("STREAMDEV003", "streamer");
+        var subscription = mockMvc.perform(get("/streamer/devices/STREAMDEV003/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        stream(device, "STREAMSEN003", 5);
+
+        // sent by the subscriber's own thread
+        var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        var values = values(subscription);
+        while (values.size() < 5 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+            values = values(subscription);
+        }
+        assertEquals(List.of(5.0, 4.0, 3.0, 2.0, 1.0), values);
+    }
+
+    @Test
+    public void shouldGiveUpOnAStuckUploadOnceTheTransactionTimesOut() throws Exception {
+        var device = device("STREAMDEV004", "STREAMSEN004");
+        try (var blocker = dataSource.getConnection()) {
+            blocker.setAutoCommit(false);
+            try (var statement = blocker.createStatement()) {
+                // every COPY of the upload waits on it
+                statement.execute("LOCK TABLE measurements IN SHARE MODE");
+            }
+            try {
+                assertTimeoutPreemptively(Duration.ofSeconds(5 * TIMEOUT_SECONDS), () ->
+                        assertThrows(DataAccessException.class, () -> stream(device, "STREAMSEN004", 10_000)));
+            } finally {
+                blocker.rollback();
+            }
+        }
+        assertEquals(Optional.empty(), latestMeasurementCache.find(sensorId("STREAMSEN004")));
+    }
+
+    // reading i at second i, sent from the newest down
+    private void stream(Device device, String sensorSerialNumber, int readings) {
+        var measurements = new ArrayList<String>();
+        for (int i = readings; i > 0; i--) {
+            measurements.add("{\"serialNumber\":\"%s\",\"value\":%d,\"timestamp\":\"%s\"}"
+                    .formatted(sensorSerialNumber, i, AT.plusSeconds(i)));
+        }
+        var body = "{\"measurements\":[" + String.join(",", measurements) + "]}";
+        var result = measurementService.ingestMeasurementStream(device,
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(readings, result.fold(status -> -1, IngestionResultDto::received));
+    }
+
+    private static List<Double> values(MvcResult subscription) throws UnsupportedEncodingException {
+        return VALUE.matcher(subscription.getResponse().getContentAsString()).results()
+                .map(match -> Double.parseDouble(match.group(1)))
+                .toList();
+    }
+
+    private Device device(String serialNumber, String sensorSerialNumber) {
+        var device = deviceService.create(
+                new CreateDeviceWithSensorSerialsDto(serialNumber, "hash-" + serialNumber, "ESP32", null))
+                .fold(status -> null, created -> created);
+        sensorService.create(new SensorWithDeviceDto(sensorSerialNumber, "streamed", serialNumber));
+        return device;
+    }
+
+    private long sensorId(String serialNumber) {
+        return sensorService.findBySerialNumber(serialNumber).fold(status -> -1L, Sensor::getId);
+    }
+
+    private MeasurementRow utc(MeasurementRow row) {
+        return new MeasurementRow(row.sensorId(), row.timestamp().withOffsetSameInstant(ZoneOffset.UTC), row.value());
+    }
+}
@@ -0,0 +1,123 @@
+package com.josefy.nnpda.service.impl;
+
+import com.josefy.nnpda.model.Device;
+import com.josefy.nnpda.model.RetentionClass;
+import com.josefy.nnpda.model.Sensor;
+import com.josefy.nnpda.repository.IDeviceRepository;
+import com.josefy.nnpda.repository.IMeasurementWriter;
+import com.josefy.nnpda.repository.IRetentionClassRepository;
+import com.josefy.nnpda.repository.ISensorRepository;
+import com.josefy.nnpda.repository.MeasurementRow;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// a sensor kept forever rules out dropping partitions, so everything expired goes through the batched deletes
+@SpringBootTest(properties = {
+        "logging.level.org.hibernate=INFO",
+        "measurements.retention.batch-size=" + RetentionEngineIntegrationTest.BATCH_SIZE,
+        "measurements.retention.batch-pause=0ms"
+})
+@ActiveProfiles({"test", "migrations"})
+@Testcontainers
+public class RetentionEngineIntegrationTest {
+    static final int BATCH_SIZE = 3;
+    private static final int RETENTION_DAYS = 30;
+
+    @Container
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("testdb")
+                    .withUsername("testuser")
+                    .withPassword("testpass");
+
+    @DynamicPropertySource
+    public static void registerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgresContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresContainer::getUsername);
+        registry.add("spring.datasource.password", postgresContainer::getPassword);
+    }
+
+    @Autowired
+    private RetentionEngine retentionEngine;
+    @Autowired
+    private IRetentionClassRepository retentionClassRepository;
+    @Autowired
+    private IDeviceRepository deviceRepository;
+    @Autowired
+    private ISensorRepository sensorRepository;
+    @Autowired
+    private IMeasurementWriter measurementWriter;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void shouldDeleteExpiredReadingsInBatches() {
+        var retentionClass = retentionClassRepository.save(new RetentionClass("short", RETENTION_DAYS));
+        var expired = OffsetDateTime.now(ZoneOffset.UTC).minusDays(RETENTION_DAYS + 1).truncatedTo(ChronoUnit.SECONDS);
+        var fresh = OffsetDateTime.now(ZoneOffset.UTC).minusDays(1).truncatedTo(ChronoUnit.SECONDS);
+
+        // exactly three batches, the fourth comes back empty
+        long own = sensor("RETAIN000001", retentionClass, null);
+        write(own, expired, 3 * BATCH_SIZE);
+        write(own, fresh, 2);
+        // the last batch is a partial one, the class comes from the device
+        long inherited = sensor("RETAIN000002", null, retentionClass);
+        write(inherited, expired, 3 * BATCH_SIZE + 1);
+        write(inherited, fresh, 1);
+        long keptForever = sensor("RETAIN000003", null, null);
+        write(keptForever, expired, 4);
+
+        var report = retentionEngine.run().orElseThrow();
+
+        assertEquals(List.of(), report.droppedPartitions());
+        assertEquals(6 * BATCH_SIZE + 1, report.deletedRows());
+        assertEquals(2, rows(own));
+        assertEquals(1, rows(inherited));
+        assertEquals(4, rows(keptForever));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM measurements WHERE sensor_id IN (?, ?) AND timestamp < ?", Long.class,
+                own, inherited, fresh.minusDays(1)));
+    }
+
+    // a reading a second apart, counting back from before
+    private void write(long sensorId, OffsetDateTime before, int readings) {
+        var rows = new ArrayList<MeasurementRow>(readings);
+        for (int i = 0; i < readings; i++) {
+            rows.add(new MeasurementRow(sensorId, before.minusSeconds(i), i));
+        }
+        transactionTemplate.execute(status -> measurementWriter.write(rows));
+    }
+
+    private long rows(long sensorId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM measurements WHERE sensor_id = ?", Long.class, sensorId);
+    }
+
+    private long sensor(String serialNumber, RetentionClass sensorClass, RetentionClass deviceClass) {
+        var device = new Device(serialNumber, "ESP32");
+        device.setRetentionClass(deviceClass);
+        device = deviceRepository.save(device);
+        var sensor = new Sensor("retained", serialNumber);
+        sensor.setDevice(device);
+        sensor.setRetentionClass(sensorClass);
+        return sensorRepository.save(sensor).getId();
+    }
+}